@@ -16,6 +16,10 @@ type RTCDataChannelInit = {
   protocol?: string;
   negotiated?: boolean;
   id?: number;
+  // non-standard:
+  sendQueueHighWatermark?: number;
+  messageBatchingWindow?: number;
+  messageBatchingMaxSize?: number;
   // deprecated:
   maxRetransmitTime?: number,
 };
@@ -36,13 +40,37 @@ const DATA_CHANNEL_EVENTS = [
 
 class ResourceInUse extends Error {}
 
+/**
+ * Computes the number of bytes a specific string takes when encoded in UTF-8.
+ */
+function utf8ByteLength(s: string): number {
+  let length = s.length;
+  for (let i = s.length - 1; i >= 0; i--) {
+    const code = s.charCodeAt(i);
+    if (code > 0x7f && code <= 0x7ff) {
+      length++;
+    } else if (code > 0x7ff && code <= 0xffff) {
+      length += 2;
+    }
+    if (code >= 0xdc00 && code <= 0xdfff) {
+      // A surrogate pair takes 4 bytes, skip the high surrogate.
+      i--;
+    }
+  }
+  return length;
+}
+
 export default class RTCDataChannel extends EventTarget(DATA_CHANNEL_EVENTS) {
 
   _peerConnectionId: number;
 
   binaryType: 'arraybuffer' = 'arraybuffer'; // we only support 'arraybuffer'
   bufferedAmount: number = 0;
-  bufferedAmountLowThreshold: number = 0;
+  _bufferedAmountLowThreshold: number = 0;
+  _sentBytes: number = 0;
+  _sendQueueHighWatermark: number = 0;
+  _messageBatchingWindow: number = 0;
+  _messageBatchingMaxSize: number = 0;
   id: number;
   label: string;
   maxPacketLifeTime: ?number = null;
@@ -83,10 +111,87 @@ export default class RTCDataChannel extends EventTarget(DATA_CHANNEL_EVENTS) {
     this.negotiated = !!dataChannelDict.negotiated;
 
     this._registerEvents();
+
+    if (dataChannelDict.sendQueueHighWatermark) {
+      this.sendQueueHighWatermark = dataChannelDict.sendQueueHighWatermark;
+    }
+    if (dataChannelDict.messageBatchingWindow) {
+      this._messageBatchingMaxSize = dataChannelDict.messageBatchingMaxSize || 0;
+      this.messageBatchingWindow = dataChannelDict.messageBatchingWindow;
+    }
+  }
+
+  get bufferedAmountLowThreshold(): number {
+    return this._bufferedAmountLowThreshold;
+  }
+
+  set bufferedAmountLowThreshold(threshold: number) {
+    this._bufferedAmountLowThreshold = threshold;
+    if (WebRTCModule.dataChannelSetBufferedAmountLowThreshold) {
+      WebRTCModule.dataChannelSetBufferedAmountLowThreshold(this._peerConnectionId, this.id, threshold);
+    }
+  }
+
+  /**
+   * The buffered amount (in bytes) above which sent messages are held
+   * natively instead of being handed to WebRTC, which would otherwise close
+   * the channel once its send buffer is full. Zero disables the native send
+   * queue. Not part of the WebRTC standard.
+   */
+  get sendQueueHighWatermark(): number {
+    return this._sendQueueHighWatermark;
+  }
+
+  set sendQueueHighWatermark(highWatermark: number) {
+    this._sendQueueHighWatermark = highWatermark;
+    if (WebRTCModule.dataChannelSetSendQueueHighWatermark) {
+      WebRTCModule.dataChannelSetSendQueueHighWatermark(this._peerConnectionId, this.id, highWatermark);
+    }
+  }
+
+  /**
+   * The time (in milliseconds) for which received messages are collected
+   * natively and then delivered together, which saves bridge traffic on
+   * channels with high message rates. The messages are still dispatched as
+   * individual message events in order. Zero (the default) delivers every
+   * message right away. Not part of the WebRTC standard.
+   */
+  get messageBatchingWindow(): number {
+    return this._messageBatchingWindow;
+  }
+
+  set messageBatchingWindow(window: number) {
+    this._messageBatchingWindow = window;
+    this._setMessageBatching();
+  }
+
+  /**
+   * The number of received messages at which the collected messages are
+   * delivered before the batching window ends. Zero selects the native
+   * default. Not part of the WebRTC standard.
+   */
+  get messageBatchingMaxSize(): number {
+    return this._messageBatchingMaxSize;
+  }
+
+  set messageBatchingMaxSize(maxSize: number) {
+    this._messageBatchingMaxSize = maxSize;
+    this._setMessageBatching();
+  }
+
+  _setMessageBatching() {
+    if (WebRTCModule.dataChannelSetMessageBatching) {
+      WebRTCModule.dataChannelSetMessageBatching(
+          this._peerConnectionId,
+          this.id,
+          this._messageBatchingWindow,
+          this._messageBatchingMaxSize);
+    }
   }
 
   send(data: string | ArrayBuffer | ArrayBufferView) {
     if (typeof data === 'string') {
+      this._trackSentBytes(utf8ByteLength(data));
       WebRTCModule.dataChannelSend(this._peerConnectionId, this.id, data, 'text');
       return;
     }
@@ -99,9 +204,20 @@ export default class RTCDataChannel extends EventTarget(DATA_CHANNEL_EVENTS) {
     } else {
       throw new TypeError('Data must be either string, ArrayBuffer, or ArrayBufferView');
     }
+    this._trackSentBytes(data.byteLength);
     WebRTCModule.dataChannelSend(this._peerConnectionId, this.id, base64.fromByteArray(data), 'binary');
   }
 
+  _trackSentBytes(byteLength: number) {
+    // Only the native side which reports dataChannelBufferedAmountChanged
+    // (and implements dataChannelSetBufferedAmountLowThreshold along with it)
+    // ever decreases bufferedAmount.
+    if (WebRTCModule.dataChannelSetBufferedAmountLowThreshold) {
+      this._sentBytes += byteLength;
+      this.bufferedAmount += byteLength;
+    }
+  }
+
   close() {
     if (this.readyState === 'closing' || this.readyState === 'closed') {
       return;
@@ -115,6 +231,13 @@ export default class RTCDataChannel extends EventTarget(DATA_CHANNEL_EVENTS) {
     this._subscriptions = [];
   }
 
+  _dispatchMessage(type: string, data: string) {
+    if (type === 'binary') {
+      data = base64.toByteArray(data).buffer;
+    }
+    this.dispatchEvent(new MessageEvent('message', {data}));
+  }
+
   _registerEvents() {
     this._subscriptions = [
       EventEmitter.addListener('dataChannelStateChanged', ev => {
@@ -135,11 +258,29 @@ export default class RTCDataChannel extends EventTarget(DATA_CHANNEL_EVENTS) {
             || ev.id !== this.id) {
           return;
         }
-        let data = ev.data;
-        if (ev.type === 'binary') {
-          data = base64.toByteArray(ev.data).buffer;
+        this._dispatchMessage(ev.type, ev.data);
+      }),
+      EventEmitter.addListener('dataChannelReceiveMessages', ev => {
+        if (ev.peerConnectionId !== this._peerConnectionId
+            || ev.id !== this.id) {
+          return;
+        }
+        for (const message of ev.messages) {
+          this._dispatchMessage(message.type, message.data);
+        }
+      }),
+      EventEmitter.addListener('dataChannelBufferedAmountChanged', ev => {
+        if (ev.peerConnectionId !== this._peerConnectionId
+            || ev.id !== this.id) {
+          return;
+        }
+        // The messages sent after the native side computed bufferedAmount
+        // are still buffered.
+        this.bufferedAmount
+          = ev.bufferedAmount + (this._sentBytes - ev.acceptedBytes);
+        if (ev.low) {
+          this.dispatchEvent(new RTCDataChannelEvent('bufferedamountlow', {channel: this}));
         }
-        this.dispatchEvent(new MessageEvent('message', {data}));
       }),
     ];
   }
@@ -9,6 +9,8 @@ import MediaStreamTrack from './MediaStreamTrack';
 import MediaStreamTrackEvent from './MediaStreamTrackEvent';
 import RTCDataChannel from './RTCDataChannel';
 import RTCDataChannelEvent from './RTCDataChannelEvent';
+import RTCRtpSender from './RTCRtpSender';
+import RTCRtpTransceiver from './RTCRtpTransceiver';
 import RTCSessionDescription from './RTCSessionDescription';
 import RTCIceCandidate from './RTCIceCandidate';
 import RTCIceCandidateEvent from './RTCIceCandidateEvent';
@@ -61,6 +63,9 @@ const PEER_CONNECTION_EVENTS = [
   // old:
   'addstream',
   'removestream',
+  // non-standard:
+  'statssummary',
+  'bitratedecision',
 ];
 
 let nextPeerConnectionId = 0;
@@ -81,6 +86,8 @@ export default class RTCPeerConnection extends EventTarget(PEER_CONNECTION_EVENT
   onicegatheringstatechange: ?Function;
   onnegotiationneeded: ?Function;
   onsignalingstatechange: ?Function;
+  onstatssummary: ?Function;
+  onbitratedecision: ?Function;
 
   onaddstream: ?Function;
   onremovestream: ?Function;
@@ -95,13 +102,50 @@ export default class RTCPeerConnection extends EventTarget(PEER_CONNECTION_EVENT
    */
   _dataChannelIds: Set = new Set();
 
+  /**
+   * The RTCRtpSenders returned by getSenders() mapped by track ID.
+   */
+  _senders: Map<string, RTCRtpSender> = new Map();
+
+  /**
+   * The RTCRtpTransceivers added by addTransceiver().
+   */
+  _transceivers: Array<RTCRtpTransceiver> = [];
+
+  /**
+   * Whether the configuration asks for Unified Plan, which addTransceiver()
+   * requires.
+   */
+  _unifiedPlan: boolean;
+
+  /**
+   * The stats report rebuilt by getStatsDelta() and the version of the native
+   * report it corresponds to.
+   */
+  _statsDeltaReport: ?Map = null;
+  _statsDeltaVersion: number = 0;
+
   constructor(configuration) {
     super();
     this._peerConnectionId = nextPeerConnectionId++;
+    this._unifiedPlan
+      = Boolean(configuration && configuration.sdpSemantics === 'unified-plan');
     WebRTCModule.peerConnectionInit(configuration, this._peerConnectionId);
     this._registerEvents();
   }
 
+  /**
+   * Keeps size native peer connections with a specific configuration created
+   * in advance so that constructing an RTCPeerConnection with an equal
+   * configuration doesn't wait for one to be created. A size of 0 closes them.
+   * (non-standard)
+   */
+  static prewarm(configuration, size = 1) {
+    if (WebRTCModule.peerConnectionPoolConfigure) {
+      WebRTCModule.peerConnectionPoolConfigure(configuration, size);
+    }
+  }
+
   addStream(stream: MediaStream) {
       const index = this._localStreams.indexOf(stream);
       if (index !== -1) {
@@ -150,6 +194,129 @@ export default class RTCPeerConnection extends EventTarget(PEER_CONNECTION_EVENT
     });
   }
 
+  /**
+   * Creates an offer and sets it as the local description in a single
+   * native operation i.e. one bridge round trip instead of the two of
+   * createOffer() and setLocalDescription(). Not part of the WebRTC standard.
+   *
+   * @return {Promise<RTCSessionDescription>} the local description
+   */
+  createAndApplyOffer(options) {
+    if (!WebRTCModule.peerConnectionCreateAndApplyOffer) {
+      return this.createOffer(options)
+        .then(offer => this.setLocalDescription(offer))
+        .then(() => this.localDescription);
+    }
+    return new Promise((resolve, reject) => {
+      WebRTCModule.peerConnectionCreateAndApplyOffer(
+        this._peerConnectionId,
+        RTCUtil.normalizeOfferAnswerOptions(options),
+        (successful, data) => {
+          if (successful) {
+            this.localDescription = new RTCSessionDescription(data.localDescription);
+            resolve(this.localDescription);
+          } else {
+            reject(data);
+          }
+        });
+    });
+  }
+
+  /**
+   * Sets a remote offer, creates an answer and sets it as the local
+   * description in a single native operation i.e. one bridge round trip
+   * instead of the three of setRemoteDescription(), createAnswer() and
+   * setLocalDescription(). Not part of the WebRTC standard.
+   *
+   * @param {RTCSessionDescription} offer - the remote offer
+   * @return {Promise<RTCSessionDescription>} the local description
+   */
+  applyOfferAndAnswer(offer: RTCSessionDescription, options = {}) {
+    if (!WebRTCModule.peerConnectionApplyOfferAndAnswer) {
+      return this.setRemoteDescription(offer)
+        .then(() => this.createAnswer(options))
+        .then(answer => this.setLocalDescription(answer))
+        .then(() => this.localDescription);
+    }
+    return new Promise((resolve, reject) => {
+      WebRTCModule.peerConnectionApplyOfferAndAnswer(
+        this._peerConnectionId,
+        offer.toJSON ? offer.toJSON() : offer,
+        RTCUtil.normalizeOfferAnswerOptions(options),
+        (successful, data) => {
+          if (successful) {
+            this.remoteDescription = new RTCSessionDescription(data.remoteDescription);
+            this.localDescription = new RTCSessionDescription(data.localDescription);
+            resolve(this.localDescription);
+          } else {
+            reject(data);
+          }
+        });
+    });
+  }
+
+  /**
+   * Sets the transforms applied natively to the SDP of the offers and answers
+   * this RTCPeerConnection creates, replacing the previous ones, e.g.
+   * [{type: 'codecOrder', kind: 'video', codecs: ['H264', 'VP8']},
+   *  {type: 'bandwidth', kind: 'video', bitrate: 1500000}]. The built-in types
+   * are codecOrder, bandwidth, stripCodecs, keepCodecs, stripHeaderExtensions
+   * and opusProfile. Not part of the WebRTC standard.
+   *
+   * @param {Array} transforms - the transforms in the order to apply them
+   * @returns {Promise} rejected, with the previous transforms kept, if a
+   * transform is invalid
+   */
+  setSdpTransforms(transforms: Array<Object>) {
+    if (!WebRTCModule.peerConnectionSetSdpTransforms) {
+      return Promise.resolve();
+    }
+    return WebRTCModule.peerConnectionSetSdpTransforms(this._peerConnectionId, transforms);
+  }
+
+  /**
+   * Sets the Opus profile applied natively to the local and remote
+   * descriptions of this RTCPeerConnection: 'voice-low-bandwidth',
+   * 'voice-resilient', 'music-stereo' or null for none. The localDescription
+   * and remoteDescription reflect the applied profile. Not part of the WebRTC
+   * standard.
+   *
+   * @param {string} profile - the name of the profile
+   */
+  setAudioProfile(profile: ?string) {
+    if (!WebRTCModule.peerConnectionSetAudioProfile) {
+      return Promise.resolve();
+    }
+    return WebRTCModule.peerConnectionSetAudioProfile(this._peerConnectionId, profile);
+  }
+
+  /**
+   * Gets the milestones of the setup of this RTCPeerConnection (e.g.
+   * createOffer, setRemoteDescription, iceConnected, dtlsConnected,
+   * firstRemoteFrame) recorded natively with a monotonic clock:
+   * {events: [{name, phase, time, error}], milestones: {name: time}} with
+   * times in milliseconds since the RTCPeerConnection was constructed. Not
+   * part of the WebRTC standard.
+   */
+  getNegotiationTimeline() {
+    if (!WebRTCModule.peerConnectionGetNegotiationTimeline) {
+      return Promise.resolve(null);
+    }
+    return WebRTCModule.peerConnectionGetNegotiationTimeline(this._peerConnectionId);
+  }
+
+  /**
+   * Exports the milestones of getNegotiationTimeline() as the JSON of a
+   * Chrome trace which chrome://tracing and Perfetto load. Not part of the
+   * WebRTC standard.
+   */
+  getNegotiationTrace() {
+    if (!WebRTCModule.peerConnectionGetNegotiationTrace) {
+      return Promise.resolve(null);
+    }
+    return WebRTCModule.peerConnectionGetNegotiationTrace(this._peerConnectionId);
+  }
+
   setConfiguration(configuration) {
     WebRTCModule.peerConnectionSetConfiguration(configuration, this._peerConnectionId);
   }
@@ -161,7 +328,8 @@ export default class RTCPeerConnection extends EventTarget(PEER_CONNECTION_EVENT
         this._peerConnectionId,
         (successful, data) => {
           if (successful) {
-            this.localDescription = sessionDescription;
+            this.localDescription
+              = data ? new RTCSessionDescription(data) : sessionDescription;
             resolve();
           } else {
             reject(data);
@@ -177,7 +345,8 @@ export default class RTCPeerConnection extends EventTarget(PEER_CONNECTION_EVENT
         this._peerConnectionId,
         (successful, data) => {
           if (successful) {
-            this.remoteDescription = sessionDescription;
+            this.remoteDescription
+              = data ? new RTCSessionDescription(data) : sessionDescription;
             resolve();
           } else {
             reject(data);
@@ -202,8 +371,43 @@ export default class RTCPeerConnection extends EventTarget(PEER_CONNECTION_EVENT
     });
   }
 
-  getStats() {
-    return WebRTCModule.peerConnectionGetStats(this._peerConnectionId)
+  /**
+   * Adds multiple remote ICE candidates with a single native call. Candidates
+   * which arrive before the remote description are kept natively and added
+   * once it has been set, and the returned Promise resolves then (with false
+   * for all of them if the RTCPeerConnection is closed before). Not part of
+   * the WebRTC standard.
+   *
+   * @param {Array} candidates - the remote ICE candidates to add
+   * @returns {Promise<Array<boolean>>} whether each candidate was added
+   */
+  addIceCandidates(candidates: Array<RTCIceCandidate>) {
+    if (!WebRTCModule.peerConnectionAddICECandidates) {
+      return Promise.all(
+        candidates.map(c => this.addIceCandidate(c).then(() => true, () => false)));
+    }
+    return new Promise(resolve => {
+      WebRTCModule.peerConnectionAddICECandidates(
+        this._peerConnectionId,
+        candidates.map(c => c.toJSON ? c.toJSON() : c),
+        resolve);
+    });
+  }
+
+  getStats(selector?: ?MediaStreamTrack) {
+    let promise;
+    if (selector && WebRTCModule.peerConnectionGetTrackStats) {
+      // Only the stats of the RTP streams of the track and the stats they
+      // reference (codecs, transports, etc.) as per the stats selection
+      // algorithm.
+      promise
+        = WebRTCModule.peerConnectionGetTrackStats(
+            this._peerConnectionId,
+            selector.id);
+    } else {
+      promise = WebRTCModule.peerConnectionGetStats(this._peerConnectionId);
+    }
+    return promise
         .then( data =>  {
            /* On both Android and iOS it is faster to construct a single
             JSON string representing the Map of StatsReports and have it
@@ -212,14 +416,115 @@ export default class RTCPeerConnection extends EventTarget(PEER_CONNECTION_EVENT
             general, the stress is on being faster to pass through the React
             Native bridge which is a bottleneck that tends to be visible in
             the UI when there is congestion involving UI-related passing.
-
-            TODO Implement the logic for filtering the stats based on 
-            the sender/receiver
             */
             return new Map(JSON.parse(data));
         });
   }
 
+  /**
+   * Gets the stats like getStats() but has only the stats which are new or
+   * have changed since the previous call passed over the React Native bridge.
+   * Stats which have not changed keep the timestamp of their last change. Not
+   * part of the WebRTC standard.
+   *
+   * @return {Promise} resolved with an object whose report is the full
+   * report, updated maps the IDs of the new or changed stats to the stats and
+   * removed lists the IDs of the stats which are no longer present
+   */
+  getStatsDelta() {
+    if (!WebRTCModule.peerConnectionGetStatsDelta) {
+      return this.getStats().then(report => {
+        return {report, updated: new Map(report), removed: []};
+      });
+    }
+
+    const full = !this._statsDeltaReport;
+
+    return WebRTCModule.peerConnectionGetStatsDelta(this._peerConnectionId, full)
+        .then(data => {
+          const delta = JSON.parse(data);
+
+          if (delta.base !== 0 && delta.base !== this._statsDeltaVersion) {
+            // The delta doesn't apply to the report we have (e.g. because
+            // calls overlapped), start over with a full report.
+            this._statsDeltaReport = null;
+            return this.getStatsDelta();
+          }
+
+          const report
+            = RTCUtil.applyStatsDelta(
+                delta.base === 0 ? new Map() : this._statsDeltaReport,
+                delta);
+          const updated = new Map();
+
+          for (const [ id ] of delta.updated) {
+            updated.set(id, report.get(id));
+          }
+
+          this._statsDeltaReport = report;
+          this._statsDeltaVersion = delta.version;
+
+          return {report, updated, removed: delta.removed};
+        });
+  }
+
+  /**
+   * Starts sampling the stats of this RTCPeerConnection natively. A
+   * statssummary event whose summary has the send and receive bitrates (in
+   * bits per second), the packet loss (in percent), the round-trip time and
+   * the jitter (in milliseconds) and the decoded frames per second is
+   * dispatched every interval. The interval is shared by all
+   * RTCPeerConnections. Not part of the WebRTC standard.
+   *
+   * @param {number} [interval] - the time in milliseconds between two samples
+   */
+  startStatsSampling(interval?: number) {
+    if (!WebRTCModule.peerConnectionStartStatsSampling) {
+      return;
+    }
+    if (typeof interval === 'number') {
+      WebRTCModule.setStatsSamplingInterval(interval);
+    }
+    WebRTCModule.peerConnectionStartStatsSampling(this._peerConnectionId);
+  }
+
+  stopStatsSampling() {
+    if (WebRTCModule.peerConnectionStopStatsSampling) {
+      WebRTCModule.peerConnectionStopStatsSampling(this._peerConnectionId);
+    }
+  }
+
+  /**
+   * Starts a native control loop which adapts the encodings of the video
+   * senders (maxBitrate, maxFramerate and the active simulcast layers) to the
+   * available outgoing bitrate, the packet loss and the CPU limitation read
+   * from the stats. A bitratedecision event whose decision describes the new
+   * encodings is dispatched whenever they change. Not part of the WebRTC
+   * standard.
+   *
+   * The encodings the senders have when the loop first sees them are the
+   * ceiling it adapts under. The app wins: a maxBitrate, maxFramerate or
+   * active which the app changes with setParameters (or setEncodingsActive)
+   * while the loop runs becomes the new ceiling.
+   *
+   * @param {Object} [policy] - interval (ms), minBitrate and maxBitrate (bps),
+   * headroom, lossThreshold, maxIncrease, cpuLimitedFramerate, manageLayers
+   * and layerActivationRatio
+   */
+  startBitrateController(policy?: Object) {
+    if (WebRTCModule.peerConnectionStartBitrateController) {
+      WebRTCModule.peerConnectionStartBitrateController(
+          this._peerConnectionId,
+          policy || null);
+    }
+  }
+
+  stopBitrateController() {
+    if (WebRTCModule.peerConnectionStopBitrateController) {
+      WebRTCModule.peerConnectionStopBitrateController(this._peerConnectionId);
+    }
+  }
+
   getLocalStreams() {
     return this._localStreams.slice();
   }
@@ -228,6 +533,73 @@ export default class RTCPeerConnection extends EventTarget(PEER_CONNECTION_EVENT
     return this._remoteStreams.slice();
   }
 
+  /**
+   * Adds a transceiver which sends a specific local track, e.g. in multiple
+   * simulcast encodings given by init.sendEncodings (each with a rid and
+   * optionally scaleResolutionDownBy, maxBitrate, maxFramerate and active).
+   * Requires sdpSemantics: 'unified-plan'. Transceivers which only receive
+   * (i.e. added for a kind) are not supported. Unlike the standard, returns a
+   * Promise because the transceiver is added natively and asynchronously; the
+   * transceiver is only recorded (e.g. in getTransceivers()) once it has
+   * been added.
+   *
+   * @return {Promise<RTCRtpTransceiver>} the added transceiver
+   */
+  addTransceiver(track: MediaStreamTrack, init: Object = {}): Promise<RTCRtpTransceiver> {
+    if (!this._unifiedPlan || !WebRTCModule.peerConnectionAddTransceiver) {
+      const error = new Error('addTransceiver() requires Unified Plan');
+      error.name = 'InvalidStateError';
+      return Promise.reject(error);
+    }
+    if (!(track instanceof MediaStreamTrack)) {
+      return Promise.reject(new TypeError('addTransceiver() supports local tracks only'));
+    }
+
+    return WebRTCModule.peerConnectionAddTransceiver(
+        this._peerConnectionId,
+        track.id,
+        init)
+      .then(() => {
+        const sender
+          = this._senders.get(track.id)
+              || new RTCRtpSender(this._peerConnectionId, track);
+        const transceiver
+          = new RTCRtpTransceiver(
+              this._peerConnectionId,
+              sender,
+              init.direction || 'sendrecv');
+
+        this._senders.set(track.id, sender);
+        this._transceivers.push(transceiver);
+        return transceiver;
+      });
+  }
+
+  getTransceivers(): Array<RTCRtpTransceiver> {
+    return this._transceivers.slice();
+  }
+
+  /**
+   * Gets the senders of the transceivers and of the tracks of the local
+   * streams. A track keeps its sender for as long as it is sent.
+   */
+  getSenders(): Array<RTCRtpSender> {
+    const senders = new Map();
+    for (const transceiver of this._transceivers) {
+      senders.set(transceiver.sender.track.id, transceiver.sender);
+    }
+    for (const stream of this._localStreams) {
+      for (const track of stream.getTracks()) {
+        senders.set(
+            track.id,
+            this._senders.get(track.id)
+                || new RTCRtpSender(this._peerConnectionId, track));
+      }
+    }
+    this._senders = senders;
+    return Array.from(senders.values());
+  }
+
   close() {
     WebRTCModule.peerConnectionClose(this._peerConnectionId);
   }
@@ -275,6 +647,18 @@ export default class RTCPeerConnection extends EventTarget(PEER_CONNECTION_EVENT
           this._unregisterEvents();
         }
       }),
+      EventEmitter.addListener('peerConnectionStatsSummary', ev => {
+        const summary = ev.summaries.find(s => s.id === this._peerConnectionId);
+        if (summary) {
+          this.dispatchEvent(new RTCEvent('statssummary', {summary}));
+        }
+      }),
+      EventEmitter.addListener('peerConnectionBitrateDecision', ev => {
+        if (ev.id !== this._peerConnectionId) {
+          return;
+        }
+        this.dispatchEvent(new RTCEvent('bitratedecision', {decision: ev}));
+      }),
       EventEmitter.addListener('peerConnectionSignalingStateChanged', ev => {
         if (ev.id !== this._peerConnectionId) {
           return;
@@ -290,6 +674,36 @@ export default class RTCPeerConnection extends EventTarget(PEER_CONNECTION_EVENT
         this._remoteStreams.push(stream);
         this.dispatchEvent(new MediaStreamEvent('addstream', {stream}));
       }),
+      EventEmitter.addListener('peerConnectionAddedTrack', ev => {
+        // Under Unified Plan, the tracks of a remote stream after the first
+        // one are reported individually.
+        if (ev.id !== this._peerConnectionId) {
+          return;
+        }
+        const stream
+          = this._remoteStreams.find(s => s._reactTag === ev.streamReactTag);
+        if (!stream || stream._tracks.find(t => t.id === ev.track.id)) {
+          return;
+        }
+        const track = new MediaStreamTrack(ev.track);
+        stream._tracks.push(track);
+        stream.dispatchEvent(new MediaStreamTrackEvent('addtrack', {track}));
+      }),
+      EventEmitter.addListener('peerConnectionRemovedTrack', ev => {
+        // Under Unified Plan, a remote track is removed when its transceiver
+        // stops receiving.
+        if (ev.id !== this._peerConnectionId) {
+          return;
+        }
+        const stream
+          = this._remoteStreams.find(s => s._reactTag === ev.streamReactTag);
+        const track = this._getTrack(ev.streamReactTag, ev.trackId);
+        if (!track) {
+          return;
+        }
+        stream._tracks.splice(stream._tracks.indexOf(track), 1);
+        stream.dispatchEvent(new MediaStreamTrackEvent('removetrack', {track}));
+      }),
       EventEmitter.addListener('peerConnectionRemovedStream', ev => {
         if (ev.id !== this._peerConnectionId) {
           return;
@@ -322,6 +736,18 @@ export default class RTCPeerConnection extends EventTarget(PEER_CONNECTION_EVENT
         const event = new RTCIceCandidateEvent('icecandidate', {candidate});
         this.dispatchEvent(event);
       }),
+      EventEmitter.addListener('peerConnectionGotICECandidates', ev => {
+        if (ev.id !== this._peerConnectionId) {
+          return;
+        }
+        // Local ICE candidates batched natively (see the non-standard
+        // iceCandidateBatchingWindow configuration) are dispatched one by one
+        // as if they had not been batched.
+        ev.candidates.forEach(c => {
+          const candidate = new RTCIceCandidate(c);
+          this.dispatchEvent(new RTCIceCandidateEvent('icecandidate', {candidate}));
+        });
+      }),
       EventEmitter.addListener('peerConnectionIceGatheringChanged', ev => {
         if (ev.id !== this._peerConnectionId) {
           return;
@@ -0,0 +1,71 @@
+'use strict';
+
+import { NativeModules } from 'react-native';
+
+import MediaStreamTrack from './MediaStreamTrack';
+
+const { WebRTCModule } = NativeModules;
+
+/**
+ * Sends a local track over an RTCPeerConnection. Identified on the native
+ * side by the ID of its track.
+ */
+export default class RTCRtpSender {
+  track: MediaStreamTrack;
+
+  _peerConnectionId: number;
+
+  constructor(peerConnectionId: number, track: MediaStreamTrack) {
+    this._peerConnectionId = peerConnectionId;
+    this.track = track;
+  }
+
+  /**
+   * Gets the RTCRtpSendParameters. Unlike the WebRTC standard's, resolves a
+   * Promise because the parameters live on the native side.
+   */
+  getParameters(): Promise<Object> {
+    if (!WebRTCModule.peerConnectionSenderGetParameters) {
+      return Promise.reject(new Error('Not supported'));
+    }
+    return WebRTCModule.peerConnectionSenderGetParameters(
+        this._peerConnectionId,
+        this.track.id);
+  }
+
+  /**
+   * Sets the encoding parameters (e.g. maxBitrate, maxFramerate and
+   * scaleResolutionDownBy of the encodings) and the degradationPreference.
+   * The number of encodings cannot be changed.
+   *
+   * @return {Promise} resolved with the resulting parameters
+   */
+  setParameters(parameters: Object): Promise<Object> {
+    if (!WebRTCModule.peerConnectionSenderSetParameters) {
+      return Promise.reject(new Error('Not supported'));
+    }
+    return WebRTCModule.peerConnectionSenderSetParameters(
+        this._peerConnectionId,
+        this.track.id,
+        parameters);
+  }
+
+  /**
+   * Turns the encodings (e.g. simulcast layers) with specific RIDs on or off
+   * without reading and writing all parameters. An inactive encoding is not
+   * encoded at all, which saves CPU. (non-standard)
+   *
+   * @param {Object} activeByRid - whether each encoding is active by RID, e.g.
+   * {h: false}
+   * @return {Promise} resolved with the resulting parameters
+   */
+  setEncodingsActive(activeByRid: Object): Promise<Object> {
+    if (!WebRTCModule.peerConnectionSenderSetEncodingsActive) {
+      return Promise.reject(new Error('Not supported'));
+    }
+    return WebRTCModule.peerConnectionSenderSetEncodingsActive(
+        this._peerConnectionId,
+        this.track.id,
+        activeByRid);
+  }
+}
@@ -0,0 +1,48 @@
+'use strict';
+
+import { NativeModules } from 'react-native';
+
+import RTCRtpSender from './RTCRtpSender';
+
+const { WebRTCModule } = NativeModules;
+
+type RTCRtpTransceiverDirection =
+  'sendrecv' |
+  'sendonly' |
+  'recvonly' |
+  'inactive';
+
+/**
+ * A transceiver added by RTCPeerConnection.addTransceiver(). Identified on
+ * the native side by the ID of the track it sends.
+ */
+export default class RTCRtpTransceiver {
+  sender: RTCRtpSender;
+
+  _direction: RTCRtpTransceiverDirection;
+  _peerConnectionId: number;
+
+  constructor(
+      peerConnectionId: number,
+      sender: RTCRtpSender,
+      direction: RTCRtpTransceiverDirection) {
+    this._peerConnectionId = peerConnectionId;
+    this.sender = sender;
+    this._direction = direction;
+  }
+
+  get direction(): RTCRtpTransceiverDirection {
+    return this._direction;
+  }
+
+  set direction(direction: RTCRtpTransceiverDirection) {
+    if (direction === this._direction) {
+      return;
+    }
+    this._direction = direction;
+    WebRTCModule.peerConnectionTransceiverSetDirection(
+        this._peerConnectionId,
+        this.sender.track.id,
+        direction);
+  }
+}
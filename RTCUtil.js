@@ -123,6 +123,37 @@ export function deepClone(obj) {
     return JSON.parse(JSON.stringify(obj));
 }
 
+/**
+ * Applies the differences between two stats reports, as produced natively by
+ * peerConnectionGetStatsDelta, to the earlier report.
+ *
+ * @param {Map} report - the earlier report, which is not modified
+ * @param {Object} delta - the differences, whose updated entries contain
+ * either all members (new stats) or only the changed ones, removed members
+ * being null
+ * @return {Map} the later report
+ */
+export function applyStatsDelta(report, delta) {
+    const newReport = new Map(report);
+
+    for (const id of delta.removed) {
+        newReport.delete(id);
+    }
+
+    for (const [ id, members ] of delta.updated) {
+        const stats = Object.assign({}, newReport.get(id), members);
+
+        for (const key of Object.keys(members)) {
+            if (members[key] === null) {
+                delete stats[key];
+            }
+        }
+        newReport.set(id, stats);
+    }
+
+    return newReport;
+}
+
 /**
  * Normalize options passed to createOffer() / createAnswer().
  *
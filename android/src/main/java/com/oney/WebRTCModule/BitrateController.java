@@ -0,0 +1,599 @@
+package com.oney.WebRTCModule;
+
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.webrtc.MediaStreamTrack;
+import org.webrtc.PeerConnection;
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+import org.webrtc.RtpParameters;
+import org.webrtc.RtpSender;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Adapts the encodings of the video senders of a PeerConnection to the
+ * network and the device without JavaScript round trips. Periodically reads
+ * <tt>availableOutgoingBitrate</tt>, <tt>qualityLimitationReason</tt> and the
+ * packet loss reported by the remote peer from the stats, derives a target
+ * bitrate following a {@link Policy} and splits it among the video senders:
+ * caps their <tt>maxBitrate</tt>, turns the simulcast layers which don't fit
+ * off and lowers <tt>maxFramerate</tt> while the encoder is CPU limited.
+ * Reports every change in a <tt>peerConnectionBitrateDecision</tt> event.
+ * <p>
+ * The encodings the senders have when they are first seen are the ceiling:
+ * the controller never raises a bitrate or frame rate above it and never turns
+ * on a layer which was off. The app wins over the controller: what it changes
+ * through <tt>setParameters</tt> or <tt>setEncodingsActive</tt> while the
+ * controller runs becomes the new ceiling (see {@link #updateCeilings}),
+ * under which the controller keeps adapting. Runs on the lane of the
+ * PeerConnection; the decision logic itself ({@link #computeTargetBitrate},
+ * {@link #allocate} and {@link #updateCeilings}) is free of side effects.
+ */
+class BitrateController {
+    private static final String TAG = WebRTCModule.TAG;
+
+    private final WebRTCModule webRTCModule;
+    private final int peerConnectionId;
+    private final Policy policy;
+
+    /**
+     * The encodings of the senders when they were first seen mapped by sender
+     * ID. Confined to the lane of the PeerConnection.
+     */
+    private final Map<String, List<Ceiling>> ceilings = new HashMap<>();
+
+    /**
+     * The target bitrate of the previous decision in bps or zero. Confined to
+     * the lane of the PeerConnection.
+     */
+    private int targetBitrate;
+
+    /**
+     * The scheduled next run, if any. Guarded by {@code this}.
+     */
+    private ScheduledFuture<?> nextRun;
+
+    private volatile boolean stopped;
+
+    BitrateController(WebRTCModule webRTCModule, int peerConnectionId, Policy policy) {
+        this.webRTCModule = webRTCModule;
+        this.peerConnectionId = peerConnectionId;
+        this.policy = policy;
+    }
+
+    void start() {
+        schedule();
+    }
+
+    /**
+     * Stops adapting. The encodings keep their last values.
+     */
+    void stop() {
+        stopped = true;
+
+        synchronized (this) {
+            if (nextRun != null) {
+                nextRun.cancel(false);
+                nextRun = null;
+            }
+        }
+    }
+
+    private void schedule() {
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            nextRun = ThreadUtils.schedule(policy.interval, () ->
+                ThreadUtils.runOnPeerConnectionExecutor(
+                    peerConnectionId,
+                    "bitrateControllerGetStats",
+                    ThreadUtils.Priority.BULK,
+                    this::run));
+        }
+    }
+
+    /**
+     * Takes the changes which the app has made to the encodings of a specific
+     * sender into its ceilings. Invoked on the lane of the PeerConnection
+     * once the parameters have been set.
+     *
+     * @param senderId the ID of the sender
+     * @param before the encodings before the change of the app
+     * @param after the encodings set by the app
+     */
+    void onSenderParametersSet(
+            String senderId,
+            List<Ceiling> before,
+            List<RtpParameters.Encoding> after) {
+        List<Ceiling> senderCeilings = ceilings.get(senderId);
+
+        // Without ceilings yet, the next run takes them from the encodings the
+        // app has set.
+        if (senderCeilings != null) {
+            ceilings.put(senderId, updateCeilings(senderCeilings, before, Ceiling.of(after)));
+        }
+    }
+
+    /**
+     * Requests the stats. Invoked on the lane of the PeerConnection.
+     */
+    private void run() {
+        PeerConnectionObserver pco = webRTCModule.getPeerConnectionObserver(peerConnectionId);
+
+        if (stopped || pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "bitrateControllerGetStats() peerConnection is null");
+            return;
+        }
+
+        // The stats are delivered on the signaling thread, the senders are
+        // changed back on the lane of the PeerConnection.
+        pco.getStats(report ->
+            ThreadUtils.runOnPeerConnectionExecutor(
+                peerConnectionId,
+                "bitrateControllerApply",
+                ThreadUtils.Priority.BULK,
+                () -> {
+                    try {
+                        apply(pco, Inputs.fromReport(report));
+                    } finally {
+                        schedule();
+                    }
+                }));
+    }
+
+    /**
+     * Decides and applies the encodings of the video senders. Invoked on the
+     * lane of the PeerConnection.
+     */
+    private void apply(PeerConnectionObserver pco, Inputs inputs) {
+        PeerConnection peerConnection = pco.getPeerConnection();
+        if (stopped || peerConnection == null) {
+            return;
+        }
+        if (inputs.availableOutgoingBitrate <= 0) {
+            // Not connected (yet).
+            return;
+        }
+
+        List<RtpSender> senders = new ArrayList<>();
+        Set<String> senderIds = new HashSet<>();
+        for (RtpSender sender : peerConnection.getSenders()) {
+            MediaStreamTrack track = sender.track();
+            if (track != null && MediaStreamTrack.VIDEO_TRACK_KIND.equals(track.kind())) {
+                senders.add(sender);
+                senderIds.add(sender.id());
+            }
+        }
+        ceilings.keySet().retainAll(senderIds);
+        if (senders.isEmpty()) {
+            return;
+        }
+
+        targetBitrate = computeTargetBitrate(policy, inputs, targetBitrate);
+
+        int senderBitrate = targetBitrate / senders.size();
+        boolean cpuLimited = "cpu".equals(inputs.qualityLimitationReason);
+        WritableArray changes = Arguments.createArray();
+
+        for (RtpSender sender : senders) {
+            RtpParameters parameters = sender.getParameters();
+            List<Ceiling> senderCeilings = ceilings.get(sender.id());
+            if (senderCeilings == null
+                    || senderCeilings.size() != parameters.encodings.size()) {
+                senderCeilings = Ceiling.of(parameters.encodings);
+                ceilings.put(sender.id(), senderCeilings);
+            }
+
+            List<Allocation> allocations
+                = allocate(policy, senderBitrate, cpuLimited, senderCeilings);
+            boolean changed = false;
+            for (int i = 0; i < allocations.size(); i++) {
+                changed |= allocations.get(i).applyTo(parameters.encodings.get(i));
+            }
+            if (!changed) {
+                continue;
+            }
+            if (!sender.setParameters(parameters)) {
+                Log.w(TAG, "bitrateControllerApply() failed to set the parameters");
+                continue;
+            }
+
+            WritableMap change = Arguments.createMap();
+            change.putString("trackId", sender.track().id());
+            WritableArray encodings = Arguments.createArray();
+            for (int i = 0; i < allocations.size(); i++) {
+                encodings.pushMap(allocations.get(i).toWritableMap(parameters.encodings.get(i).rid));
+            }
+            change.putArray("encodings", encodings);
+            changes.pushMap(change);
+        }
+
+        if (changes.size() == 0) {
+            return;
+        }
+
+        WritableMap params = Arguments.createMap();
+        params.putInt("id", peerConnectionId);
+        params.putDouble("availableOutgoingBitrate", inputs.availableOutgoingBitrate);
+        params.putDouble("packetLoss", inputs.fractionLost * 100);
+        if (inputs.qualityLimitationReason != null) {
+            params.putString("qualityLimitationReason", inputs.qualityLimitationReason);
+        }
+        params.putInt("targetBitrate", targetBitrate);
+        params.putArray("senders", changes);
+        webRTCModule.sendEvent("peerConnectionBitrateDecision", params);
+    }
+
+    /**
+     * Computes the bitrate in bps to split among the video senders: a share of
+     * the available outgoing bitrate, backed off from the previous target on
+     * loss, raised by at most {@link Policy#maxIncrease} per run and clamped
+     * to the bounds of the policy.
+     *
+     * @param previousTarget the previous target or zero
+     */
+    static int computeTargetBitrate(Policy policy, Inputs inputs, int previousTarget) {
+        double target = inputs.availableOutgoingBitrate * policy.headroom;
+
+        if (previousTarget > 0) {
+            if (inputs.fractionLost > policy.lossThreshold) {
+                target = Math.min(target, previousTarget * (1 - inputs.fractionLost / 2));
+            }
+            target = Math.min(target, previousTarget * (1 + policy.maxIncrease));
+        }
+
+        return (int) Math.max(policy.minBitrate, Math.min(policy.maxBitrate, target));
+    }
+
+    /**
+     * Splits the bitrate of a sender among its encodings. The encodings are
+     * served from the lowest resolution up; the lowest active one always stays
+     * on, the others only while the remaining bitrate covers
+     * {@link Policy#layerActivationRatio} of their ceiling.
+     *
+     * @param bitrate the bitrate of the sender in bps
+     * @param cpuLimited whether the encoder is CPU limited
+     * @param ceilings the ceilings of the encodings of the sender
+     * @return the allocations of the encodings in the order of the encodings
+     */
+    static List<Allocation> allocate(
+            Policy policy,
+            int bitrate,
+            boolean cpuLimited,
+            List<Ceiling> ceilings) {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < ceilings.size(); i++) {
+            order.add(i);
+        }
+        // The lowest resolution (the largest scaleResolutionDownBy) first.
+        Collections.sort(order, (a, b) ->
+            Double.compare(ceilings.get(b).scale, ceilings.get(a).scale));
+
+        Allocation[] allocations = new Allocation[ceilings.size()];
+        int remaining = bitrate;
+        boolean first = true;
+
+        for (int i : order) {
+            Ceiling ceiling = ceilings.get(i);
+            Integer maxFramerate = ceiling.maxFramerate;
+
+            if (cpuLimited) {
+                maxFramerate
+                    = maxFramerate == null
+                        ? policy.cpuLimitedFramerate
+                        : Math.min(maxFramerate, policy.cpuLimitedFramerate);
+            }
+            if (!ceiling.active) {
+                allocations[i] = new Allocation(false, ceiling.maxBitrate, ceiling.maxFramerate);
+                continue;
+            }
+
+            int cap = ceiling.maxBitrate == null ? remaining : ceiling.maxBitrate;
+            boolean active
+                = first
+                    || !policy.manageLayers
+                    || remaining >= cap * policy.layerActivationRatio;
+
+            if (active) {
+                int maxBitrate = Math.max(0, Math.min(cap, remaining));
+                if (first) {
+                    // The lowest layer gets at least the minimum of the policy.
+                    maxBitrate = Math.max(maxBitrate, Math.min(cap, policy.minBitrate));
+                }
+                allocations[i] = new Allocation(true, maxBitrate, maxFramerate);
+                remaining -= maxBitrate;
+                first = false;
+            } else {
+                allocations[i] = new Allocation(false, ceiling.maxBitrate, maxFramerate);
+            }
+        }
+
+        List<Allocation> result = new ArrayList<>();
+        Collections.addAll(result, allocations);
+        return result;
+    }
+
+    /**
+     * Updates the ceilings of the encodings of a sender with a change made by
+     * the app. A member which the app changed (i.e. which differs from its
+     * value before the change, the one the controller had set) becomes the
+     * new ceiling of the member; a member which the app left alone keeps its
+     * ceiling. Setting a member to the value which the controller had set is
+     * indistinguishable from leaving it alone. The scale is always taken from
+     * the app because the controller doesn't change it.
+     *
+     * @param ceilings the current ceilings
+     * @param before the encodings before the change of the app
+     * @param after the encodings set by the app
+     * @return the new ceilings
+     */
+    static List<Ceiling> updateCeilings(
+            List<Ceiling> ceilings,
+            List<Ceiling> before,
+            List<Ceiling> after) {
+        if (ceilings.size() != after.size() || before.size() != after.size()) {
+            return new ArrayList<>(after);
+        }
+
+        List<Ceiling> result = new ArrayList<>(after.size());
+        for (int i = 0; i < after.size(); i++) {
+            Ceiling ceiling = ceilings.get(i);
+            Ceiling b = before.get(i);
+            Ceiling a = after.get(i);
+
+            result.add(new Ceiling(
+                a.active != b.active ? a.active : ceiling.active,
+                Objects.equals(a.maxBitrate, b.maxBitrate) ? ceiling.maxBitrate : a.maxBitrate,
+                Objects.equals(a.maxFramerate, b.maxFramerate)
+                    ? ceiling.maxFramerate
+                    : a.maxFramerate,
+                a.scale));
+        }
+        return result;
+    }
+
+    private static double doubleValue(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    /**
+     * The configurable parameters of the control loop.
+     */
+    static final class Policy {
+        /**
+         * The time in milliseconds between two runs.
+         */
+        long interval = 2000;
+
+        /**
+         * The bounds in bps of the bitrate split among the video senders.
+         */
+        int minBitrate = 150000;
+        int maxBitrate = 2500000;
+
+        /**
+         * The share of <tt>availableOutgoingBitrate</tt> to use for video.
+         */
+        double headroom = 0.85;
+
+        /**
+         * The fraction of packets lost above which the bitrate is backed off.
+         */
+        double lossThreshold = 0.05;
+
+        /**
+         * The largest fraction by which the bitrate is raised per run.
+         */
+        double maxIncrease = 0.15;
+
+        /**
+         * The frame rate to which the encodings are capped while the encoder
+         * is CPU limited.
+         */
+        int cpuLimitedFramerate = 15;
+
+        /**
+         * Whether simulcast layers are turned off when their bitrate doesn't
+         * fit and the share of their ceiling which must fit to turn them on.
+         */
+        boolean manageLayers = true;
+        double layerActivationRatio = 0.75;
+
+        /**
+         * Creates a policy from a JavaScript object. Missing members keep
+         * their default values.
+         */
+        static Policy fromReadableMap(ReadableMap map) {
+            Policy policy = new Policy();
+
+            if (map == null) {
+                return policy;
+            }
+            policy.interval = Math.max(250, (long) getDouble(map, "interval", policy.interval));
+            policy.minBitrate = (int) getDouble(map, "minBitrate", policy.minBitrate);
+            policy.maxBitrate
+                = Math.max(policy.minBitrate, (int) getDouble(map, "maxBitrate", policy.maxBitrate));
+            policy.headroom = getDouble(map, "headroom", policy.headroom);
+            policy.lossThreshold = getDouble(map, "lossThreshold", policy.lossThreshold);
+            policy.maxIncrease = getDouble(map, "maxIncrease", policy.maxIncrease);
+            policy.cpuLimitedFramerate
+                = (int) getDouble(map, "cpuLimitedFramerate", policy.cpuLimitedFramerate);
+            if (map.hasKey("manageLayers") && map.getType("manageLayers") == ReadableType.Boolean) {
+                policy.manageLayers = map.getBoolean("manageLayers");
+            }
+            policy.layerActivationRatio
+                = getDouble(map, "layerActivationRatio", policy.layerActivationRatio);
+            return policy;
+        }
+
+        private static double getDouble(ReadableMap map, String key, double defaultValue) {
+            return map.hasKey(key) && map.getType(key) == ReadableType.Number
+                ? map.getDouble(key)
+                : defaultValue;
+        }
+    }
+
+    /**
+     * The measurements a decision is based on.
+     */
+    static final class Inputs {
+        /**
+         * The <tt>availableOutgoingBitrate</tt> of the candidate pair in use in
+         * bps or zero.
+         */
+        final double availableOutgoingBitrate;
+
+        /**
+         * The largest <tt>fractionLost</tt> reported for a sent video stream.
+         */
+        final double fractionLost;
+
+        /**
+         * <tt>cpu</tt> if the encoding of a video stream is CPU limited,
+         * otherwise another limitation reason of one or <tt>null</tt>.
+         */
+        final String qualityLimitationReason;
+
+        Inputs(double availableOutgoingBitrate, double fractionLost, String qualityLimitationReason) {
+            this.availableOutgoingBitrate = availableOutgoingBitrate;
+            this.fractionLost = fractionLost;
+            this.qualityLimitationReason = qualityLimitationReason;
+        }
+
+        static Inputs fromReport(RTCStatsReport report) {
+            double availableOutgoingBitrate = 0;
+            double fractionLost = 0;
+            String qualityLimitationReason = null;
+
+            for (RTCStats stats : report.getStatsMap().values()) {
+                Map<String, Object> members = stats.getMembers();
+
+                switch (stats.getType()) {
+                case "candidate-pair":
+                    if (Boolean.TRUE.equals(members.get("nominated"))
+                            && "succeeded".equals(members.get("state"))) {
+                        availableOutgoingBitrate
+                            = doubleValue(members.get("availableOutgoingBitrate"));
+                    }
+                    break;
+                case "remote-inbound-rtp":
+                    if ("video".equals(members.get("kind"))) {
+                        fractionLost
+                            = Math.max(fractionLost, doubleValue(members.get("fractionLost")));
+                    }
+                    break;
+                case "outbound-rtp":
+                    Object reason = members.get("qualityLimitationReason");
+                    if (reason instanceof String
+                            && !"none".equals(reason)
+                            && !"cpu".equals(qualityLimitationReason)) {
+                        qualityLimitationReason = (String) reason;
+                    }
+                    break;
+                }
+            }
+
+            return new Inputs(availableOutgoingBitrate, fractionLost, qualityLimitationReason);
+        }
+    }
+
+    /**
+     * The values of an encoding of a sender when it was first seen or as the
+     * app last changed them.
+     */
+    static final class Ceiling {
+        final boolean active;
+        final Integer maxBitrate;
+        final Integer maxFramerate;
+        final double scale;
+
+        Ceiling(boolean active, Integer maxBitrate, Integer maxFramerate, double scale) {
+            this.active = active;
+            this.maxBitrate = maxBitrate;
+            this.maxFramerate = maxFramerate;
+            this.scale = scale;
+        }
+
+        Ceiling(RtpParameters.Encoding encoding) {
+            this(
+                encoding.active,
+                encoding.maxBitrateBps,
+                encoding.maxFramerate,
+                encoding.scaleResolutionDownBy == null ? 1 : encoding.scaleResolutionDownBy);
+        }
+
+        /**
+         * Gets the values of specific encodings.
+         */
+        static List<Ceiling> of(List<RtpParameters.Encoding> encodings) {
+            List<Ceiling> ceilings = new ArrayList<>(encodings.size());
+
+            for (RtpParameters.Encoding encoding : encodings) {
+                ceilings.add(new Ceiling(encoding));
+            }
+            return ceilings;
+        }
+    }
+
+    /**
+     * The decided values of an encoding.
+     */
+    static final class Allocation {
+        final boolean active;
+        final Integer maxBitrate;
+        final Integer maxFramerate;
+
+        Allocation(boolean active, Integer maxBitrate, Integer maxFramerate) {
+            this.active = active;
+            this.maxBitrate = maxBitrate;
+            this.maxFramerate = maxFramerate;
+        }
+
+        /**
+         * @return <tt>true</tt> if the encoding changed
+         */
+        boolean applyTo(RtpParameters.Encoding encoding) {
+            boolean changed
+                = encoding.active != active
+                    || !Objects.equals(encoding.maxBitrateBps, maxBitrate)
+                    || !Objects.equals(encoding.maxFramerate, maxFramerate);
+
+            encoding.active = active;
+            encoding.maxBitrateBps = maxBitrate;
+            encoding.maxFramerate = maxFramerate;
+            return changed;
+        }
+
+        WritableMap toWritableMap(String rid) {
+            WritableMap map = Arguments.createMap();
+
+            if (rid != null) {
+                map.putString("rid", rid);
+            }
+            map.putBoolean("active", active);
+            if (maxBitrate != null) {
+                map.putInt("maxBitrate", maxBitrate);
+            }
+            if (maxFramerate != null) {
+                map.putInt("maxFramerate", maxFramerate);
+            }
+            return map;
+        }
+    }
+}
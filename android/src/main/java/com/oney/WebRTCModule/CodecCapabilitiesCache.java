@@ -0,0 +1,122 @@
+package com.oney.WebRTCModule;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.webrtc.VideoCodecInfo;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Persists the video codecs which the encoder and decoder factories probed
+ * (the slow part being the enumeration of the <tt>MediaCodec</tt>s) so that
+ * later starts of the app skip the probe. The cached codecs are valid for the
+ * build of the device they were probed on (i.e. <tt>Build.FINGERPRINT</tt>,
+ * which changes with system updates) and for the part of the
+ * {@link VideoCodecPolicy} which affects them.
+ */
+final class CodecCapabilitiesCache {
+    private static final String TAG = WebRTCModule.TAG;
+
+    private static final String PREFERENCES_NAME = "com.oney.WebRTCModule.codecs";
+
+    private final SharedPreferences preferences;
+
+    /**
+     * The key of the cached codecs i.e. the build fingerprint and the
+     * capabilities key of the policy.
+     */
+    private final String key;
+
+    CodecCapabilitiesCache(Context context, VideoCodecPolicy policy) {
+        this.preferences
+            = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        this.key = createKey(Build.FINGERPRINT, policy);
+    }
+
+    /**
+     * Creates the key of the codecs probed on a specific build of the device
+     * following a specific policy. Codecs cached under another key are stale.
+     *
+     * @param fingerprint the <tt>Build.FINGERPRINT</tt> of the device
+     */
+    static String createKey(String fingerprint, VideoCodecPolicy policy) {
+        return fingerprint + "|" + policy.getCapabilitiesKey();
+    }
+
+    /**
+     * Gets the cached codecs of a specific factory.
+     *
+     * @param name the name of the factory e.g. <tt>encoder</tt>
+     * @return the cached codecs or <tt>null</tt> if there are none for the
+     * build of the device and the policy
+     */
+    VideoCodecInfo[] get(String name) {
+        String json = preferences.getString(name, null);
+
+        if (json == null) {
+            return null;
+        }
+        try {
+            JSONObject entry = new JSONObject(json);
+            if (!key.equals(entry.getString("key"))) {
+                return null;
+            }
+            return fromJSON(entry.getJSONArray("codecs"));
+        } catch (JSONException e) {
+            Log.w(TAG, "Failed to read the cached " + name + " codecs", e);
+            return null;
+        }
+    }
+
+    void put(String name, VideoCodecInfo[] codecs) {
+        try {
+            JSONObject entry = new JSONObject();
+            entry.put("key", key);
+            entry.put("codecs", toJSON(codecs));
+            preferences.edit().putString(name, entry.toString()).apply();
+        } catch (JSONException e) {
+            Log.w(TAG, "Failed to cache the " + name + " codecs", e);
+        }
+    }
+
+    static JSONArray toJSON(VideoCodecInfo[] codecs) throws JSONException {
+        JSONArray array = new JSONArray();
+
+        for (VideoCodecInfo codec : codecs) {
+            JSONObject params = new JSONObject();
+            for (Map.Entry<String, String> e : codec.params.entrySet()) {
+                params.put(e.getKey(), e.getValue());
+            }
+
+            JSONObject object = new JSONObject();
+            object.put("name", codec.name);
+            object.put("params", params);
+            array.put(object);
+        }
+        return array;
+    }
+
+    static VideoCodecInfo[] fromJSON(JSONArray array) throws JSONException {
+        VideoCodecInfo[] codecs = new VideoCodecInfo[array.length()];
+
+        for (int i = 0; i < codecs.length; i++) {
+            JSONObject object = array.getJSONObject(i);
+            JSONObject paramsObject = object.getJSONObject("params");
+            Map<String, String> params = new HashMap<>();
+            for (Iterator<String> keys = paramsObject.keys(); keys.hasNext();) {
+                String key = keys.next();
+                params.put(key, paramsObject.getString(key));
+            }
+            codecs[i] = new VideoCodecInfo(object.getString("name"), params);
+        }
+        return codecs;
+    }
+}
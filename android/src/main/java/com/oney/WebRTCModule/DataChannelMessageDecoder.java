@@ -0,0 +1,122 @@
+package com.oney.WebRTCModule;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns the payloads of received {@code DataChannel} messages into the
+ * {@code String}s sent to JavaScript. Only the bytes between the position and
+ * the limit of the (usually direct) {@code ByteBuffer} are read, with a single
+ * bulk copy into a scratch {@code byte[]} which is reused across messages
+ * (reading a direct buffer byte by byte or decoding it with a
+ * {@code CharsetDecoder} is several times slower).
+ * <p>
+ * Not thread-safe: an instance is meant to be used by a single
+ * {@code DataChannel} whose messages are delivered on a single thread. The
+ * messages of a channel are thus decoded one at a time and a single scratch
+ * buffer of each kind suffices rather than a pool.
+ */
+final class DataChannelMessageDecoder {
+    private static final char[] BASE64_ALPHABET
+        = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+            .toCharArray();
+
+    /**
+     * The largest scratch buffers (in bytes or chars) which are kept for
+     * reuse. Larger messages get scratch buffers of their own so that a
+     * single large message doesn't pin memory for the lifetime of the
+     * channel.
+     */
+    private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+    private static final int MIN_SCRATCH_SIZE = 1024;
+
+    private byte[] byteScratch;
+
+    private char[] charScratch;
+
+    /**
+     * Decodes the UTF-8 text between the position and the limit of a specific
+     * {@code ByteBuffer}. Malformed input is replaced the same way
+     * {@code new String(byte[], UTF_8)} does. Consumes {@code data}.
+     */
+    String decodeText(ByteBuffer data) {
+        int length = data.remaining();
+        byte[] bytes = obtainByteScratch(length);
+
+        data.get(bytes, 0, length);
+
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes the bytes between the position and the limit of a specific
+     * {@code ByteBuffer} in Base64 without line wrapping (i.e. like
+     * {@code Base64.NO_WRAP}). Does not modify {@code data}.
+     */
+    String encodeBinary(ByteBuffer data) {
+        int length = data.remaining();
+        byte[] in = obtainByteScratch(length);
+        char[] out = obtainCharScratch((length + 2) / 3 * 4);
+        int i = 0;
+        int o = 0;
+
+        data.duplicate().get(in, 0, length);
+
+        for (int end = length - length % 3; i < end; i += 3) {
+            int b = (in[i] & 0xff) << 16
+                | (in[i + 1] & 0xff) << 8
+                | (in[i + 2] & 0xff);
+            out[o++] = BASE64_ALPHABET[b >>> 18];
+            out[o++] = BASE64_ALPHABET[(b >>> 12) & 0x3f];
+            out[o++] = BASE64_ALPHABET[(b >>> 6) & 0x3f];
+            out[o++] = BASE64_ALPHABET[b & 0x3f];
+        }
+
+        int remaining = length - i;
+        if (remaining > 0) {
+            int b = (in[i] & 0xff) << 16;
+            if (remaining == 2) {
+                b |= (in[i + 1] & 0xff) << 8;
+            }
+            out[o++] = BASE64_ALPHABET[b >>> 18];
+            out[o++] = BASE64_ALPHABET[(b >>> 12) & 0x3f];
+            out[o++] = remaining == 2 ? BASE64_ALPHABET[(b >>> 6) & 0x3f] : '=';
+            out[o++] = '=';
+        }
+
+        return new String(out, 0, o);
+    }
+
+    /**
+     * Gets a scratch buffer with room for at least a specific number of bytes,
+     * reusing the retained one if possible.
+     */
+    private byte[] obtainByteScratch(int capacity) {
+        if (byteScratch != null && byteScratch.length >= capacity) {
+            return byteScratch;
+        }
+
+        byte[] buffer = new byte[Math.max(capacity, MIN_SCRATCH_SIZE)];
+        if (buffer.length <= MAX_RETAINED_SIZE) {
+            byteScratch = buffer;
+        }
+        return buffer;
+    }
+
+    /**
+     * Gets a scratch buffer with room for at least a specific number of chars,
+     * reusing the retained one if possible.
+     */
+    private char[] obtainCharScratch(int capacity) {
+        if (charScratch != null && charScratch.length >= capacity) {
+            return charScratch;
+        }
+
+        char[] buffer = new char[Math.max(capacity, MIN_SCRATCH_SIZE)];
+        if (buffer.length <= MAX_RETAINED_SIZE) {
+            charScratch = buffer;
+        }
+        return buffer;
+    }
+}
@@ -1,22 +1,133 @@
 package com.oney.WebRTCModule;
 
-import java.nio.charset.Charset;
-
 import androidx.annotation.Nullable;
-import android.util.Base64;
+import android.util.Log;
 
 import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 
 import org.webrtc.DataChannel;
 
+import java.util.ArrayDeque;
+import java.util.concurrent.ScheduledFuture;
+
 class DataChannelObserver implements DataChannel.Observer {
+    private static final String TAG = WebRTCModule.TAG;
 
     private final int mId;
     private final DataChannel mDataChannel;
     private final int peerConnectionId;
     private final WebRTCModule webRTCModule;
 
+    /**
+     * Decodes the payloads of the messages received by the associated
+     * <tt>DataChannel</tt>, which are delivered on a single thread.
+     */
+    private final DataChannelMessageDecoder messageDecoder
+        = new DataChannelMessageDecoder();
+
+    /**
+     * The messages which are held natively rather than handed to the
+     * associated <tt>DataChannel</tt> because its buffered amount is above
+     * {@link #sendQueueHighWatermark}. Only accessed on the lane of the
+     * PeerConnection.
+     */
+    private final ArrayDeque<DataChannel.Buffer> sendQueue = new ArrayDeque<>();
+
+    /**
+     * The number of bytes in {@link #sendQueue}.
+     */
+    private volatile long queuedBytes;
+
+    /**
+     * The buffered amount at or below which <tt>bufferedamountlow</tt> is
+     * reported.
+     */
+    private volatile long bufferedAmountLowThreshold;
+
+    /**
+     * The buffered amount above which messages are held in
+     * {@link #sendQueue} or zero (the default) to hand all messages to the
+     * associated <tt>DataChannel</tt> right away.
+     */
+    private volatile long sendQueueHighWatermark;
+
+    /**
+     * The number of bytes of all messages passed to {@link #send}, which
+     * allows JavaScript to account for the messages it has sent after the
+     * buffered amount it is told about was computed.
+     */
+    private volatile long acceptedBytes;
+
+    /**
+     * The buffered amount (including {@link #queuedBytes}) last observed.
+     * Guarded by {@code this}.
+     */
+    private long lastBufferedAmount;
+
+    /**
+     * The buffered amount and the accepted bytes last reported to JavaScript
+     * and whether a report is scheduled. Guarded by {@code this}.
+     */
+    private long reportedBufferedAmount;
+    private long reportedAcceptedBytes;
+    private boolean reportScheduled;
+
+    /**
+     * The scheduled report of the buffered amount, if any. Guarded by
+     * {@code this}.
+     */
+    private ScheduledFuture<?> reportFuture;
+
+    /**
+     * Whether {@link #dispose()} has been called i.e. nothing is to be
+     * reported to JavaScript anymore.
+     */
+    private volatile boolean disposed;
+
+    /**
+     * The minimum time in milliseconds between two reports of the buffered
+     * amount which are not due to falling to or below the threshold.
+     */
+    private static final long BUFFERED_AMOUNT_REPORT_INTERVAL = 100;
+
+    /**
+     * The default maximum number of received messages reported to JavaScript
+     * in a single event.
+     */
+    private static final int DEFAULT_MESSAGE_BATCHING_MAX_SIZE = 64;
+
+    /**
+     * The time in milliseconds for which received messages are collected and
+     * then reported to JavaScript in a single event. Zero (the default)
+     * reports every message in its own event. Guarded by
+     * {@link #pendingMessagesLock}.
+     */
+    private int messageBatchingWindow;
+
+    /**
+     * The number of received messages at which the collected messages are
+     * reported before the batching window ends. Guarded by
+     * {@link #pendingMessagesLock}.
+     */
+    private int messageBatchingMaxSize = DEFAULT_MESSAGE_BATCHING_MAX_SIZE;
+
+    /**
+     * The received messages collected in the current batching window, if any,
+     * and their number. Guarded by {@link #pendingMessagesLock}.
+     */
+    private WritableArray pendingMessages;
+    private int pendingMessageCount;
+
+    /**
+     * The scheduled flush of {@link #pendingMessages}, if any. Guarded by
+     * {@link #pendingMessagesLock}.
+     */
+    private ScheduledFuture<?> pendingMessagesFlush;
+
+    private final Object pendingMessagesLock = new Object();
+
     DataChannelObserver(
             WebRTCModule webRTCModule,
             int peerConnectionId,
@@ -43,45 +154,312 @@ class DataChannelObserver implements DataChannel.Observer {
         return null;
     }
 
-    @Override
-    public void onBufferedAmountChange(long amount) {
+    DataChannel getDataChannel() {
+        return mDataChannel;
     }
 
-    @Override
-    public void onMessage(DataChannel.Buffer buffer) {
+    /**
+     * Gets the number of bytes which have been sent by JavaScript but not
+     * transmitted yet, including the bytes held in the native send queue.
+     */
+    long getBufferedAmount() {
+        return mDataChannel.bufferedAmount() + queuedBytes;
+    }
+
+    /**
+     * Sets how received messages are collected and reported to JavaScript in
+     * a single <tt>dataChannelReceiveMessages</tt> event. The messages
+     * collected so far are reported right away.
+     *
+     * @param messageBatchingWindow the time in milliseconds or zero to report
+     * every message in its own event
+     * @param messageBatchingMaxSize the number of messages at which the
+     * collected messages are reported before the window ends or zero for the
+     * default
+     */
+    void setMessageBatching(int messageBatchingWindow, int messageBatchingMaxSize) {
+        synchronized (pendingMessagesLock) {
+            flushMessages();
+            this.messageBatchingWindow = Math.max(0, messageBatchingWindow);
+            this.messageBatchingMaxSize
+                = messageBatchingMaxSize > 0
+                    ? messageBatchingMaxSize
+                    : DEFAULT_MESSAGE_BATCHING_MAX_SIZE;
+        }
+    }
+
+    void setBufferedAmountLowThreshold(long bufferedAmountLowThreshold) {
+        this.bufferedAmountLowThreshold = Math.max(0, bufferedAmountLowThreshold);
+    }
+
+    /**
+     * Sets the buffered amount above which messages are held natively. Must be
+     * called on the lane of the PeerConnection.
+     *
+     * @param sendQueueHighWatermark the number of bytes or zero to disable the
+     * native send queue
+     */
+    void setSendQueueHighWatermark(long sendQueueHighWatermark) {
+        this.sendQueueHighWatermark = Math.max(0, sendQueueHighWatermark);
+        drainSendQueue();
+    }
+
+    /**
+     * Sends a specific message or holds it in the native send queue if the
+     * high watermark has been reached. Must be called on the lane of the
+     * PeerConnection.
+     */
+    void send(DataChannel.Buffer buffer) {
+        acceptedBytes += buffer.data.remaining();
+        if (!sendQueue.isEmpty() || !hasRoomFor(buffer.data.remaining())) {
+            sendQueue.add(buffer);
+            queuedBytes += buffer.data.remaining();
+        } else if (!mDataChannel.send(buffer)) {
+            Log.d(TAG, "dataChannelSend() failed for " + mId);
+        }
+        updateBufferedAmount(getBufferedAmount());
+    }
+
+    /**
+     * Drops the messages held in the native send queue. Must be called on the
+     * lane of the PeerConnection.
+     */
+    void clearSendQueue() {
+        sendQueue.clear();
+        queuedBytes = 0;
+    }
+
+    /**
+     * Cancels the scheduled reports to JavaScript and drops the messages held
+     * natively (received or to be sent) once the associated
+     * <tt>DataChannel</tt> or its PeerConnection has been closed. Must be
+     * called on the lane of the PeerConnection.
+     */
+    void dispose() {
+        disposed = true;
+
+        synchronized (pendingMessagesLock) {
+            if (pendingMessagesFlush != null) {
+                pendingMessagesFlush.cancel(false);
+                pendingMessagesFlush = null;
+            }
+            pendingMessages = null;
+            pendingMessageCount = 0;
+        }
+        synchronized (this) {
+            if (reportFuture != null) {
+                reportFuture.cancel(false);
+                reportFuture = null;
+            }
+            reportScheduled = false;
+        }
+        clearSendQueue();
+    }
+
+    /**
+     * Hands the messages held in the native send queue to the associated
+     * <tt>DataChannel</tt> for as long as the high watermark permits. Must be
+     * called on the lane of the PeerConnection.
+     */
+    private void drainSendQueue() {
+        DataChannel.Buffer buffer;
+        while ((buffer = sendQueue.peek()) != null
+                && hasRoomFor(buffer.data.remaining())) {
+            sendQueue.poll();
+            queuedBytes -= buffer.data.remaining();
+            if (!mDataChannel.send(buffer)) {
+                Log.d(TAG, "dataChannelSend() failed for " + mId);
+            }
+        }
+        updateBufferedAmount(getBufferedAmount());
+    }
+
+    /**
+     * Determines whether a message of a specific size may be handed to the
+     * associated <tt>DataChannel</tt> without exceeding the high watermark.
+     * A message is always accepted by an empty <tt>DataChannel</tt> buffer so
+     * that messages larger than the high watermark still get sent.
+     */
+    private boolean hasRoomFor(long size) {
+        long highWatermark = sendQueueHighWatermark;
+        if (highWatermark <= 0) {
+            return true;
+        }
+
+        long bufferedAmount = mDataChannel.bufferedAmount();
+        return bufferedAmount == 0 || bufferedAmount + size <= highWatermark;
+    }
+
+    /**
+     * Notes the current buffered amount. Reports it to JavaScript right away
+     * if it has fallen to or below the threshold (i.e.
+     * <tt>bufferedamountlow</tt>), otherwise at most once per
+     * {@link #BUFFERED_AMOUNT_REPORT_INTERVAL} if it or the accepted bytes
+     * have changed since the last report.
+     */
+    private void updateBufferedAmount(long bufferedAmount) {
+        boolean low;
+
+        synchronized (this) {
+            long threshold = bufferedAmountLowThreshold;
+            low = lastBufferedAmount > threshold && bufferedAmount <= threshold;
+            lastBufferedAmount = bufferedAmount;
+
+            if (disposed) {
+                return;
+            }
+            if (!low && !reportScheduled
+                    && (bufferedAmount != reportedBufferedAmount
+                        || acceptedBytes != reportedAcceptedBytes)) {
+                reportScheduled = true;
+                reportFuture = ThreadUtils.schedule(
+                    BUFFERED_AMOUNT_REPORT_INTERVAL,
+                    () -> ThreadUtils.runOnPeerConnectionExecutor(
+                        peerConnectionId,
+                        "dataChannelReportBufferedAmount",
+                        () -> reportBufferedAmount(false)));
+            }
+        }
+
+        if (low) {
+            reportBufferedAmount(true);
+        }
+    }
+
+    private void reportBufferedAmount(boolean low) {
+        long bufferedAmount;
+        long acceptedBytes;
+
+        synchronized (this) {
+            if (disposed) {
+                return;
+            }
+            if (!low) {
+                reportScheduled = false;
+                reportFuture = null;
+            }
+            // The accepted bytes are read before the buffered amount so that
+            // JavaScript never counts a message twice.
+            acceptedBytes = this.acceptedBytes;
+            bufferedAmount = low ? lastBufferedAmount : getBufferedAmount();
+            reportedBufferedAmount = bufferedAmount;
+            reportedAcceptedBytes = acceptedBytes;
+        }
+
         WritableMap params = Arguments.createMap();
         params.putInt("id", mId);
         params.putInt("peerConnectionId", peerConnectionId);
+        params.putDouble("bufferedAmount", bufferedAmount);
+        params.putDouble("acceptedBytes", acceptedBytes);
+        params.putBoolean("low", low);
+        webRTCModule.sendEvent("dataChannelBufferedAmountChanged", params);
+    }
 
-        byte[] bytes;
-        if (buffer.data.hasArray()) {
-            bytes = buffer.data.array();
+    @Override
+    public void onBufferedAmountChange(long previousAmount) {
+        if (queuedBytes > 0) {
+            // The DataChannel is used on the lane of the PeerConnection.
+            ThreadUtils.runOnPeerConnectionExecutor(
+                peerConnectionId,
+                "dataChannelDrainSendQueue",
+                ThreadUtils.Priority.INTERACTIVE,
+                this::drainSendQueue);
         } else {
-            bytes = new byte[buffer.data.remaining()];
-            buffer.data.get(bytes);
+            updateBufferedAmount(mDataChannel.bufferedAmount());
         }
+    }
 
+    @Override
+    public void onMessage(DataChannel.Buffer buffer) {
+        // Only the bytes between the position and the limit of the buffer
+        // belong to the message, even if the buffer has a (larger) backing
+        // array.
         String type;
         String data;
         if (buffer.binary) {
             type = "binary";
-            data = Base64.encodeToString(bytes, Base64.NO_WRAP);
+            data = messageDecoder.encodeBinary(buffer.data);
         } else {
             type = "text";
-            data = new String(bytes, Charset.forName("UTF-8"));
+            data = messageDecoder.decodeText(buffer.data);
         }
-        params.putString("type", type);
-        params.putString("data", data);
 
-        webRTCModule.sendEvent("dataChannelReceiveMessage", params);
+        // The events are sent while holding the lock so that messages are
+        // delivered in order even while batching is being turned on or off.
+        synchronized (pendingMessagesLock) {
+            if (disposed) {
+                return;
+            }
+            if (messageBatchingWindow > 0) {
+                if (pendingMessages == null) {
+                    pendingMessages = Arguments.createArray();
+                    pendingMessagesFlush
+                        = ThreadUtils.schedule(messageBatchingWindow, this::flushMessages);
+                }
+
+                WritableMap messageParams = Arguments.createMap();
+                messageParams.putString("type", type);
+                messageParams.putString("data", data);
+                pendingMessages.pushMap(messageParams);
+
+                if (++pendingMessageCount >= messageBatchingMaxSize) {
+                    flushMessages();
+                }
+                return;
+            }
+
+            WritableMap params = Arguments.createMap();
+            params.putInt("id", mId);
+            params.putInt("peerConnectionId", peerConnectionId);
+            params.putString("type", type);
+            params.putString("data", data);
+
+            webRTCModule.sendEvent("dataChannelReceiveMessage", params);
+        }
+    }
+
+    /**
+     * Reports the received messages collected in the current batching window,
+     * if any, to JavaScript in a single event.
+     */
+    private void flushMessages() {
+        synchronized (pendingMessagesLock) {
+            if (pendingMessagesFlush != null) {
+                pendingMessagesFlush.cancel(false);
+                pendingMessagesFlush = null;
+            }
+            if (pendingMessages == null) {
+                return;
+            }
+
+            WritableMap params = Arguments.createMap();
+            params.putInt("id", mId);
+            params.putInt("peerConnectionId", peerConnectionId);
+            params.putArray("messages", pendingMessages);
+            pendingMessages = null;
+            pendingMessageCount = 0;
+
+            webRTCModule.sendEvent("dataChannelReceiveMessages", params);
+        }
     }
 
     @Override
     public void onStateChange() {
+        // Deliver the messages received so far before e.g. close.
+        flushMessages();
+
         WritableMap params = Arguments.createMap();
         params.putInt("id", mId);
         params.putInt("peerConnectionId", peerConnectionId);
-        params.putString("state", dataChannelStateString(mDataChannel.state()));
+        DataChannel.State state = mDataChannel.state();
+        params.putString("state", dataChannelStateString(state));
         webRTCModule.sendEvent("dataChannelStateChanged", params);
+
+        if (state == DataChannel.State.CLOSED) {
+            ThreadUtils.runOnPeerConnectionExecutor(
+                peerConnectionId,
+                "dataChannelDispose",
+                this::dispose);
+        }
     }
 }
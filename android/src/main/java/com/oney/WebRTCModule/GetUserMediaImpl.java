@@ -20,9 +20,9 @@ import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.webrtc.*;
 
@@ -44,9 +44,10 @@ class GetUserMediaImpl {
     /**
      * The application/library-specific private members of local
      * {@link MediaStreamTrack}s created by {@code GetUserMediaImpl} mapped by
-     * track ID.
+     * track ID. Concurrent because tracks are looked up on the lanes of
+     * PeerConnections too.
      */
-    private final Map<String, TrackPrivate> tracks = new HashMap<>();
+    private final Map<String, TrackPrivate> tracks = new ConcurrentHashMap<>();
 
     private final WebRTCModule webRTCModule;
 
@@ -338,7 +339,7 @@ class GetUserMediaImpl {
         }
 
         Log.d(TAG, "MediaStream id: " + streamId);
-        webRTCModule.localStreams.put(streamId, mediaStream);
+        webRTCModule.mediaRegistry.putLocalStream(streamId, mediaStream);
 
         successCallback.accept(streamId, tracksInfo);
     }
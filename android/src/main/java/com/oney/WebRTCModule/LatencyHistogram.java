@@ -0,0 +1,146 @@
+package com.oney.WebRTCModule;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations in microseconds. Values are recorded in
+ * log-linear buckets (8 per power of two) so percentiles are accurate to
+ * within 12.5% while the memory footprint stays fixed.
+ */
+public final class LatencyHistogram {
+    /**
+     * The number of sub-buckets per power of two, expressed as a power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The largest power of two tracked separately. Larger values (more than
+     * 18 minutes) end up in the last bucket.
+     */
+    private static final int MAX_EXPONENT = 40;
+
+    private static final int BUCKETS
+        = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * Records a specific duration.
+     *
+     * @param micros the duration to record in microseconds
+     */
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+
+        counts.incrementAndGet(bucketIndex(micros));
+        sum.addAndGet(micros);
+
+        long m;
+        while (micros > (m = max.get())) {
+            if (max.compareAndSet(m, micros)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Computes a summary of the values recorded so far. Values which are
+     * recorded concurrently may or may not be taken into account.
+     */
+    public Summary summarize() {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            total += (snapshot[i] = counts.get(i));
+        }
+
+        long max = this.max.get();
+
+        // The upper bound of a bucket may exceed the largest value recorded.
+        return new Summary(
+            total,
+            total == 0 ? 0 : sum.get() / total,
+            Math.min(max, percentile(snapshot, total, 0.5)),
+            Math.min(max, percentile(snapshot, total, 0.95)),
+            Math.min(max, percentile(snapshot, total, 0.99)),
+            max);
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+
+        int subBucket
+            = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the largest value which falls into a specific bucket.
+     */
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private static long percentile(long[] counts, long total, double p) {
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * p);
+        long seen = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return bucketUpperBound(i);
+            }
+        }
+
+        return bucketUpperBound(counts.length - 1);
+    }
+
+    /**
+     * An immutable summary of a {@code LatencyHistogram}. All durations are
+     * in microseconds.
+     */
+    public static final class Summary {
+        public final long count;
+        public final long mean;
+        public final long p50;
+        public final long p95;
+        public final long p99;
+        public final long max;
+
+        Summary(long count, long mean, long p50, long p95, long p99, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+            this.max = max;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.oney.WebRTCModule;
+
+import org.webrtc.MediaStream;
+import org.webrtc.MediaStreamTrack;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the reactTags of all <tt>MediaStream</tt>s (local and remote) and the
+ * IDs of remote <tt>MediaStreamTrack</tt>s to them and to their owners (i.e.
+ * the IDs of the PeerConnections which received them or {@link #LOCAL}) in
+ * constant time. Thread-safe so that e.g. <tt>WebRTCView</tt> may look
+ * streams up on the UI thread while the lanes of {@link ThreadUtils} change
+ * them.
+ */
+final class MediaRegistry {
+    /**
+     * The owner of local <tt>MediaStream</tt>s.
+     */
+    static final int LOCAL = -1;
+
+    private final ConcurrentHashMap<String, Entry<MediaStream>> streams
+        = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Entry<MediaStreamTrack>> remoteTracks
+        = new ConcurrentHashMap<>();
+
+    void putLocalStream(String reactTag, MediaStream stream) {
+        streams.put(reactTag, new Entry<>(stream, LOCAL));
+    }
+
+    void putRemoteStream(int peerConnectionId, String reactTag, MediaStream stream) {
+        streams.put(reactTag, new Entry<>(stream, peerConnectionId));
+    }
+
+    /**
+     * Gets the local or remote <tt>MediaStream</tt> with a specific reactTag.
+     */
+    MediaStream getStream(String reactTag) {
+        Entry<MediaStream> entry = streams.get(reactTag);
+
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Gets the local <tt>MediaStream</tt> with a specific reactTag.
+     */
+    MediaStream getLocalStream(String reactTag) {
+        Entry<MediaStream> entry = streams.get(reactTag);
+
+        return entry == null || entry.owner != LOCAL ? null : entry.value;
+    }
+
+    /**
+     * Removes the local <tt>MediaStream</tt> with a specific reactTag.
+     *
+     * @return the removed <tt>MediaStream</tt> or <tt>null</tt>
+     */
+    MediaStream removeLocalStream(String reactTag) {
+        return remove(streams, reactTag, LOCAL);
+    }
+
+    /**
+     * Removes the <tt>MediaStream</tt> with a specific reactTag if it was
+     * received by a specific PeerConnection.
+     */
+    void removeRemoteStream(int peerConnectionId, String reactTag) {
+        remove(streams, reactTag, peerConnectionId);
+    }
+
+    void putRemoteTrack(int peerConnectionId, MediaStreamTrack track) {
+        remoteTracks.put(track.id(), new Entry<>(track, peerConnectionId));
+    }
+
+    MediaStreamTrack getRemoteTrack(String trackId) {
+        Entry<MediaStreamTrack> entry = remoteTracks.get(trackId);
+
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Removes the remote <tt>MediaStreamTrack</tt> with a specific ID if it
+     * was received by a specific PeerConnection. Remote tracks of different
+     * PeerConnections may have the same ID (they are chosen by the remote
+     * peers) and the one registered last wins.
+     */
+    void removeRemoteTrack(int peerConnectionId, String trackId) {
+        remove(remoteTracks, trackId, peerConnectionId);
+    }
+
+    private static <T> T remove(
+            ConcurrentHashMap<String, Entry<T>> map,
+            String key,
+            int owner) {
+        Entry<T> entry = map.get(key);
+
+        if (entry != null && entry.owner == owner && map.remove(key, entry)) {
+            return entry.value;
+        }
+        return null;
+    }
+
+    private static final class Entry<T> {
+        final T value;
+        final int owner;
+
+        Entry(T value, int owner) {
+            this.value = value;
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.oney.WebRTCModule;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records, per {@link WebRTCModule} method, how long its operations wait in
+ * the queues of {@link ThreadUtils} and how long they run as well as counts
+ * of named events (e.g. cache hits and misses). Recording is
+ * disabled by default and costs a single volatile read per operation while
+ * disabled.
+ * <p>
+ * Native host code may poll {@link #getMethodMetrics()}, JavaScript may use
+ * {@code WebRTCModule.getModuleMetrics()}.
+ */
+public final class ModuleMetrics {
+    private static volatile boolean enabled;
+
+    /**
+     * The {@link MethodMetrics} mapped by method name.
+     */
+    private static volatile ConcurrentHashMap<String, MethodMetrics> methods
+        = new ConcurrentHashMap<>();
+
+    /**
+     * The counts of named events.
+     */
+    private static volatile ConcurrentHashMap<String, AtomicLong> counters
+        = new ConcurrentHashMap<>();
+
+    private ModuleMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables recording. Metrics recorded so far are kept.
+     */
+    public static void setEnabled(boolean enabled) {
+        ModuleMetrics.enabled = enabled;
+    }
+
+    /**
+     * Discards all metrics recorded so far.
+     */
+    public static void reset() {
+        methods = new ConcurrentHashMap<>();
+        counters = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the metrics recorded so far mapped by method name.
+     */
+    public static Map<String, MethodMetrics> getMethodMetrics() {
+        return Collections.unmodifiableMap(methods);
+    }
+
+    /**
+     * Gets the counts of named events recorded so far mapped by name.
+     */
+    public static Map<String, Long> getCounters() {
+        Map<String, Long> counts = new HashMap<>();
+
+        for (Map.Entry<String, AtomicLong> e : counters.entrySet()) {
+            counts.put(e.getKey(), e.getValue().get());
+        }
+
+        return counts;
+    }
+
+    /**
+     * Counts an occurrence of a specific named event if recording is enabled.
+     */
+    static void count(String name) {
+        if (!enabled) {
+            return;
+        }
+
+        ConcurrentHashMap<String, AtomicLong> counters = ModuleMetrics.counters;
+        AtomicLong counter = counters.get(name);
+
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+            counter = counters.putIfAbsent(name, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+
+        counter.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of operations which are queued and have not started
+     * running yet. Only operations queued while recording was enabled are
+     * counted.
+     */
+    public static int getQueueDepth() {
+        int queueDepth = 0;
+
+        for (MethodMetrics m : methods.values()) {
+            queueDepth += m.getQueueDepth();
+        }
+
+        return queueDepth;
+    }
+
+    /**
+     * Wraps a specific operation, if recording is enabled, so that its wait
+     * and run times get recorded under a specific method name.
+     */
+    static Runnable instrument(String name, Runnable runnable) {
+        if (!enabled || name == null) {
+            return runnable;
+        }
+
+        MethodMetrics m = getOrCreate(name);
+        long enqueuedAt = System.nanoTime();
+
+        m.queueDepth.incrementAndGet();
+
+        return () -> {
+            long startedAt = System.nanoTime();
+
+            m.queueDepth.decrementAndGet();
+            m.wait.record((startedAt - enqueuedAt) / 1000);
+            try {
+                runnable.run();
+            } finally {
+                m.run.record((System.nanoTime() - startedAt) / 1000);
+            }
+        };
+    }
+
+    /**
+     * Gets the {@link MethodMetrics} of a specific method, creating it if
+     * necessary.
+     */
+    static MethodMetrics getOrCreate(String name) {
+        ConcurrentHashMap<String, MethodMetrics> methods = ModuleMetrics.methods;
+        MethodMetrics m = methods.get(name);
+
+        if (m == null) {
+            MethodMetrics newM = new MethodMetrics();
+            m = methods.putIfAbsent(name, newM);
+            if (m == null) {
+                m = newM;
+            }
+        }
+
+        return m;
+    }
+
+    /**
+     * Represents the metrics recorded so far as a JavaScript object. Durations
+     * are in milliseconds.
+     */
+    static WritableMap toWritableMap() {
+        WritableMap params = Arguments.createMap();
+        WritableMap methodsParams = Arguments.createMap();
+        int queueDepth = 0;
+
+        for (Map.Entry<String, MethodMetrics> e : methods.entrySet()) {
+            MethodMetrics m = e.getValue();
+            WritableMap methodParams = Arguments.createMap();
+
+            methodParams.putInt("queueDepth", m.getQueueDepth());
+            methodParams.putMap("wait", toWritableMap(m.getWait()));
+            methodParams.putMap("run", toWritableMap(m.getRun()));
+            methodsParams.putMap(e.getKey(), methodParams);
+            queueDepth += m.getQueueDepth();
+        }
+
+        WritableMap countersParams = Arguments.createMap();
+        for (Map.Entry<String, AtomicLong> e : counters.entrySet()) {
+            countersParams.putDouble(e.getKey(), e.getValue().get());
+        }
+
+        params.putBoolean("enabled", enabled);
+        params.putInt("queueDepth", queueDepth);
+        params.putMap("methods", methodsParams);
+        params.putMap("counters", countersParams);
+
+        return params;
+    }
+
+    private static WritableMap toWritableMap(LatencyHistogram.Summary summary) {
+        WritableMap params = Arguments.createMap();
+
+        params.putDouble("count", summary.count);
+        params.putDouble("mean", summary.mean / 1000.0);
+        params.putDouble("p50", summary.p50 / 1000.0);
+        params.putDouble("p95", summary.p95 / 1000.0);
+        params.putDouble("p99", summary.p99 / 1000.0);
+        params.putDouble("max", summary.max / 1000.0);
+
+        return params;
+    }
+
+    /**
+     * The metrics recorded for a single method.
+     */
+    public static final class MethodMetrics {
+        private final AtomicInteger queueDepth = new AtomicInteger();
+        private final LatencyHistogram wait = new LatencyHistogram();
+        private final LatencyHistogram run = new LatencyHistogram();
+
+        MethodMetrics() {
+        }
+
+        /**
+         * Gets the number of operations of this method which are queued and
+         * have not started running yet.
+         */
+        public int getQueueDepth() {
+            return Math.max(0, queueDepth.get());
+        }
+
+        /**
+         * Gets the time from enqueuing to starting operations of this method.
+         */
+        public LatencyHistogram.Summary getWait() {
+            return wait.summarize();
+        }
+
+        /**
+         * Gets the time operations of this method run on the executor.
+         */
+        public LatencyHistogram.Summary getRun() {
+            return run.summarize();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.oney.WebRTCModule;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Records when the milestones of the setup of a PeerConnection happen, using
+ * the monotonic <tt>System.nanoTime()</tt>, so that the latency of the setup
+ * can be broken down:
+ * <ul>
+ * <li>spans (i.e. start and end) for <tt>peerConnectionInit</tt>,
+ * <tt>createOffer</tt>, <tt>createAnswer</tt>, <tt>setLocalDescription</tt>
+ * and <tt>setRemoteDescription</tt>;</li>
+ * <li>instants for <tt>firstLocalCandidate</tt>,
+ * <tt>iceGatheringComplete</tt>, <tt>iceChecking</tt>, <tt>iceConnected</tt>,
+ * <tt>dtlsConnected</tt> (i.e. the connection state became
+ * <tt>connected</tt>) and <tt>firstRemoteFrame</tt>.</li>
+ * </ul>
+ * Renegotiations add further events. The methods may be called on any
+ * thread.
+ */
+class NegotiationTimeline {
+    private static final String TAG = WebRTCModule.TAG;
+
+    /**
+     * The maximum number of events recorded so that long calls with many
+     * renegotiations don't grow the timeline without bound.
+     */
+    private static final int MAX_EVENTS = 256;
+
+    private static final char BEGIN = 'b';
+    private static final char END = 'e';
+    private static final char INSTANT = 'i';
+
+    private final int id;
+
+    /**
+     * The time in nanoseconds which the times of the events are relative to
+     * i.e. when the PeerConnection was requested.
+     */
+    private final long origin;
+
+    private final List<Event> events = new ArrayList<>();
+
+    /**
+     * The names of the instants recorded by {@link #markOnce}.
+     */
+    private final Set<String> marked = new HashSet<>();
+
+    private int droppedEvents;
+
+    /**
+     * Initializes a new timeline for a specific PeerConnection.
+     *
+     * @param id the ID of the PeerConnection
+     * @param origin the <tt>System.nanoTime()</tt> at which the
+     * PeerConnection was requested
+     */
+    NegotiationTimeline(int id, long origin) {
+        this.id = id;
+        this.origin = origin;
+    }
+
+    void begin(String name) {
+        begin(name, System.nanoTime());
+    }
+
+    synchronized void begin(String name, long time) {
+        add(new Event(name, BEGIN, time, null));
+    }
+
+    /**
+     * Ends the span of a specific name.
+     *
+     * @param error the reason the operation failed or <tt>null</tt> if it
+     * succeeded
+     */
+    synchronized void end(String name, @Nullable String error) {
+        add(new Event(name, END, System.nanoTime(), error));
+    }
+
+    synchronized void mark(String name) {
+        add(new Event(name, INSTANT, System.nanoTime(), null));
+    }
+
+    /**
+     * Records an instant of a specific name unless one has already been
+     * recorded e.g. for the first remote frame.
+     */
+    synchronized void markOnce(String name) {
+        if (marked.add(name)) {
+            add(new Event(name, INSTANT, System.nanoTime(), null));
+        }
+    }
+
+    private void add(Event event) {
+        if (events.size() < MAX_EVENTS) {
+            events.add(event);
+        } else {
+            droppedEvents++;
+        }
+    }
+
+    /**
+     * Gets the events of this timeline, with times in milliseconds relative
+     * to when the PeerConnection was requested, and the time of the first
+     * occurrence of each milestone (the end of the spans) by name.
+     */
+    synchronized WritableMap toWritableMap() {
+        WritableArray eventsArray = Arguments.createArray();
+        WritableMap milestones = Arguments.createMap();
+
+        for (Event event : events) {
+            double time = (event.time - origin) / 1e6;
+
+            WritableMap eventMap = Arguments.createMap();
+            eventMap.putString("name", event.name);
+            eventMap.putString("phase", event.getPhaseString());
+            eventMap.putDouble("time", time);
+            if (event.error != null) {
+                eventMap.putString("error", event.error);
+            }
+            eventsArray.pushMap(eventMap);
+
+            if (event.phase != BEGIN && !milestones.hasKey(event.name)) {
+                milestones.putDouble(event.name, time);
+            }
+        }
+
+        WritableMap map = Arguments.createMap();
+        map.putArray("events", eventsArray);
+        map.putMap("milestones", milestones);
+        map.putInt("droppedEvents", droppedEvents);
+        return map;
+    }
+
+    /**
+     * Exports this timeline in the Chrome trace event format (which
+     * chrome://tracing and Perfetto load). The timestamps are those of
+     * <tt>System.nanoTime()</tt> in microseconds so that the traces of the
+     * PeerConnections of an app may be merged.
+     *
+     * @return the JSON of the trace or <tt>null</tt> if it could not be
+     * serialized
+     */
+    @Nullable
+    synchronized String toTraceEvents() {
+        try {
+            JSONArray traceEvents = new JSONArray();
+
+            JSONObject threadName = new JSONObject();
+            threadName.put("name", "thread_name");
+            threadName.put("ph", "M");
+            threadName.put("pid", 1);
+            threadName.put("tid", id);
+            threadName.put("args", new JSONObject().put("name", "PeerConnection " + id));
+            traceEvents.put(threadName);
+
+            for (Event event : events) {
+                JSONObject object = new JSONObject();
+                object.put("name", event.name);
+                object.put("cat", "negotiation");
+                object.put("ph", String.valueOf(event.phase));
+                object.put("ts", event.time / 1000);
+                object.put("pid", 1);
+                object.put("tid", id);
+                if (event.phase == INSTANT) {
+                    object.put("s", "t");
+                } else {
+                    // Async events because the spans of a PeerConnection
+                    // may overlap without nesting.
+                    object.put("id", id);
+                }
+                if (event.error != null) {
+                    object.put("args", new JSONObject().put("error", event.error));
+                }
+                traceEvents.put(object);
+            }
+
+            JSONObject trace = new JSONObject();
+            trace.put("traceEvents", traceEvents);
+            trace.put("displayTimeUnit", "ms");
+            return trace.toString();
+        } catch (JSONException e) {
+            Log.w(TAG, "Failed to export the negotiation timeline of " + id, e);
+            return null;
+        }
+    }
+
+    private static final class Event {
+        final String name;
+        final char phase;
+        final long time;
+        @Nullable
+        final String error;
+
+        Event(String name, char phase, long time, @Nullable String error) {
+            this.name = name;
+            this.phase = phase;
+            this.time = time;
+            this.error = error;
+        }
+
+        String getPhaseString() {
+            switch (phase) {
+                case BEGIN:
+                    return "start";
+                case END:
+                    return "end";
+                default:
+                    return "instant";
+            }
+        }
+    }
+}
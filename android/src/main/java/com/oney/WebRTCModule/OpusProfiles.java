@@ -0,0 +1,184 @@
+package com.oney.WebRTCModule;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Named sets of Opus parameters (RFC 7587) which are written into the
+ * <tt>a=fmtp</tt> lines of the Opus payload types and the <tt>a=ptime</tt>
+ * lines of the audio media sections:
+ * <ul>
+ * <li><tt>voice-low-bandwidth</tt>: mono, DTX, in-band FEC, 16 kbps,
+ * wideband, 40 ms packets;</li>
+ * <li><tt>voice-resilient</tt>: mono, in-band FEC, 32 kbps, 20 ms
+ * packets;</li>
+ * <li><tt>music-stereo</tt>: stereo, no DTX nor FEC, 128 kbps, fullband,
+ * 20 ms packets.</li>
+ * </ul>
+ * The parameters of the profile replace those with the same names, the other
+ * parameters are kept.
+ */
+final class OpusProfiles {
+    private static final Map<String, Profile> profiles;
+
+    static {
+        Map<String, Profile> map = new HashMap<>();
+
+        map.put(
+            "voice-low-bandwidth",
+            new Profile(40)
+                .put("minptime", "10")
+                .put("stereo", "0")
+                .put("sprop-stereo", "0")
+                .put("usedtx", "1")
+                .put("useinbandfec", "1")
+                .put("maxaveragebitrate", "16000")
+                .put("maxplaybackrate", "16000"));
+        map.put(
+            "voice-resilient",
+            new Profile(20)
+                .put("minptime", "10")
+                .put("stereo", "0")
+                .put("sprop-stereo", "0")
+                .put("usedtx", "0")
+                .put("useinbandfec", "1")
+                .put("maxaveragebitrate", "32000"));
+        map.put(
+            "music-stereo",
+            new Profile(20)
+                .put("minptime", "10")
+                .put("stereo", "1")
+                .put("sprop-stereo", "1")
+                .put("usedtx", "0")
+                .put("useinbandfec", "0")
+                .put("maxaveragebitrate", "128000")
+                .put("maxplaybackrate", "48000"));
+        profiles = Collections.unmodifiableMap(map);
+    }
+
+    private OpusProfiles() {
+    }
+
+    /**
+     * Creates the {@link SdpTransform} which applies a specific profile.
+     *
+     * @throws IllegalArgumentException if there is no profile with the
+     * specified name
+     */
+    static SdpTransform create(String name) {
+        Profile profile = name == null ? null : profiles.get(name);
+
+        if (profile == null) {
+            throw new IllegalArgumentException("Unknown audio profile: " + name);
+        }
+        return (sdp, type) -> apply(profile, sdp);
+    }
+
+    private static String apply(Profile profile, String sdp) {
+        SdpTransforms.ParsedSdp description = SdpTransforms.ParsedSdp.parse(sdp);
+
+        for (SdpTransforms.MediaSection media : description.media) {
+            if (!media.isOfKind("audio")) {
+                continue;
+            }
+
+            Map<String, String> names = media.getCodecNames();
+            boolean hasOpus = false;
+            for (Map.Entry<String, String> e : names.entrySet()) {
+                if ("OPUS".equals(e.getValue())) {
+                    hasOpus = true;
+                    setFmtp(media.lines, e.getKey(), profile.parameters);
+                }
+            }
+            if (hasOpus) {
+                setPtime(media.lines, profile.ptime);
+            }
+        }
+        return description.toString();
+    }
+
+    /**
+     * Merges specific parameters into the <tt>a=fmtp</tt> line of a specific
+     * payload type, adding the line after its <tt>a=rtpmap</tt> line if there
+     * is none.
+     */
+    private static void setFmtp(List<String> lines, String pt, Map<String, String> parameters) {
+        String prefix = "a=fmtp:" + pt + " ";
+        Map<String, String> merged = new LinkedHashMap<>();
+        int index = -1;
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.startsWith(prefix)) {
+                index = i;
+                for (String parameter : line.substring(prefix.length()).split(";")) {
+                    parameter = parameter.trim();
+                    int equals = parameter.indexOf('=');
+                    if (equals > 0) {
+                        merged.put(
+                            parameter.substring(0, equals),
+                            parameter.substring(equals + 1));
+                    }
+                }
+                break;
+            }
+        }
+        merged.putAll(parameters);
+
+        StringBuilder builder = new StringBuilder(prefix);
+        boolean first = true;
+        for (Map.Entry<String, String> e : merged.entrySet()) {
+            if (!first) {
+                builder.append(';');
+            }
+            builder.append(e.getKey()).append('=').append(e.getValue());
+            first = false;
+        }
+
+        if (index >= 0) {
+            lines.set(index, builder.toString());
+        } else {
+            lines.add(indexAfterRtpmap(lines, pt), builder.toString());
+        }
+    }
+
+    private static int indexAfterRtpmap(List<String> lines, String pt) {
+        String prefix = "a=rtpmap:" + pt + " ";
+
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).startsWith(prefix)) {
+                return i + 1;
+            }
+        }
+        return lines.size();
+    }
+
+    private static void setPtime(List<String> lines, int ptime) {
+        String line = "a=ptime:" + ptime;
+
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).startsWith("a=ptime:")) {
+                lines.set(i, line);
+                return;
+            }
+        }
+        lines.add(line);
+    }
+
+    private static final class Profile {
+        final int ptime;
+        final Map<String, String> parameters = new LinkedHashMap<>();
+
+        Profile(int ptime) {
+            this.ptime = ptime;
+        }
+
+        Profile put(String name, String value) {
+            parameters.put(name, value);
+            return this;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import androidx.annotation.Nullable;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 
@@ -18,38 +19,134 @@ import org.webrtc.IceCandidate;
 import org.webrtc.MediaStream;
 import org.webrtc.MediaStreamTrack;
 import org.webrtc.PeerConnection;
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsCollectorCallback;
+import org.webrtc.RtpParameters;
 import org.webrtc.RtpReceiver;
+import org.webrtc.RtpSender;
+import org.webrtc.RtpTransceiver;
 import org.webrtc.VideoTrack;
 
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
 
 class PeerConnectionObserver implements PeerConnection.Observer {
     private final static String TAG = WebRTCModule.TAG;
 
     private final SparseArray<DataChannel> dataChannels
         = new SparseArray<DataChannel>();
+    private final SparseArray<DataChannelObserver> dataChannelObservers
+        = new SparseArray<DataChannelObserver>();
     private final int id;
     private PeerConnection peerConnection;
     final List<MediaStream> localStreams;
-    final Map<String, MediaStream> remoteStreams;
+    final RemoteStreamIndex remoteStreams;
     final Map<String, MediaStreamTrack> remoteTracks;
+    /**
+     * The batches of remote ICE candidates which were added before the remote
+     * description was set and are to be added once it has been set.
+     */
+    private final List<PendingRemoteCandidates> pendingRemoteCandidates;
+    /**
+     * The transceivers added by {@link #addTransceiver} mapped by the IDs of
+     * the tracks they send.
+     */
+    private final Map<String, RtpTransceiver> transceivers;
+    /**
+     * The transceivers which receive the remote tracks reported under Unified
+     * Plan mapped by the IDs of the tracks, to notice when they stop
+     * receiving.
+     */
+    private final Map<String, RtpTransceiver> remoteTransceivers;
+    /**
+     * The reactTags of the remote streams which the remote tracks reported
+     * under Unified Plan were reported in mapped by the IDs of the tracks.
+     */
+    private final Map<String, List<String>> remoteTrackStreams;
     private final VideoTrackAdapter videoTrackAdapters;
     private final WebRTCModule webRTCModule;
 
-    PeerConnectionObserver(WebRTCModule webRTCModule, int id) {
+    /**
+     * The time in milliseconds for which local ICE candidates are collected
+     * and then reported to JavaScript in a single event. Zero (the default)
+     * reports every candidate in its own event.
+     */
+    private int iceCandidateBatchingWindow;
+
+    /**
+     * Whether the associated <tt>PeerConnection</tt> uses Unified Plan.
+     */
+    private volatile boolean unifiedPlan;
+
+    /**
+     * The local ICE candidates collected in the current batching window, if
+     * any. Guarded by {@link #localCandidatesLock}.
+     */
+    private WritableArray pendingLocalCandidates;
+
+    /**
+     * The scheduled flush of {@link #pendingLocalCandidates}, if any. Guarded
+     * by {@link #localCandidatesLock}.
+     */
+    private ScheduledFuture<?> pendingLocalCandidatesFlush;
+
+    private final Object localCandidatesLock = new Object();
+
+    /**
+     * The <tt>RTCStats</tt> last reported by {@link #getStatsDelta} mapped by
+     * ID and their version. Guarded by {@link #statsDeltaLock}.
+     */
+    private Map<String, RTCStats> lastStats;
+    private int lastStatsVersion;
+
+    private final Object statsDeltaLock = new Object();
+
+    /**
+     * The running adaptive bitrate control loop, if any. Confined to the lane
+     * of the PeerConnection.
+     */
+    private BitrateController bitrateController;
+
+    /**
+     * The transforms applied to the SDP of the offers and answers created by
+     * the associated <tt>PeerConnection</tt>.
+     */
+    private volatile List<SdpTransform> sdpTransforms = Collections.emptyList();
+
+    /**
+     * The Opus profile (see {@link OpusProfiles}) applied to the local and
+     * remote descriptions set on the associated <tt>PeerConnection</tt> or
+     * <tt>null</tt> if none is.
+     */
+    private volatile SdpTransform audioProfile;
+
+    /**
+     * The milestones of the setup of the associated <tt>PeerConnection</tt>.
+     */
+    final NegotiationTimeline negotiationTimeline;
+
+    PeerConnectionObserver(
+            WebRTCModule webRTCModule,
+            int id,
+            NegotiationTimeline negotiationTimeline) {
         this.webRTCModule = webRTCModule;
         this.id = id;
+        this.negotiationTimeline = negotiationTimeline;
         this.localStreams = new ArrayList<MediaStream>();
-        this.remoteStreams = new HashMap<String, MediaStream>();
+        this.remoteStreams = new RemoteStreamIndex();
         this.remoteTracks = new HashMap<String, MediaStreamTrack>();
-        this.videoTrackAdapters = new VideoTrackAdapter(webRTCModule, id);
+        this.pendingRemoteCandidates = new ArrayList<PendingRemoteCandidates>();
+        this.transceivers = new HashMap<String, RtpTransceiver>();
+        this.remoteTransceivers = new HashMap<String, RtpTransceiver>();
+        this.remoteTrackStreams = new HashMap<String, List<String>>();
+        this.videoTrackAdapters = new VideoTrackAdapter(webRTCModule, id, negotiationTimeline);
     }
 
     /**
@@ -61,7 +158,7 @@ class PeerConnectionObserver implements PeerConnection.Observer {
      * @return <tt>true</tt> if the specified <tt>localStream</tt> was added to
      * the associated <tt>PeerConnection</tt>; otherwise, <tt>false</tt>
      */
-    boolean addStream(MediaStream localStream) {
+    synchronized boolean addStream(MediaStream localStream) {
         if (peerConnection != null && peerConnection.addStream(localStream)) {
             localStreams.add(localStream);
 
@@ -81,7 +178,7 @@ class PeerConnectionObserver implements PeerConnection.Observer {
      * this instance resulted in a modification of its internal list of local
      * <tt>MediaStream</tt>s; otherwise, <tt>false</tt>
      */
-    boolean removeStream(MediaStream localStream) {
+    synchronized boolean removeStream(MediaStream localStream) {
         if (peerConnection != null) {
             peerConnection.removeStream(localStream);
         }
@@ -89,6 +186,130 @@ class PeerConnectionObserver implements PeerConnection.Observer {
         return localStreams.remove(localStream);
     }
 
+    /**
+     * Adds a transceiver which sends a specific local track e.g. in multiple
+     * simulcast encodings. Requires Unified Plan.
+     *
+     * @param track the local track to send
+     * @param init the JavaScript <tt>RTCRtpTransceiverInit</tt> dictionary
+     * @param promise resolved once the transceiver has been added
+     */
+    synchronized void addTransceiver(MediaStreamTrack track, ReadableMap init, Promise promise) {
+        if (peerConnection == null) {
+            promise.reject("InvalidStateError", "The PeerConnection is closed");
+            return;
+        }
+
+        RtpTransceiver transceiver;
+        try {
+            transceiver
+                = peerConnection.addTransceiver(
+                    track,
+                    RtpParametersUtils.transceiverInitFromReadableMap(init));
+        } catch (IllegalStateException e) {
+            // e.g. Unified Plan is not in use.
+            Log.e(TAG, "addTransceiver() failed", e);
+            promise.reject("InvalidStateError", e.getMessage());
+            return;
+        } catch (RuntimeException e) {
+            // e.g. IllegalArgumentException for an invalid direction.
+            Log.e(TAG, "addTransceiver() failed", e);
+            promise.reject("OperationError", e.getMessage());
+            return;
+        }
+
+        transceivers.put(track.id(), transceiver);
+        promise.resolve(null);
+    }
+
+    /**
+     * Sets the direction of the transceiver which sends a specific track.
+     *
+     * @param trackId the ID of the track
+     * @param direction the JavaScript <tt>RTCRtpTransceiverDirection</tt>
+     */
+    void setTransceiverDirection(String trackId, String direction) {
+        RtpTransceiver transceiver = transceivers.get(trackId);
+
+        if (transceiver == null) {
+            Log.d(TAG, "setTransceiverDirection() transceiver is null: " + trackId);
+            return;
+        }
+
+        try {
+            transceiver.setDirection(RtpParametersUtils.directionFromString(direction));
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "setTransceiverDirection() failed", e);
+        }
+    }
+
+    /**
+     * Starts adapting the encodings of the video senders to the network and
+     * the device following a specific policy, replacing the running control
+     * loop, if any.
+     *
+     * @param policy the JavaScript object describing the
+     * {@link BitrateController.Policy} or <tt>null</tt> for the defaults
+     */
+    void startBitrateController(ReadableMap policy) {
+        stopBitrateController();
+
+        bitrateController
+            = new BitrateController(
+                webRTCModule,
+                id,
+                BitrateController.Policy.fromReadableMap(policy));
+        bitrateController.start();
+    }
+
+    void stopBitrateController() {
+        if (bitrateController != null) {
+            bitrateController.stop();
+            bitrateController = null;
+        }
+    }
+
+    void setSdpTransforms(List<SdpTransform> sdpTransforms) {
+        this.sdpTransforms = sdpTransforms;
+    }
+
+    /**
+     * Applies the SDP transforms to the SDP of an offer or an answer created
+     * by the associated <tt>PeerConnection</tt>.
+     *
+     * @param sdp the created SDP
+     * @param type <tt>offer</tt> or <tt>answer</tt>
+     * @return the transformed SDP
+     */
+    String transformSdp(String sdp, String type) {
+        return SdpTransforms.apply(sdpTransforms, sdp, type);
+    }
+
+    /**
+     * Sets the Opus profile applied to the local and remote descriptions.
+     *
+     * @param name the name of the profile or <tt>null</tt> to apply none
+     * @throws IllegalArgumentException if there is no profile with the
+     * specified name
+     */
+    void setAudioProfile(String name) {
+        audioProfile = name == null ? null : OpusProfiles.create(name);
+    }
+
+    /**
+     * Applies the Opus profile to the SDP of a local or remote description
+     * about to be set on the associated <tt>PeerConnection</tt>.
+     *
+     * @param sdp the SDP of the description
+     * @param type <tt>offer</tt>, <tt>pranswer</tt> or <tt>answer</tt>
+     * @return the SDP to set
+     */
+    String applyAudioProfile(String sdp, String type) {
+        SdpTransform audioProfile = this.audioProfile;
+
+        return audioProfile == null ? sdp : audioProfile.transform(sdp, type);
+    }
+
     PeerConnection getPeerConnection() {
         return peerConnection;
     }
@@ -97,9 +318,39 @@ class PeerConnectionObserver implements PeerConnection.Observer {
         this.peerConnection = peerConnection;
     }
 
-    void close() {
+    /**
+     * Sets the time for which local ICE candidates are collected and reported
+     * to JavaScript in a single <tt>peerConnectionGotICECandidates</tt> event.
+     * The collected candidates are also reported as soon as gathering
+     * completes.
+     *
+     * @param iceCandidateBatchingWindow the time in milliseconds or zero to
+     * report every candidate in its own event
+     */
+    void setIceCandidateBatchingWindow(int iceCandidateBatchingWindow) {
+        this.iceCandidateBatchingWindow = Math.max(0, iceCandidateBatchingWindow);
+    }
+
+    /**
+     * Sets whether the associated <tt>PeerConnection</tt> uses Unified Plan
+     * i.e. reports remote tracks with {@link #onAddTrack} only rather than
+     * with {@link #onAddStream} too.
+     */
+    void setUnifiedPlan(boolean unifiedPlan) {
+        this.unifiedPlan = unifiedPlan;
+    }
+
+    /**
+     * Closes and disposes of the associated <tt>PeerConnection</tt>. Local
+     * <tt>MediaStream</tt>s may be released (on the global lane) concurrently
+     * with this method (on the lane of this <tt>PeerConnection</tt>), hence
+     * the synchronization with {@link #removeStream(MediaStream)}.
+     */
+    synchronized void close() {
         Log.d(TAG, "PeerConnection.close() for " + id);
 
+        stopBitrateController();
+
         // Close the PeerConnection first to stop any events.
         peerConnection.close();
 
@@ -113,7 +364,7 @@ class PeerConnectionObserver implements PeerConnection.Observer {
         }
 
         // Remove video track adapters
-        for (MediaStream stream : remoteStreams.values()) {
+        for (MediaStream stream : remoteStreams.streams()) {
             for (VideoTrack videoTrack : stream.videoTracks) {
                 videoTrackAdapters.removeAdapter(videoTrack);
             }
@@ -123,13 +374,43 @@ class PeerConnectionObserver implements PeerConnection.Observer {
         // PeerConnection. Call dispose() to free all remaining resources held
         // by the PeerConnection instance (RtpReceivers, RtpSenders, etc.)
         peerConnection.dispose();
+        peerConnection = null;
 
+        for (String streamReactTag : remoteStreams.reactTags()) {
+            webRTCModule.mediaRegistry.removeRemoteStream(id, streamReactTag);
+        }
+        for (String trackId : remoteTracks.keySet()) {
+            webRTCModule.mediaRegistry.removeRemoteTrack(id, trackId);
+        }
         remoteStreams.clear();
         remoteTracks.clear();
+        transceivers.clear();
+        remoteTransceivers.clear();
+        remoteTrackStreams.clear();
+
+        // The remote description will never be set so the kept candidates
+        // will never be added.
+        for (PendingRemoteCandidates pending : pendingRemoteCandidates) {
+            pending.callback.onAdded(new boolean[pending.candidates.size()]);
+        }
+        pendingRemoteCandidates.clear();
+
+        synchronized (localCandidatesLock) {
+            if (pendingLocalCandidatesFlush != null) {
+                pendingLocalCandidatesFlush.cancel(false);
+                pendingLocalCandidatesFlush = null;
+            }
+            pendingLocalCandidates = null;
+        }
 
         // Unlike on iOS, we cannot unregister the DataChannel.Observer
-        // instance on Android. At least do whatever else we do on iOS.
+        // instance on Android. At least do whatever else we do on iOS and stop
+        // the observers from reporting anything anymore.
+        for (int i = 0; i < dataChannelObservers.size(); i++) {
+            dataChannelObservers.valueAt(i).dispose();
+        }
         dataChannels.clear();
+        dataChannelObservers.clear();
     }
 
     void createDataChannel(String label, ReadableMap config) {
@@ -167,14 +448,20 @@ class PeerConnectionObserver implements PeerConnection.Observer {
         if (dataChannel != null) {
             dataChannel.close();
             dataChannels.remove(dataChannelId);
+
+            DataChannelObserver observer = dataChannelObservers.get(dataChannelId);
+            if (observer != null) {
+                observer.clearSendQueue();
+                dataChannelObservers.remove(dataChannelId);
+            }
         } else {
             Log.d(TAG, "dataChannelClose() dataChannel is null");
         }
     }
 
     void dataChannelSend(int dataChannelId, String data, String type) {
-        DataChannel dataChannel = dataChannels.get(dataChannelId);
-        if (dataChannel != null) {
+        DataChannelObserver observer = dataChannelObservers.get(dataChannelId);
+        if (observer != null) {
             byte[] byteArray;
             if (type.equals("text")) {
                 try {
@@ -191,32 +478,392 @@ class PeerConnectionObserver implements PeerConnection.Observer {
             }
             ByteBuffer byteBuffer = ByteBuffer.wrap(byteArray);
             DataChannel.Buffer buffer = new DataChannel.Buffer(byteBuffer, type.equals("binary"));
-            dataChannel.send(buffer);
+            observer.send(buffer);
         } else {
             Log.d(TAG, "dataChannelSend() dataChannel is null");
         }
     }
 
+    void dataChannelSetMessageBatching(int dataChannelId, int window, int maxSize) {
+        DataChannelObserver observer = dataChannelObservers.get(dataChannelId);
+        if (observer != null) {
+            observer.setMessageBatching(window, maxSize);
+        } else {
+            Log.d(TAG, "dataChannelSetMessageBatching() dataChannel is null");
+        }
+    }
+
+    void dataChannelSetBufferedAmountLowThreshold(int dataChannelId, long threshold) {
+        DataChannelObserver observer = dataChannelObservers.get(dataChannelId);
+        if (observer != null) {
+            observer.setBufferedAmountLowThreshold(threshold);
+        } else {
+            Log.d(TAG, "dataChannelSetBufferedAmountLowThreshold() dataChannel is null");
+        }
+    }
+
+    void dataChannelSetSendQueueHighWatermark(int dataChannelId, long highWatermark) {
+        DataChannelObserver observer = dataChannelObservers.get(dataChannelId);
+        if (observer != null) {
+            observer.setSendQueueHighWatermark(highWatermark);
+        } else {
+            Log.d(TAG, "dataChannelSetSendQueueHighWatermark() dataChannel is null");
+        }
+    }
+
+    /**
+     * Adds a batch of remote ICE candidates to the associated
+     * <tt>PeerConnection</tt>. If the remote description has not been set yet,
+     * the candidates are kept and added by
+     * {@link #addPendingRemoteCandidates()} and the callback is invoked then
+     * (or when the <tt>PeerConnection</tt> is closed before).
+     *
+     * @param candidates the remote ICE candidates to add
+     * @param callback the callback to invoke with the result of adding each of
+     * the specified <tt>candidates</tt>
+     */
+    void addIceCandidates(List<IceCandidate> candidates, IceCandidatesCallback callback) {
+        // Retrieving the remote description copies it over JNI so do it once
+        // per batch rather than once per candidate.
+        if (peerConnection.getRemoteDescription() == null) {
+            pendingRemoteCandidates.add(new PendingRemoteCandidates(candidates, callback));
+            return;
+        }
+
+        callback.onAdded(addIceCandidatesNow(candidates));
+    }
+
+    private boolean[] addIceCandidatesNow(List<IceCandidate> candidates) {
+        boolean[] results = new boolean[candidates.size()];
+
+        for (int i = 0; i < results.length; i++) {
+            results[i] = peerConnection.addIceCandidate(candidates.get(i));
+        }
+        return results;
+    }
+
+    /**
+     * Adds the remote ICE candidates which were kept by
+     * {@link #addIceCandidates(List)} because the remote description had not
+     * been set yet. Invoked after the remote description has been set.
+     */
+    void addPendingRemoteCandidates() {
+        if (peerConnection == null || pendingRemoteCandidates.isEmpty()) {
+            return;
+        }
+
+        List<PendingRemoteCandidates> pendings = new ArrayList<>(pendingRemoteCandidates);
+        pendingRemoteCandidates.clear();
+
+        int added = 0;
+        int failed = 0;
+        for (PendingRemoteCandidates pending : pendings) {
+            boolean[] results = addIceCandidatesNow(pending.candidates);
+            for (boolean result : results) {
+                if (result) {
+                    added++;
+                } else {
+                    failed++;
+                }
+            }
+            pending.callback.onAdded(results);
+        }
+
+        Log.d(TAG, "Added " + added
+            + " pending remote ICE candidates for " + id
+            + ", " + failed + " failed");
+    }
+
+    /**
+     * Receives the result of {@link #addIceCandidates}.
+     */
+    interface IceCandidatesCallback {
+        /**
+         * @param results whether each of the candidates was added
+         */
+        void onAdded(boolean[] results);
+    }
+
+    /**
+     * A batch of remote ICE candidates kept until the remote description is
+     * set and the callback to report the result of adding them to.
+     */
+    private static final class PendingRemoteCandidates {
+        final List<IceCandidate> candidates;
+        final IceCandidatesCallback callback;
+
+        PendingRemoteCandidates(List<IceCandidate> candidates, IceCandidatesCallback callback) {
+            this.candidates = candidates;
+            this.callback = callback;
+        }
+    }
+
     void getStats(Promise promise) {
-        peerConnection.getStats(rtcStatsReport -> {
+        getStats(rtcStatsReport -> {
             promise.resolve(StringUtils.statsToJSON(rtcStatsReport));
         });
     }
 
+    /**
+     * Gets the stats of the associated <tt>PeerConnection</tt> which relate to
+     * a specific track of one of its senders or receivers (see
+     * {@link StatsSelector}).
+     *
+     * @param trackId the ID of the track
+     * @param promise
+     */
+    void getTrackStats(String trackId, Promise promise) {
+        if (!hasSenderOrReceiverTrack(trackId)) {
+            Log.d(TAG, "getTrackStats() track is not sent or received: " + trackId);
+            promise.reject(
+                "InvalidAccessError",
+                "The track is not sent or received by the PeerConnection");
+            return;
+        }
+
+        getStats(rtcStatsReport -> {
+            promise.resolve(
+                StringUtils.statsToJSON(
+                    StatsSelector.select(rtcStatsReport, trackId)));
+        });
+    }
+
+    private boolean hasSenderOrReceiverTrack(String trackId) {
+        if (getSender(trackId) != null) {
+            return true;
+        }
+        for (RtpReceiver receiver : peerConnection.getReceivers()) {
+            MediaStreamTrack track = receiver.track();
+            if (track != null && trackId.equals(track.id())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the <tt>RtpSender</tt> of the associated <tt>PeerConnection</tt>
+     * which sends a specific track.
+     *
+     * @return the <tt>RtpSender</tt> or <tt>null</tt>
+     */
+    private RtpSender getSender(String trackId) {
+        for (RtpSender sender : peerConnection.getSenders()) {
+            MediaStreamTrack track = sender.track();
+            if (track != null && trackId.equals(track.id())) {
+                return sender;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolves with the <tt>RTCRtpSendParameters</tt> of the
+     * <tt>RtpSender</tt> which sends a specific track.
+     *
+     * @param trackId the ID of the track
+     * @param promise
+     */
+    void getSenderParameters(String trackId, Promise promise) {
+        RtpSender sender = getSender(trackId);
+
+        if (sender == null) {
+            Log.d(TAG, "getSenderParameters() sender is null: " + trackId);
+            promise.reject("InvalidStateError", "The track is not sent by the PeerConnection");
+            return;
+        }
+
+        promise.resolve(
+            RtpParametersUtils.toWritableMap(
+                sender.getParameters(),
+                sender.track().kind()));
+    }
+
+    /**
+     * Turns the encodings (e.g. simulcast layers) with specific RIDs of the
+     * <tt>RtpSender</tt> which sends a specific track on or off and resolves
+     * with its resulting parameters. An inactive encoding is not encoded at
+     * all. The encodings whose RIDs are not specified are left unchanged.
+     *
+     * @param trackId the ID of the track
+     * @param activeByRid the activity of the encodings mapped by RID
+     * @param promise
+     */
+    void setSenderEncodingsActive(String trackId, ReadableMap activeByRid, Promise promise) {
+        RtpSender sender = getSender(trackId);
+
+        if (sender == null) {
+            Log.d(TAG, "setSenderEncodingsActive() sender is null: " + trackId);
+            promise.reject("InvalidStateError", "The track is not sent by the PeerConnection");
+            return;
+        }
+
+        RtpParameters rtpParameters = sender.getParameters();
+        List<BitrateController.Ceiling> before
+            = BitrateController.Ceiling.of(rtpParameters.encodings);
+        boolean changed = false;
+        for (RtpParameters.Encoding encoding : rtpParameters.encodings) {
+            if (encoding.rid != null
+                    && activeByRid.hasKey(encoding.rid)
+                    && activeByRid.getType(encoding.rid) == ReadableType.Boolean) {
+                boolean active = activeByRid.getBoolean(encoding.rid);
+                if (encoding.active != active) {
+                    encoding.active = active;
+                    changed = true;
+                }
+            }
+        }
+
+        if (changed && !sender.setParameters(rtpParameters)) {
+            promise.reject("OperationError", "Failed to set the parameters");
+            return;
+        }
+        if (changed && bitrateController != null) {
+            bitrateController.onSenderParametersSet(
+                sender.id(), before, rtpParameters.encodings);
+        }
+
+        promise.resolve(
+            RtpParametersUtils.toWritableMap(
+                changed ? sender.getParameters() : rtpParameters,
+                sender.track().kind()));
+    }
+
+    /**
+     * Applies the changeable members of specific
+     * <tt>RTCRtpSendParameters</tt> to the <tt>RtpSender</tt> which sends a
+     * specific track and resolves with its resulting parameters. The
+     * parameters are applied on top of freshly read ones so the transaction
+     * ID obtained by JavaScript need not be current.
+     *
+     * @param trackId the ID of the track
+     * @param parameters the <tt>RTCRtpSendParameters</tt>
+     * @param promise
+     */
+    void setSenderParameters(String trackId, ReadableMap parameters, Promise promise) {
+        RtpSender sender = getSender(trackId);
+
+        if (sender == null) {
+            Log.d(TAG, "setSenderParameters() sender is null: " + trackId);
+            promise.reject("InvalidStateError", "The track is not sent by the PeerConnection");
+            return;
+        }
+
+        RtpParameters rtpParameters = sender.getParameters();
+        List<BitrateController.Ceiling> before
+            = BitrateController.Ceiling.of(rtpParameters.encodings);
+        try {
+            RtpParametersUtils.apply(parameters, rtpParameters);
+        } catch (IllegalArgumentException e) {
+            promise.reject("InvalidModificationError", e.getMessage());
+            return;
+        }
+
+        if (!sender.setParameters(rtpParameters)) {
+            promise.reject("OperationError", "Failed to set the parameters");
+            return;
+        }
+        if (bitrateController != null) {
+            bitrateController.onSenderParametersSet(
+                sender.id(), before, rtpParameters.encodings);
+        }
+
+        promise.resolve(
+            RtpParametersUtils.toWritableMap(
+                sender.getParameters(),
+                sender.track().kind()));
+    }
+
+    /**
+     * Gets the stats of the associated <tt>PeerConnection</tt>. The callback
+     * is invoked on the WebRTC signaling thread.
+     */
+    void getStats(RTCStatsCollectorCallback callback) {
+        peerConnection.getStats(callback);
+    }
+
+    /**
+     * Gets the stats of the associated <tt>PeerConnection</tt> as the
+     * differences from the stats reported by the previous call (see
+     * {@link StringUtils#statsDeltaToJSON}).
+     *
+     * @param full <tt>true</tt> to report all stats e.g. because JavaScript
+     * has lost track of the previous ones
+     * @param promise
+     */
+    void getStatsDelta(boolean full, Promise promise) {
+        getStats(rtcStatsReport -> {
+            String json;
+
+            synchronized (statsDeltaLock) {
+                int base = lastStatsVersion;
+
+                json = StringUtils.statsDeltaToJSON(
+                    full ? null : lastStats,
+                    rtcStatsReport,
+                    base,
+                    ++lastStatsVersion);
+                lastStats = rtcStatsReport.getStatsMap();
+            }
+
+            promise.resolve(json);
+        });
+    }
+
     @Override
     public void onIceCandidate(final IceCandidate candidate) {
         Log.d(TAG, "onIceCandidate");
-        WritableMap params = Arguments.createMap();
-        params.putInt("id", id);
+        negotiationTimeline.markOnce("firstLocalCandidate");
         WritableMap candidateParams = Arguments.createMap();
         candidateParams.putInt("sdpMLineIndex", candidate.sdpMLineIndex);
         candidateParams.putString("sdpMid", candidate.sdpMid);
         candidateParams.putString("candidate", candidate.sdp);
+
+        final int window = iceCandidateBatchingWindow;
+        if (window > 0) {
+            synchronized (localCandidatesLock) {
+                if (pendingLocalCandidates == null) {
+                    pendingLocalCandidates = Arguments.createArray();
+                    pendingLocalCandidatesFlush
+                        = ThreadUtils.schedule(window, this::flushLocalCandidates);
+                }
+                pendingLocalCandidates.pushMap(candidateParams);
+            }
+            return;
+        }
+
+        WritableMap params = Arguments.createMap();
+        params.putInt("id", id);
         params.putMap("candidate", candidateParams);
 
         webRTCModule.sendEvent("peerConnectionGotICECandidate", params);
     }
 
+    /**
+     * Reports the local ICE candidates collected in the current batching
+     * window, if any, to JavaScript in a single event.
+     */
+    private void flushLocalCandidates() {
+        // The event is sent while holding the lock so that batches are
+        // delivered in order and before the end of gathering is reported.
+        synchronized (localCandidatesLock) {
+            if (pendingLocalCandidatesFlush != null) {
+                pendingLocalCandidatesFlush.cancel(false);
+                pendingLocalCandidatesFlush = null;
+            }
+            if (pendingLocalCandidates == null) {
+                return;
+            }
+
+            WritableMap params = Arguments.createMap();
+            params.putInt("id", id);
+            params.putArray("candidates", pendingLocalCandidates);
+            pendingLocalCandidates = null;
+
+            webRTCModule.sendEvent("peerConnectionGotICECandidates", params);
+        }
+    }
+
     @Override
     public void onIceCandidatesRemoved(final IceCandidate[] candidates) {
         Log.d(TAG, "onIceCandidatesRemoved");
@@ -224,6 +871,12 @@ class PeerConnectionObserver implements PeerConnection.Observer {
 
     @Override
     public void onIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
+        if (iceConnectionState == PeerConnection.IceConnectionState.CHECKING) {
+            negotiationTimeline.mark("iceChecking");
+        } else if (iceConnectionState == PeerConnection.IceConnectionState.CONNECTED) {
+            negotiationTimeline.mark("iceConnected");
+        }
+
         WritableMap params = Arguments.createMap();
         params.putInt("id", id);
         params.putString("iceConnectionState", iceConnectionStateString(iceConnectionState));
@@ -233,6 +886,12 @@ class PeerConnectionObserver implements PeerConnection.Observer {
 
     @Override
     public void onConnectionChange(PeerConnection.PeerConnectionState peerConnectionState) {
+        if (peerConnectionState == PeerConnection.PeerConnectionState.CONNECTED) {
+            // The connection state is connected once the DTLS handshake has
+            // completed on a connected ICE transport.
+            negotiationTimeline.mark("dtlsConnected");
+        }
+
         WritableMap params = Arguments.createMap();
         params.putInt("id", id);
         params.putString("connectionState", peerConnectionStateString(peerConnectionState));
@@ -247,6 +906,10 @@ class PeerConnectionObserver implements PeerConnection.Observer {
     @Override
     public void onIceGatheringChange(PeerConnection.IceGatheringState iceGatheringState) {
         Log.d(TAG, "onIceGatheringChange" + iceGatheringState.name());
+        if (iceGatheringState == PeerConnection.IceGatheringState.COMPLETE) {
+            negotiationTimeline.mark("iceGatheringComplete");
+            flushLocalCandidates();
+        }
         WritableMap params = Arguments.createMap();
         params.putInt("id", id);
         params.putString("iceGatheringState", iceGatheringStateString(iceGatheringState));
@@ -254,15 +917,7 @@ class PeerConnectionObserver implements PeerConnection.Observer {
     }
 
     private String getReactTagForStream(MediaStream mediaStream) {
-        for (Iterator<Map.Entry<String, MediaStream>> i
-             = remoteStreams.entrySet().iterator();
-             i.hasNext(); ) {
-            Map.Entry<String, MediaStream> e = i.next();
-            if (e.getValue().equals(mediaStream)) {
-                return e.getKey();
-            }
-        }
-        return null;
+        return remoteStreams.getReactTag(mediaStream);
     }
 
     @Override
@@ -273,17 +928,13 @@ class PeerConnectionObserver implements PeerConnection.Observer {
         // MediaStream instance with the label default that the implementation
         // reuses.
         if ("default".equals(streamId)) {
-            for (Map.Entry<String, MediaStream> e : remoteStreams.entrySet()) {
-                if (e.getValue().equals(mediaStream)) {
-                    streamReactTag = e.getKey();
-                    break;
-                }
-            }
+            streamReactTag = getReactTagForStream(mediaStream);
         }
 
         if (streamReactTag == null) {
             streamReactTag = UUID.randomUUID().toString();
             remoteStreams.put(streamReactTag, mediaStream);
+            webRTCModule.mediaRegistry.putRemoteStream(id, streamReactTag, mediaStream);
         }
 
         WritableMap params = Arguments.createMap();
@@ -298,15 +949,8 @@ class PeerConnectionObserver implements PeerConnection.Observer {
             String trackId = track.id();
 
             remoteTracks.put(trackId, track);
-
-            WritableMap trackInfo = Arguments.createMap();
-            trackInfo.putString("id", trackId);
-            trackInfo.putString("label", "Video");
-            trackInfo.putString("kind", track.kind());
-            trackInfo.putBoolean("enabled", track.enabled());
-            trackInfo.putString("readyState", track.state().toString());
-            trackInfo.putBoolean("remote", true);
-            tracks.pushMap(trackInfo);
+            webRTCModule.mediaRegistry.putRemoteTrack(id, track);
+            tracks.pushMap(serializeRemoteTrack(track));
 
             videoTrackAdapters.addAdapter(streamReactTag, track);
         }
@@ -315,15 +959,8 @@ class PeerConnectionObserver implements PeerConnection.Observer {
             String trackId = track.id();
 
             remoteTracks.put(trackId, track);
-
-            WritableMap trackInfo = Arguments.createMap();
-            trackInfo.putString("id", trackId);
-            trackInfo.putString("label", "Audio");
-            trackInfo.putString("kind", track.kind());
-            trackInfo.putBoolean("enabled", track.enabled());
-            trackInfo.putString("readyState", track.state().toString());
-            trackInfo.putBoolean("remote", true);
-            tracks.pushMap(trackInfo);
+            webRTCModule.mediaRegistry.putRemoteTrack(id, track);
+            tracks.pushMap(serializeRemoteTrack(track));
         }
         params.putArray("tracks", tracks);
 
@@ -343,12 +980,15 @@ class PeerConnectionObserver implements PeerConnection.Observer {
         for (VideoTrack track : mediaStream.videoTracks) {
             this.videoTrackAdapters.removeAdapter(track);
             this.remoteTracks.remove(track.id());
+            webRTCModule.mediaRegistry.removeRemoteTrack(id, track.id());
         }
         for (AudioTrack track : mediaStream.audioTracks) {
             this.remoteTracks.remove(track.id());
+            webRTCModule.mediaRegistry.removeRemoteTrack(id, track.id());
         }
 
-        this.remoteStreams.remove(streamReactTag);
+        this.remoteStreams.remove(mediaStream);
+        webRTCModule.mediaRegistry.removeRemoteStream(id, streamReactTag);
 
         WritableMap params = Arguments.createMap();
         params.putInt("id", id);
@@ -380,8 +1020,10 @@ class PeerConnectionObserver implements PeerConnection.Observer {
         // DataChannel.registerObserver implementation does not allow to
         // unregister, so the observer is registered here and is never
         // unregistered
-        dataChannel.registerObserver(
-            new DataChannelObserver(webRTCModule, id, dcId, dataChannel));
+        DataChannelObserver observer
+            = new DataChannelObserver(webRTCModule, id, dcId, dataChannel);
+        dataChannel.registerObserver(observer);
+        dataChannelObservers.put(dcId, observer);
     }
 
     @Override
@@ -399,9 +1041,196 @@ class PeerConnectionObserver implements PeerConnection.Observer {
         webRTCModule.sendEvent("peerConnectionSignalingStateChanged", params);
     }
 
+    /**
+     * Describes a specific remote track to JavaScript.
+     */
+    private WritableMap serializeRemoteTrack(MediaStreamTrack track) {
+        boolean video = MediaStreamTrack.VIDEO_TRACK_KIND.equals(track.kind());
+
+        WritableMap trackInfo = Arguments.createMap();
+        trackInfo.putString("id", track.id());
+        trackInfo.putString("label", video ? "Video" : "Audio");
+        trackInfo.putString("kind", track.kind());
+        trackInfo.putBoolean("enabled", track.enabled());
+        trackInfo.putString("readyState", track.state().toString());
+        trackInfo.putBoolean("remote", true);
+        return trackInfo;
+    }
+
+    /**
+     * Reports a remote track to JavaScript under Unified Plan, which doesn't
+     * invoke {@link #onAddStream}: the first track of a remote stream is
+     * reported as a new stream (i.e. <tt>peerConnectionAddedStream</tt>), the
+     * following ones as tracks added to it (i.e.
+     * <tt>peerConnectionAddedTrack</tt>). Under Plan B, {@link #onAddStream}
+     * reports the streams with all their tracks.
+     */
     @Override
     public void onAddTrack(final RtpReceiver receiver, final MediaStream[] mediaStreams) {
         Log.d(TAG, "onAddTrack");
+        if (!unifiedPlan) {
+            return;
+        }
+
+        MediaStreamTrack track = receiver.track();
+        if (track == null) {
+            return;
+        }
+
+        String trackId = track.id();
+        boolean video = track instanceof VideoTrack;
+
+        remoteTracks.put(trackId, track);
+        webRTCModule.mediaRegistry.putRemoteTrack(id, track);
+
+        if (mediaStreams.length == 0) {
+            // The streams model of the JavaScript API has nowhere to report a
+            // track without a stream.
+            Log.w(TAG, "onAddTrack - no remote stream for track: " + trackId);
+            return;
+        }
+
+        String adapterStreamReactTag = null;
+        List<String> streamReactTags = new ArrayList<>(mediaStreams.length);
+        for (MediaStream mediaStream : mediaStreams) {
+            String streamReactTag = getReactTagForStream(mediaStream);
+            WritableMap params = Arguments.createMap();
+            params.putInt("id", id);
+            params.putString("streamId", mediaStream.getId());
+
+            if (streamReactTag == null) {
+                streamReactTag = UUID.randomUUID().toString();
+                remoteStreams.put(streamReactTag, mediaStream);
+                webRTCModule.mediaRegistry.putRemoteStream(id, streamReactTag, mediaStream);
+
+                WritableArray tracks = Arguments.createArray();
+                tracks.pushMap(serializeRemoteTrack(track));
+                params.putString("streamReactTag", streamReactTag);
+                params.putArray("tracks", tracks);
+                webRTCModule.sendEvent("peerConnectionAddedStream", params);
+            } else {
+                params.putString("streamReactTag", streamReactTag);
+                params.putMap("track", serializeRemoteTrack(track));
+                webRTCModule.sendEvent("peerConnectionAddedTrack", params);
+            }
+
+            if (adapterStreamReactTag == null) {
+                adapterStreamReactTag = streamReactTag;
+            }
+            streamReactTags.add(streamReactTag);
+        }
+        remoteTrackStreams.put(trackId, streamReactTags);
+
+        // The mute events of a track are reported for one of its streams.
+        if (video) {
+            videoTrackAdapters.addAdapter(adapterStreamReactTag, (VideoTrack) track);
+        }
+    }
+
+    /**
+     * Keeps the transceiver of a remote track under Unified Plan so that
+     * {@link #removeUnreceivedRemoteTracks()} may tell when it stops
+     * receiving.
+     */
+    @Override
+    public void onTrack(RtpTransceiver transceiver) {
+        if (!unifiedPlan) {
+            return;
+        }
+
+        MediaStreamTrack track = transceiver.getReceiver().track();
+        if (track != null) {
+            remoteTransceivers.put(track.id(), transceiver);
+        }
+    }
+
+    /**
+     * Removes the remote tracks whose transceivers no longer receive (i.e.
+     * their current direction is <tt>sendonly</tt> or <tt>inactive</tt>, or
+     * they are stopped) under Unified Plan, which reports no removal the way
+     * {@link #onRemoveStream} does under Plan B. Every removed track is
+     * reported as <tt>peerConnectionRemovedTrack</tt> for each of its
+     * streams and a stream left without tracks is reported as
+     * <tt>peerConnectionRemovedStream</tt>.
+     * <p>
+     * Invoked (on the signaling thread, like {@link #onAddTrack}) when a
+     * description has been set: the current direction changes when an answer
+     * is set, be it the remote one or the local one.
+     */
+    void removeUnreceivedRemoteTracks() {
+        if (!unifiedPlan || remoteTransceivers.isEmpty()) {
+            return;
+        }
+
+        List<String> trackIds = new ArrayList<>();
+        for (Map.Entry<String, RtpTransceiver> e : remoteTransceivers.entrySet()) {
+            RtpTransceiver transceiver = e.getValue();
+            RtpTransceiver.RtpTransceiverDirection direction
+                = transceiver.getCurrentDirection();
+
+            // A transceiver which hasn't been negotiated has no current
+            // direction yet.
+            if (transceiver.isStopped()
+                    || direction == RtpTransceiver.RtpTransceiverDirection.SEND_ONLY
+                    || direction == RtpTransceiver.RtpTransceiverDirection.INACTIVE) {
+                trackIds.add(e.getKey());
+            }
+        }
+        for (String trackId : trackIds) {
+            removeRemoteTrack(trackId);
+        }
+    }
+
+    private void removeRemoteTrack(String trackId) {
+        remoteTransceivers.remove(trackId);
+        List<String> streamReactTags = remoteTrackStreams.remove(trackId);
+        MediaStreamTrack track = remoteTracks.remove(trackId);
+        if (track == null) {
+            return;
+        }
+
+        Log.d(TAG, "removeRemoteTrack " + trackId);
+        webRTCModule.mediaRegistry.removeRemoteTrack(id, trackId);
+        if (track instanceof VideoTrack) {
+            videoTrackAdapters.removeAdapter((VideoTrack) track);
+        }
+        if (streamReactTags == null) {
+            return;
+        }
+
+        for (String streamReactTag : streamReactTags) {
+            WritableMap params = Arguments.createMap();
+            params.putInt("id", id);
+            params.putString("streamReactTag", streamReactTag);
+            params.putString("trackId", trackId);
+            webRTCModule.sendEvent("peerConnectionRemovedTrack", params);
+
+            if (!hasRemoteTracks(streamReactTag)) {
+                MediaStream stream = remoteStreams.get(streamReactTag);
+                if (stream != null) {
+                    remoteStreams.remove(stream);
+                }
+                webRTCModule.mediaRegistry.removeRemoteStream(id, streamReactTag);
+
+                params = Arguments.createMap();
+                params.putInt("id", id);
+                params.putString("streamId", streamReactTag);
+                webRTCModule.sendEvent("peerConnectionRemovedStream", params);
+            }
+        }
+    }
+
+    /**
+     * Whether any remote track reported under Unified Plan is still in the
+     * stream with a specific reactTag.
+     */
+    private boolean hasRemoteTracks(String streamReactTag) {
+        for (List<String> streamReactTags : remoteTrackStreams.values()) {
+            if (streamReactTags.contains(streamReactTag)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Nullable
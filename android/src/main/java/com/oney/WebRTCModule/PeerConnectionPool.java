@@ -0,0 +1,405 @@
+package com.oney.WebRTCModule;
+
+import android.util.Log;
+
+import com.facebook.react.bridge.ReadableMap;
+
+import org.webrtc.CandidatePairChangeEvent;
+import org.webrtc.DataChannel;
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaStream;
+import org.webrtc.PeerConnection;
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.RtpReceiver;
+import org.webrtc.RtpTransceiver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps PeerConnections created in advance for specific configurations so
+ * that <tt>peerConnectionInit</tt> may adopt one instead of waiting for the
+ * creation of a PeerConnection (and its DTLS certificate). The pooled
+ * PeerConnections pre-gather ICE candidates (their
+ * <tt>iceCandidatePoolSize</tt> is at least
+ * {@link #MIN_ICE_CANDIDATE_POOL_SIZE}). Adoptions count
+ * <tt>peerConnectionPool.hit</tt> and misses count
+ * <tt>peerConnectionPool.miss</tt> in {@link ModuleMetrics}.
+ * <p>
+ * Confined to the global lane of {@link ThreadUtils}.
+ */
+final class PeerConnectionPool {
+    private static final String TAG = WebRTCModule.TAG;
+
+    private static final int MIN_ICE_CANDIDATE_POOL_SIZE = 1;
+
+    private final WebRTCModule webRTCModule;
+
+    /**
+     * The pools mapped by the canonical keys of the JavaScript
+     * configurations.
+     */
+    private final Map<String, Pool> pools = new HashMap<>();
+
+    /**
+     * Whether the pool has ever been configured. Read on the JavaScript
+     * thread so that <tt>peerConnectionInit</tt> computes no canonical key
+     * unless there may be a PeerConnection to adopt.
+     */
+    private volatile boolean used;
+
+    PeerConnectionPool(WebRTCModule webRTCModule) {
+        this.webRTCModule = webRTCModule;
+    }
+
+    boolean isUsed() {
+        return used;
+    }
+
+    /**
+     * Records that the pool is (about to be) configured. Called before
+     * {@link #configure} is scheduled so that a <tt>peerConnectionInit</tt>
+     * which follows it computes the key to look the pool up by.
+     */
+    void markUsed() {
+        used = true;
+    }
+
+    /**
+     * Computes the canonical key of a specific JavaScript configuration,
+     * which doesn't depend on the order of its properties.
+     */
+    static String canonicalKey(ReadableMap map) {
+        StringBuilder builder = new StringBuilder();
+
+        appendCanonical(builder, map == null ? null : map.toHashMap());
+        return builder.toString();
+    }
+
+    private static void appendCanonical(StringBuilder builder, Object value) {
+        if (value instanceof Map) {
+            // Sort the properties by name.
+            TreeMap<String, Object> sorted = new TreeMap<>();
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                sorted.put(String.valueOf(e.getKey()), e.getValue());
+            }
+
+            builder.append('{');
+            for (Map.Entry<String, Object> e : sorted.entrySet()) {
+                appendString(builder, e.getKey());
+                builder.append(':');
+                appendCanonical(builder, e.getValue());
+                builder.append(',');
+            }
+            builder.append('}');
+        } else if (value instanceof List) {
+            builder.append('[');
+            for (Object element : (List<?>) value) {
+                appendCanonical(builder, element);
+                builder.append(',');
+            }
+            builder.append(']');
+        } else if (value instanceof String) {
+            appendString(builder, (String) value);
+        } else {
+            // null, Boolean and Double (i.e. all JavaScript numbers)
+            builder.append(value);
+        }
+    }
+
+    /**
+     * Appends a specific string prefixed with its length so that no string
+     * can be mistaken for a structure.
+     */
+    private static void appendString(StringBuilder builder, String value) {
+        builder.append(value.length()).append('"').append(value);
+    }
+
+    /**
+     * Sets the number of idle PeerConnections to keep for a specific
+     * configuration. Excess idle PeerConnections are closed, missing ones are
+     * created in the background.
+     *
+     * @param key the canonical key of the JavaScript configuration
+     * @param configuration the parsed configuration, owned by the pool
+     * @param size the number of idle PeerConnections to keep, zero to close
+     * all
+     */
+    void configure(String key, PeerConnection.RTCConfiguration configuration, int size) {
+        Pool pool = pools.get(key);
+
+        if (pool == null) {
+            if (size <= 0) {
+                return;
+            }
+
+            configuration.iceCandidatePoolSize
+                = Math.max(MIN_ICE_CANDIDATE_POOL_SIZE, configuration.iceCandidatePoolSize);
+            pool = new Pool(key, configuration);
+            pools.put(key, pool);
+        }
+
+        pool.size = Math.max(0, size);
+        while (pool.idle.size() > pool.size) {
+            pool.idle.removeLast().dispose();
+        }
+        if (pool.size == 0) {
+            pools.remove(key);
+        } else {
+            scheduleRefill(pool);
+        }
+    }
+
+    /**
+     * Takes an idle PeerConnection for a specific configuration out of the
+     * pool and starts creating its replacement.
+     *
+     * @param key the canonical key of the JavaScript configuration or
+     * <tt>null</tt> if the pool was never used
+     * @return the idle PeerConnection or <tt>null</tt> if there is none
+     */
+    Entry take(String key) {
+        if (key == null) {
+            return null;
+        }
+
+        Pool pool = pools.get(key);
+        Entry entry = pool == null ? null : pool.idle.pollFirst();
+
+        if (entry == null) {
+            ModuleMetrics.count("peerConnectionPool.miss");
+        } else {
+            ModuleMetrics.count("peerConnectionPool.hit");
+            scheduleRefill(pool);
+        }
+        return entry;
+    }
+
+    /**
+     * Closes all idle PeerConnections and forgets all configurations. Called
+     * when the module is destroyed.
+     */
+    void disposeAll() {
+        for (Pool pool : pools.values()) {
+            while (!pool.idle.isEmpty()) {
+                pool.idle.removeFirst().dispose();
+            }
+        }
+        // The scheduled refills find their pools gone.
+        pools.clear();
+    }
+
+    /**
+     * Creates one missing PeerConnection at a time so that other operations
+     * on the global lane don't wait for the whole pool to be refilled.
+     */
+    private void scheduleRefill(Pool pool) {
+        if (pool.refillScheduled) {
+            return;
+        }
+        pool.refillScheduled = true;
+
+        ThreadUtils.runOnExecutor("peerConnectionPoolRefill", ThreadUtils.Priority.BULK, () -> {
+            pool.refillScheduled = false;
+
+            // The pool may have been reconfigured or removed meanwhile.
+            if (pools.get(pool.key) != pool || pool.idle.size() >= pool.size) {
+                return;
+            }
+
+            PeerConnectionFactory factory = webRTCModule.mFactory;
+            if (factory == null) {
+                Log.d(TAG, "peerConnectionPoolRefill() factory is null");
+                return;
+            }
+
+            ForwardingObserver observer = new ForwardingObserver();
+            PeerConnection peerConnection
+                = factory.createPeerConnection(pool.configuration, observer);
+            if (peerConnection == null) {
+                Log.d(TAG, "peerConnectionPoolRefill() peerConnection is null");
+                return;
+            }
+
+            pool.idle.addLast(new Entry(peerConnection, observer));
+            scheduleRefill(pool);
+        });
+    }
+
+    /**
+     * An idle PeerConnection and the observer which it was created with.
+     */
+    static final class Entry {
+        final PeerConnection peerConnection;
+        private final ForwardingObserver observer;
+
+        Entry(PeerConnection peerConnection, ForwardingObserver observer) {
+            this.peerConnection = peerConnection;
+            this.observer = observer;
+        }
+
+        /**
+         * Makes a specific observer the observer of the PeerConnection. The
+         * events which occurred while the PeerConnection was idle are
+         * delivered to it first.
+         */
+        void attach(PeerConnection.Observer target) {
+            observer.attach(target);
+        }
+
+        private void dispose() {
+            peerConnection.dispose();
+        }
+    }
+
+    private static final class Pool {
+        final String key;
+        final PeerConnection.RTCConfiguration configuration;
+        final ArrayDeque<Entry> idle = new ArrayDeque<>();
+        int size;
+        boolean refillScheduled;
+
+        Pool(String key, PeerConnection.RTCConfiguration configuration) {
+            this.key = key;
+            this.configuration = configuration;
+        }
+    }
+
+    /**
+     * The <tt>PeerConnection.Observer</tt> which a pooled PeerConnection is
+     * created with. Forwards the events to the observer which adopts the
+     * PeerConnection and queues them until then.
+     */
+    static final class ForwardingObserver implements PeerConnection.Observer {
+        private PeerConnection.Observer target;
+
+        /**
+         * The events which occurred before {@link #target} was set. Guarded by
+         * {@code this}.
+         */
+        private List<Event> pending = new ArrayList<>();
+
+        /**
+         * Delivers the pending events to a specific observer and then makes
+         * it the target of the events which follow. The events which occur
+         * during the replay keep being queued (and are replayed in turn) so
+         * that none overtakes a pending one.
+         */
+        void attach(PeerConnection.Observer target) {
+            while (true) {
+                List<Event> events;
+
+                synchronized (this) {
+                    if (pending.isEmpty()) {
+                        pending = null;
+                        this.target = target;
+                        return;
+                    }
+                    events = pending;
+                    pending = new ArrayList<>();
+                }
+
+                for (Event event : events) {
+                    event.deliverTo(target);
+                }
+            }
+        }
+
+        private void forward(Event event) {
+            PeerConnection.Observer target;
+
+            synchronized (this) {
+                if (pending != null) {
+                    pending.add(event);
+                    return;
+                }
+                target = this.target;
+            }
+
+            event.deliverTo(target);
+        }
+
+        @Override
+        public void onSignalingChange(PeerConnection.SignalingState signalingState) {
+            forward(t -> t.onSignalingChange(signalingState));
+        }
+
+        @Override
+        public void onIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
+            forward(t -> t.onIceConnectionChange(iceConnectionState));
+        }
+
+        @Override
+        public void onStandardizedIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
+            forward(t -> t.onStandardizedIceConnectionChange(iceConnectionState));
+        }
+
+        @Override
+        public void onConnectionChange(PeerConnection.PeerConnectionState peerConnectionState) {
+            forward(t -> t.onConnectionChange(peerConnectionState));
+        }
+
+        @Override
+        public void onIceConnectionReceivingChange(boolean receiving) {
+            forward(t -> t.onIceConnectionReceivingChange(receiving));
+        }
+
+        @Override
+        public void onIceGatheringChange(PeerConnection.IceGatheringState iceGatheringState) {
+            forward(t -> t.onIceGatheringChange(iceGatheringState));
+        }
+
+        @Override
+        public void onIceCandidate(IceCandidate candidate) {
+            forward(t -> t.onIceCandidate(candidate));
+        }
+
+        @Override
+        public void onIceCandidatesRemoved(IceCandidate[] candidates) {
+            forward(t -> t.onIceCandidatesRemoved(candidates));
+        }
+
+        @Override
+        public void onSelectedCandidatePairChanged(CandidatePairChangeEvent event) {
+            forward(t -> t.onSelectedCandidatePairChanged(event));
+        }
+
+        @Override
+        public void onAddStream(MediaStream mediaStream) {
+            forward(t -> t.onAddStream(mediaStream));
+        }
+
+        @Override
+        public void onRemoveStream(MediaStream mediaStream) {
+            forward(t -> t.onRemoveStream(mediaStream));
+        }
+
+        @Override
+        public void onDataChannel(DataChannel dataChannel) {
+            forward(t -> t.onDataChannel(dataChannel));
+        }
+
+        @Override
+        public void onRenegotiationNeeded() {
+            forward(PeerConnection.Observer::onRenegotiationNeeded);
+        }
+
+        @Override
+        public void onAddTrack(RtpReceiver receiver, MediaStream[] mediaStreams) {
+            forward(t -> t.onAddTrack(receiver, mediaStreams));
+        }
+
+        @Override
+        public void onTrack(RtpTransceiver transceiver) {
+            forward(t -> t.onTrack(transceiver));
+        }
+
+        private interface Event {
+            void deliverTo(PeerConnection.Observer target);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.oney.WebRTCModule;
+
+import org.webrtc.DefaultVideoDecoderFactory;
+import org.webrtc.EglBase;
+import org.webrtc.SoftwareVideoDecoderFactory;
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoDecoder;
+import org.webrtc.VideoDecoderFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Wraps the <tt>DefaultVideoDecoderFactory</tt> (or the software one without
+ * an EGL context) to order its codecs following a {@link VideoCodecPolicy}
+ * and, given a {@link CodecCapabilitiesCache}, to report the codecs probed on
+ * a previous start without probing the hardware decoders again.
+ */
+final class PolicyVideoDecoderFactory implements VideoDecoderFactory {
+    private static final String CACHE_NAME = "decoder";
+
+    private final VideoDecoderFactory factory;
+    private final VideoCodecPolicy policy;
+    private final CodecCapabilitiesCache cache;
+
+    /**
+     * The supported codecs in order of preference. Guarded by {@code this}.
+     */
+    private VideoCodecInfo[] supportedCodecs;
+
+    /**
+     * @param eglContext the EGL context of the hardware decoders or
+     * <tt>null</tt> to use the software decoders only
+     * @param cache the cache of the probed codecs or <tt>null</tt>
+     */
+    PolicyVideoDecoderFactory(
+            EglBase.Context eglContext,
+            VideoCodecPolicy policy,
+            CodecCapabilitiesCache cache) {
+        this.factory
+            = eglContext == null
+                ? new SoftwareVideoDecoderFactory()
+                : new DefaultVideoDecoderFactory(eglContext);
+        this.policy = policy;
+        this.cache = eglContext == null ? null : cache;
+    }
+
+    @Override
+    public VideoDecoder createDecoder(VideoCodecInfo info) {
+        return factory.createDecoder(info);
+    }
+
+    @Override
+    public synchronized VideoCodecInfo[] getSupportedCodecs() {
+        if (supportedCodecs == null) {
+            VideoCodecInfo[] codecs = cache == null ? null : cache.get(CACHE_NAME);
+
+            if (codecs == null) {
+                codecs = factory.getSupportedCodecs();
+                if (cache != null) {
+                    cache.put(CACHE_NAME, codecs);
+                }
+            }
+            List<VideoCodecInfo> ordered = policy.order(Arrays.asList(codecs));
+            supportedCodecs = ordered.toArray(new VideoCodecInfo[ordered.size()]);
+        }
+        return supportedCodecs.clone();
+    }
+}
@@ -0,0 +1,91 @@
+package com.oney.WebRTCModule;
+
+import org.webrtc.EglBase;
+import org.webrtc.HardwareVideoEncoderFactory;
+import org.webrtc.SoftwareVideoEncoderFactory;
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoEncoder;
+import org.webrtc.VideoEncoderFactory;
+import org.webrtc.VideoEncoderFallback;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Combines the hardware and the software video encoders like
+ * <tt>DefaultVideoEncoderFactory</tt> does but follows a
+ * {@link VideoCodecPolicy} and, given a {@link CodecCapabilitiesCache},
+ * reports the codecs probed on a previous start without probing the hardware
+ * encoders again.
+ */
+final class PolicyVideoEncoderFactory implements VideoEncoderFactory {
+    private static final String CACHE_NAME = "encoder";
+
+    private final VideoEncoderFactory hardwareFactory;
+    private final VideoEncoderFactory softwareFactory = new SoftwareVideoEncoderFactory();
+    private final VideoCodecPolicy policy;
+    private final CodecCapabilitiesCache cache;
+
+    /**
+     * The supported codecs in order of preference. Guarded by {@code this}.
+     */
+    private VideoCodecInfo[] supportedCodecs;
+
+    /**
+     * @param eglContext the EGL context of the hardware encoders or
+     * <tt>null</tt> to use the software encoders only
+     * @param cache the cache of the probed codecs or <tt>null</tt>
+     */
+    PolicyVideoEncoderFactory(
+            EglBase.Context eglContext,
+            VideoCodecPolicy policy,
+            CodecCapabilitiesCache cache) {
+        this.hardwareFactory
+            = eglContext == null
+                ? null
+                : new HardwareVideoEncoderFactory(
+                    eglContext,
+                    /* enableIntelVp8Encoder */ true,
+                    policy.h264HighProfileEnabled,
+                    policy::isEncoderAllowed);
+        this.policy = policy;
+        this.cache = hardwareFactory == null ? null : cache;
+    }
+
+    @Override
+    public VideoEncoder createEncoder(VideoCodecInfo info) {
+        VideoEncoder softwareEncoder = softwareFactory.createEncoder(info);
+        VideoEncoder hardwareEncoder
+            = hardwareFactory == null ? null : hardwareFactory.createEncoder(info);
+
+        if (hardwareEncoder != null && softwareEncoder != null) {
+            // Both hardware and software supported, wrap it in a software
+            // fallback.
+            return new VideoEncoderFallback(softwareEncoder, hardwareEncoder);
+        }
+        return hardwareEncoder != null ? hardwareEncoder : softwareEncoder;
+    }
+
+    @Override
+    public synchronized VideoCodecInfo[] getSupportedCodecs() {
+        if (supportedCodecs == null) {
+            VideoCodecInfo[] codecs = cache == null ? null : cache.get(CACHE_NAME);
+
+            if (codecs == null) {
+                LinkedHashSet<VideoCodecInfo> probed = new LinkedHashSet<>();
+                probed.addAll(Arrays.asList(softwareFactory.getSupportedCodecs()));
+                if (hardwareFactory != null) {
+                    probed.addAll(Arrays.asList(hardwareFactory.getSupportedCodecs()));
+                }
+                codecs = probed.toArray(new VideoCodecInfo[probed.size()]);
+                if (cache != null) {
+                    cache.put(CACHE_NAME, codecs);
+                }
+            }
+            List<VideoCodecInfo> selected = policy.selectEncoderCodecs(Arrays.asList(codecs));
+            supportedCodecs = selected.toArray(new VideoCodecInfo[selected.size()]);
+        }
+        return supportedCodecs.clone();
+    }
+}
@@ -0,0 +1,89 @@
+package com.oney.WebRTCModule;
+
+import org.webrtc.MediaStream;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The remote <tt>MediaStream</tt>s of a <tt>PeerConnection</tt> mapped by
+ * their reactTags and, in reverse, their reactTags mapped by (the identity
+ * of) the <tt>MediaStream</tt>s so that both lookups take constant time.
+ * <tt>MediaStream</tt> does not override <tt>equals</tt> so identity is what
+ * a comparison with <tt>equals</tt> would use anyway.
+ * <p>
+ * Not thread-safe: confined to the lane of the <tt>PeerConnection</tt> and
+ * the WebRTC signaling thread the same way the rest of the state of
+ * {@link PeerConnectionObserver} is.
+ */
+final class RemoteStreamIndex {
+    private final Map<String, MediaStream> streams = new HashMap<>();
+
+    private final Map<MediaStream, String> reactTags = new IdentityHashMap<>();
+
+    /**
+     * Maps a specific reactTag to a specific <tt>MediaStream</tt> and back,
+     * replacing any mapping of either.
+     */
+    void put(String reactTag, MediaStream stream) {
+        MediaStream oldStream = streams.put(reactTag, stream);
+        if (oldStream != null && oldStream != stream) {
+            reactTags.remove(oldStream);
+        }
+
+        String oldReactTag = reactTags.put(stream, reactTag);
+        if (oldReactTag != null && !oldReactTag.equals(reactTag)) {
+            streams.remove(oldReactTag);
+        }
+    }
+
+    MediaStream get(String reactTag) {
+        return streams.get(reactTag);
+    }
+
+    /**
+     * Gets the reactTag of a specific <tt>MediaStream</tt>.
+     *
+     * @return the reactTag of <tt>stream</tt> or <tt>null</tt> if it is not
+     * a remote <tt>MediaStream</tt> of the <tt>PeerConnection</tt>
+     */
+    String getReactTag(MediaStream stream) {
+        return reactTags.get(stream);
+    }
+
+    /**
+     * Removes a specific <tt>MediaStream</tt>.
+     *
+     * @return the reactTag of the removed <tt>stream</tt> or <tt>null</tt> if
+     * it was not there
+     */
+    String remove(MediaStream stream) {
+        String reactTag = reactTags.remove(stream);
+
+        if (reactTag != null) {
+            streams.remove(reactTag);
+        }
+        return reactTag;
+    }
+
+    Set<String> reactTags() {
+        return Collections.unmodifiableSet(streams.keySet());
+    }
+
+    Collection<MediaStream> streams() {
+        return Collections.unmodifiableCollection(streams.values());
+    }
+
+    int size() {
+        return streams.size();
+    }
+
+    void clear() {
+        streams.clear();
+        reactTags.clear();
+    }
+}
@@ -0,0 +1,351 @@
+package com.oney.WebRTCModule;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.webrtc.RtpParameters;
+import org.webrtc.RtpTransceiver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts <tt>RtpParameters</tt> to and from the JavaScript
+ * <tt>RTCRtpSendParameters</tt> dictionary and creates
+ * <tt>RtpTransceiverInit</tt>s from <tt>RTCRtpTransceiverInit</tt>
+ * dictionaries. Only the members which <tt>RTCRtpSender.setParameters</tt>
+ * may change are read back from JavaScript, the others are reported for
+ * information only.
+ */
+final class RtpParametersUtils {
+    private RtpParametersUtils() {
+    }
+
+    /**
+     * @param kind the kind of the sent track, the type of the MIME types of
+     * the codecs
+     */
+    static WritableMap toWritableMap(RtpParameters parameters, String kind) {
+        WritableMap map = Arguments.createMap();
+
+        map.putString("transactionId", parameters.transactionId);
+        if (parameters.degradationPreference != null) {
+            map.putString(
+                "degradationPreference",
+                degradationPreferenceToString(parameters.degradationPreference));
+        }
+
+        WritableArray encodings = Arguments.createArray();
+        for (RtpParameters.Encoding encoding : parameters.encodings) {
+            encodings.pushMap(encodingToWritableMap(encoding));
+        }
+        map.putArray("encodings", encodings);
+
+        WritableArray codecs = Arguments.createArray();
+        for (RtpParameters.Codec codec : parameters.codecs) {
+            codecs.pushMap(codecToWritableMap(codec, kind));
+        }
+        map.putArray("codecs", codecs);
+
+        WritableMap rtcp = Arguments.createMap();
+        rtcp.putString("cname", parameters.getRtcp().getCname());
+        rtcp.putBoolean("reducedSize", parameters.getRtcp().getReducedSize());
+        map.putMap("rtcp", rtcp);
+
+        return map;
+    }
+
+    /**
+     * Applies the changeable members of a JavaScript
+     * <tt>RTCRtpSendParameters</tt> dictionary to specific
+     * <tt>RtpParameters</tt>. As with <tt>setParameters</tt>, an optional
+     * encoding member which is missing is unset e.g. a missing
+     * <tt>maxBitrate</tt> removes the bitrate cap.
+     *
+     * @throws IllegalArgumentException if the number of encodings differs
+     */
+    static void apply(ReadableMap map, RtpParameters parameters) {
+        if (map.hasKey("degradationPreference")
+                && map.getType("degradationPreference") == ReadableType.String) {
+            parameters.degradationPreference
+                = degradationPreferenceFromString(map.getString("degradationPreference"));
+        }
+
+        ReadableArray encodings
+            = map.hasKey("encodings") && map.getType("encodings") == ReadableType.Array
+                ? map.getArray("encodings")
+                : null;
+        List<RtpParameters.Encoding> nativeEncodings = parameters.encodings;
+
+        if (encodings == null || encodings.size() != nativeEncodings.size()) {
+            throw new IllegalArgumentException(
+                "The number of encodings cannot be changed");
+        }
+
+        for (int i = 0; i < encodings.size(); i++) {
+            applyEncoding(encodings.getMap(i), nativeEncodings.get(i));
+        }
+    }
+
+    /**
+     * Applies the members of a JavaScript <tt>RTCRtpEncodingParameters</tt>
+     * dictionary to a specific <tt>RtpParameters.Encoding</tt>. A member which
+     * is <tt>null</tt> is missing.
+     *
+     * @throws IllegalArgumentException if a member is out of range e.g. a
+     * negative <tt>maxBitrate</tt> or a <tt>scaleResolutionDownBy</tt> less
+     * than 1
+     */
+    static void applyEncoding(ReadableMap map, RtpParameters.Encoding encoding) {
+        encoding.active = !map.hasKey("active")
+            || map.getType("active") != ReadableType.Boolean
+            || map.getBoolean("active");
+        encoding.maxBitrateBps = getInteger(map, "maxBitrate");
+        // minBitrate (non-standard)
+        encoding.minBitrateBps = getInteger(map, "minBitrate");
+        encoding.maxFramerate = getInteger(map, "maxFramerate");
+        Double scaleResolutionDownBy = getDouble(map, "scaleResolutionDownBy");
+        if (scaleResolutionDownBy != null
+                && !(scaleResolutionDownBy >= 1 && scaleResolutionDownBy <= Double.MAX_VALUE)) {
+            throw new IllegalArgumentException(
+                "Invalid scaleResolutionDownBy: " + scaleResolutionDownBy);
+        }
+        encoding.scaleResolutionDownBy = scaleResolutionDownBy;
+        if (map.hasKey("networkPriority")
+                && map.getType("networkPriority") == ReadableType.String) {
+            encoding.networkPriority = priorityFromString(map.getString("networkPriority"));
+        }
+    }
+
+    /**
+     * Creates an <tt>RtpTransceiverInit</tt> from a JavaScript
+     * <tt>RTCRtpTransceiverInit</tt> dictionary.
+     *
+     * @throws IllegalArgumentException if the direction is invalid
+     */
+    static RtpTransceiver.RtpTransceiverInit transceiverInitFromReadableMap(ReadableMap map) {
+        RtpTransceiver.RtpTransceiverDirection direction
+            = RtpTransceiver.RtpTransceiverDirection.SEND_RECV;
+        List<String> streamIds = new ArrayList<>();
+        List<RtpParameters.Encoding> sendEncodings = new ArrayList<>();
+
+        if (map != null) {
+            if (map.hasKey("direction") && map.getType("direction") == ReadableType.String) {
+                direction = directionFromString(map.getString("direction"));
+            }
+            // streamIds (the IDs of the MediaStreams i.e. their reactTags)
+            if (map.hasKey("streamIds") && map.getType("streamIds") == ReadableType.Array) {
+                ReadableArray array = map.getArray("streamIds");
+                for (int i = 0; i < array.size(); i++) {
+                    streamIds.add(array.getString(i));
+                }
+            }
+            if (map.hasKey("sendEncodings")
+                    && map.getType("sendEncodings") == ReadableType.Array) {
+                ReadableArray array = map.getArray("sendEncodings");
+                for (int i = 0; i < array.size(); i++) {
+                    ReadableMap encodingMap = array.getMap(i);
+                    String rid
+                        = encodingMap.hasKey("rid")
+                                && encodingMap.getType("rid") == ReadableType.String
+                            ? encodingMap.getString("rid")
+                            : null;
+                    RtpParameters.Encoding encoding
+                        = new RtpParameters.Encoding(rid, true, null);
+
+                    applyEncoding(encodingMap, encoding);
+                    sendEncodings.add(encoding);
+                }
+            }
+        }
+
+        return new RtpTransceiver.RtpTransceiverInit(direction, streamIds, sendEncodings);
+    }
+
+    static String directionToString(RtpTransceiver.RtpTransceiverDirection direction) {
+        switch (direction) {
+        case SEND_ONLY:
+            return "sendonly";
+        case RECV_ONLY:
+            return "recvonly";
+        case INACTIVE:
+            return "inactive";
+        default:
+            return "sendrecv";
+        }
+    }
+
+    static RtpTransceiver.RtpTransceiverDirection directionFromString(String direction) {
+        switch (direction) {
+        case "sendrecv":
+            return RtpTransceiver.RtpTransceiverDirection.SEND_RECV;
+        case "sendonly":
+            return RtpTransceiver.RtpTransceiverDirection.SEND_ONLY;
+        case "recvonly":
+            return RtpTransceiver.RtpTransceiverDirection.RECV_ONLY;
+        case "inactive":
+            return RtpTransceiver.RtpTransceiverDirection.INACTIVE;
+        default:
+            throw new IllegalArgumentException("Invalid direction: " + direction);
+        }
+    }
+
+    private static WritableMap encodingToWritableMap(RtpParameters.Encoding encoding) {
+        WritableMap map = Arguments.createMap();
+
+        putEncoding(map, encoding);
+        return map;
+    }
+
+    /**
+     * Puts the members of a JavaScript <tt>RTCRtpEncodingParameters</tt>
+     * dictionary which represents a specific <tt>RtpParameters.Encoding</tt>
+     * into a specific map.
+     */
+    static void putEncoding(WritableMap map, RtpParameters.Encoding encoding) {
+        if (encoding.rid != null) {
+            map.putString("rid", encoding.rid);
+        }
+        map.putBoolean("active", encoding.active);
+        if (encoding.maxBitrateBps != null) {
+            map.putInt("maxBitrate", encoding.maxBitrateBps);
+        }
+        if (encoding.minBitrateBps != null) {
+            // minBitrate (non-standard)
+            map.putInt("minBitrate", encoding.minBitrateBps);
+        }
+        if (encoding.maxFramerate != null) {
+            map.putInt("maxFramerate", encoding.maxFramerate);
+        }
+        if (encoding.scaleResolutionDownBy != null) {
+            map.putDouble("scaleResolutionDownBy", encoding.scaleResolutionDownBy);
+        }
+        map.putString("networkPriority", priorityToString(encoding.networkPriority));
+        if (encoding.ssrc != null) {
+            // ssrc (non-standard)
+            map.putDouble("ssrc", encoding.ssrc);
+        }
+    }
+
+    private static WritableMap codecToWritableMap(RtpParameters.Codec codec, String kind) {
+        WritableMap map = Arguments.createMap();
+
+        map.putInt("payloadType", codec.payloadType);
+        map.putString("mimeType", kind + "/" + codec.name);
+        if (codec.clockRate != null) {
+            map.putInt("clockRate", codec.clockRate);
+        }
+        if (codec.numChannels != null) {
+            map.putInt("channels", codec.numChannels);
+        }
+        if (codec.parameters != null && !codec.parameters.isEmpty()) {
+            StringBuilder sdpFmtpLine = new StringBuilder();
+            for (Map.Entry<String, String> e : codec.parameters.entrySet()) {
+                if (sdpFmtpLine.length() != 0) {
+                    sdpFmtpLine.append(';');
+                }
+                sdpFmtpLine.append(e.getKey()).append('=').append(e.getValue());
+            }
+            map.putString("sdpFmtpLine", sdpFmtpLine.toString());
+        }
+        return map;
+    }
+
+    /**
+     * Gets a non-negative integer member, truncating a fractional one.
+     *
+     * @throws IllegalArgumentException if the member doesn't fit the native
+     * (non-negative <tt>int</tt>) field
+     */
+    private static Integer getInteger(ReadableMap map, String key) {
+        if (!map.hasKey(key) || map.getType(key) != ReadableType.Number) {
+            return null;
+        }
+
+        double value = map.getDouble(key);
+        if (!(value >= 0 && value <= Integer.MAX_VALUE)) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + value);
+        }
+        return (int) value;
+    }
+
+    private static Double getDouble(ReadableMap map, String key) {
+        return map.hasKey(key) && map.getType(key) == ReadableType.Number
+            ? map.getDouble(key)
+            : null;
+    }
+
+    private static String degradationPreferenceToString(
+            RtpParameters.DegradationPreference preference) {
+        switch (preference) {
+        case DISABLED:
+            return "disabled";
+        case MAINTAIN_FRAMERATE:
+            return "maintain-framerate";
+        case MAINTAIN_RESOLUTION:
+            return "maintain-resolution";
+        default:
+            return "balanced";
+        }
+    }
+
+    private static RtpParameters.DegradationPreference degradationPreferenceFromString(
+            String preference) {
+        switch (preference) {
+        case "disabled":
+            return RtpParameters.DegradationPreference.DISABLED;
+        case "maintain-framerate":
+            return RtpParameters.DegradationPreference.MAINTAIN_FRAMERATE;
+        case "maintain-resolution":
+            return RtpParameters.DegradationPreference.MAINTAIN_RESOLUTION;
+        case "balanced":
+            return RtpParameters.DegradationPreference.BALANCED;
+        default:
+            throw new IllegalArgumentException(
+                "Invalid degradationPreference: " + preference);
+        }
+    }
+
+    /*
+     * The values of the native priorities (webrtc::Priority) are those of
+     * the RTCPriorityType enum of the WebRTC standard.
+     */
+
+    private static final int PRIORITY_VERY_LOW = 0;
+    private static final int PRIORITY_LOW = 1;
+    private static final int PRIORITY_MEDIUM = 2;
+    private static final int PRIORITY_HIGH = 3;
+
+    private static String priorityToString(int priority) {
+        switch (priority) {
+        case PRIORITY_VERY_LOW:
+            return "very-low";
+        case PRIORITY_MEDIUM:
+            return "medium";
+        case PRIORITY_HIGH:
+            return "high";
+        default:
+            return "low";
+        }
+    }
+
+    private static int priorityFromString(String priority) {
+        switch (priority) {
+        case "very-low":
+            return PRIORITY_VERY_LOW;
+        case "low":
+            return PRIORITY_LOW;
+        case "medium":
+            return PRIORITY_MEDIUM;
+        case "high":
+            return PRIORITY_HIGH;
+        default:
+            throw new IllegalArgumentException("Invalid priority: " + priority);
+        }
+    }
+}
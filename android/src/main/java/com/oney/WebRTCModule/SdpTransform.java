@@ -0,0 +1,34 @@
+package com.oney.WebRTCModule;
+
+import com.facebook.react.bridge.ReadableMap;
+
+/**
+ * Rewrites the SDP of the offers and answers created by a PeerConnection
+ * before they are reported to JavaScript. The transforms of a PeerConnection
+ * are configured from JavaScript by type; besides the built-in ones in
+ * {@link SdpTransforms}, apps may register their own with
+ * {@link WebRTCModule#registerSdpTransform}.
+ */
+public interface SdpTransform {
+    /**
+     * Transforms a specific SDP.
+     *
+     * @param sdp the SDP of an offer or an answer
+     * @param type the type of the SDP i.e. <tt>offer</tt> or <tt>answer</tt>
+     * @return the transformed SDP
+     */
+    String transform(String sdp, String type);
+
+    /**
+     * Creates the {@link SdpTransform}s of a specific type.
+     */
+    interface Factory {
+        /**
+         * Creates an {@link SdpTransform} configured by a specific JavaScript
+         * object.
+         *
+         * @throws IllegalArgumentException if the configuration is invalid
+         */
+        SdpTransform create(ReadableMap config);
+    }
+}
@@ -0,0 +1,429 @@
+package com.oney.WebRTCModule;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry of the {@link SdpTransform} types and the built-in
+ * transforms:
+ * <ul>
+ * <li><tt>codecOrder</tt> moves the codecs named by <tt>codecs</tt> to the
+ * front of their media sections, in that order;</li>
+ * <li><tt>bandwidth</tt> caps the bitrate of the media sections at
+ * <tt>bitrate</tt> bps with <tt>b=AS</tt> and <tt>b=TIAS</tt> lines or, without
+ * <tt>bitrate</tt>, removes the caps;</li>
+ * <li><tt>stripCodecs</tt> removes the codecs named by <tt>codecs</tt> and
+ * <tt>keepCodecs</tt> removes all others, either along with their
+ * retransmission (RTX) payload types;</li>
+ * <li><tt>stripHeaderExtensions</tt> removes the RTP header extensions whose
+ * URIs are in <tt>uris</tt>;</li>
+ * <li><tt>opusProfile</tt> applies the {@link OpusProfiles} named by
+ * <tt>profile</tt>.</li>
+ * </ul>
+ * All but <tt>stripHeaderExtensions</tt> and <tt>opusProfile</tt> apply to the media sections of a
+ * specific <tt>kind</tt> (<tt>audio</tt> or <tt>video</tt>), if any, or to all
+ * otherwise. Codec names are case-insensitive. A media section never loses its
+ * last codec.
+ */
+final class SdpTransforms {
+    private static final Map<String, SdpTransform.Factory> factories
+        = new ConcurrentHashMap<>();
+
+    static {
+        factories.put("codecOrder", SdpTransforms::createCodecOrder);
+        factories.put("bandwidth", SdpTransforms::createBandwidth);
+        factories.put("stripCodecs", config -> createStripCodecs(config, /* keep */ false));
+        factories.put("keepCodecs", config -> createStripCodecs(config, /* keep */ true));
+        factories.put("stripHeaderExtensions", SdpTransforms::createStripHeaderExtensions);
+        factories.put("opusProfile", config -> OpusProfiles.create(getString(config, "profile")));
+    }
+
+    private SdpTransforms() {
+    }
+
+    static void register(String type, SdpTransform.Factory factory) {
+        factories.put(type, factory);
+    }
+
+    /**
+     * Creates the transforms configured by a specific JavaScript array of
+     * objects whose <tt>type</tt> is the type of the transform.
+     *
+     * @throws IllegalArgumentException if a configuration is invalid
+     */
+    static List<SdpTransform> fromReadableArray(ReadableArray array) {
+        List<SdpTransform> transforms = new ArrayList<>();
+
+        for (int i = 0; array != null && i < array.size(); i++) {
+            ReadableMap config = array.getMap(i);
+            String type = getString(config, "type");
+            SdpTransform.Factory factory = type == null ? null : factories.get(type);
+
+            if (factory == null) {
+                throw new IllegalArgumentException("Unknown SDP transform: " + type);
+            }
+            transforms.add(factory.create(config));
+        }
+        return Collections.unmodifiableList(transforms);
+    }
+
+    /**
+     * Applies specific transforms in order to a specific SDP.
+     */
+    static String apply(List<SdpTransform> transforms, String sdp, String type) {
+        for (SdpTransform transform : transforms) {
+            sdp = transform.transform(sdp, type);
+        }
+        return sdp;
+    }
+
+    private static SdpTransform createCodecOrder(ReadableMap config) {
+        String kind = getString(config, "kind");
+        List<String> codecs = getUpperCaseStrings(config, "codecs");
+
+        return (sdp, type) -> {
+            ParsedSdp description = ParsedSdp.parse(sdp);
+
+            for (MediaSection media : description.media) {
+                if (!media.isOfKind(kind)) {
+                    continue;
+                }
+
+                Map<String, String> names = media.getCodecNames();
+                List<String> payloadTypes = media.getPayloadTypes();
+                List<String> ordered = new ArrayList<>(payloadTypes.size());
+
+                for (String codec : codecs) {
+                    for (String pt : payloadTypes) {
+                        if (codec.equals(names.get(pt))) {
+                            ordered.add(pt);
+                        }
+                    }
+                }
+                for (String pt : payloadTypes) {
+                    if (!ordered.contains(pt)) {
+                        ordered.add(pt);
+                    }
+                }
+                media.setPayloadTypes(ordered);
+            }
+            return description.toString();
+        };
+    }
+
+    private static SdpTransform createBandwidth(ReadableMap config) {
+        String kind = getString(config, "kind");
+        long bitrate
+            = config.hasKey("bitrate") && config.getType("bitrate") == ReadableType.Number
+                ? (long) config.getDouble("bitrate")
+                : 0;
+
+        return (sdp, type) -> {
+            ParsedSdp description = ParsedSdp.parse(sdp);
+
+            for (MediaSection media : description.media) {
+                if (!media.isOfKind(kind)) {
+                    continue;
+                }
+
+                List<String> lines = media.lines;
+                for (int i = lines.size() - 1; i > 0; i--) {
+                    if (lines.get(i).startsWith("b=")) {
+                        lines.remove(i);
+                    }
+                }
+                if (bitrate <= 0) {
+                    continue;
+                }
+
+                // The b= lines follow the m=, i= and c= lines.
+                int index = 1;
+                while (index < lines.size()
+                        && (lines.get(index).startsWith("i=")
+                            || lines.get(index).startsWith("c="))) {
+                    index++;
+                }
+                lines.add(index, "b=AS:" + (bitrate + 999) / 1000);
+                lines.add(index + 1, "b=TIAS:" + bitrate);
+            }
+            return description.toString();
+        };
+    }
+
+    private static SdpTransform createStripCodecs(ReadableMap config, boolean keep) {
+        String kind = getString(config, "kind");
+        Set<String> codecs = new HashSet<>(getUpperCaseStrings(config, "codecs"));
+
+        return (sdp, type) -> {
+            ParsedSdp description = ParsedSdp.parse(sdp);
+
+            for (MediaSection media : description.media) {
+                if (!media.isOfKind(kind)) {
+                    continue;
+                }
+
+                Map<String, String> names = media.getCodecNames();
+                Map<String, String> associated = media.getAssociatedPayloadTypes();
+                List<String> payloadTypes = media.getPayloadTypes();
+                Set<String> removed = new HashSet<>();
+
+                for (String pt : payloadTypes) {
+                    String name = names.get(pt);
+                    if (name == null) {
+                        continue;
+                    }
+
+                    boolean listed = codecs.contains(name);
+                    // Unless listed, RTX follows the codec it retransmits.
+                    if (associated.containsKey(pt) && !listed) {
+                        continue;
+                    }
+                    if (listed != keep) {
+                        removed.add(pt);
+                    }
+                }
+                for (Map.Entry<String, String> e : associated.entrySet()) {
+                    if (removed.contains(e.getValue())) {
+                        removed.add(e.getKey());
+                    }
+                }
+                if (removed.isEmpty() || removed.containsAll(payloadTypes)) {
+                    continue;
+                }
+                media.removePayloadTypes(removed);
+            }
+            return description.toString();
+        };
+    }
+
+    private static SdpTransform createStripHeaderExtensions(ReadableMap config) {
+        Set<String> uris = new HashSet<>(getStrings(config, "uris"));
+
+        return (sdp, type) -> {
+            ParsedSdp description = ParsedSdp.parse(sdp);
+
+            removeHeaderExtensions(description.session, uris);
+            for (MediaSection media : description.media) {
+                removeHeaderExtensions(media.lines, uris);
+            }
+            return description.toString();
+        };
+    }
+
+    private static void removeHeaderExtensions(List<String> lines, Set<String> uris) {
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            String line = lines.get(i);
+            if (line.startsWith("a=extmap:")) {
+                // a=extmap:<id>[/<direction>] <uri> [<attributes>]
+                String[] tokens = line.split(" ");
+                if (tokens.length > 1 && uris.contains(tokens[1])) {
+                    lines.remove(i);
+                }
+            }
+        }
+    }
+
+    private static String getString(ReadableMap config, String key) {
+        return config.hasKey(key) && config.getType(key) == ReadableType.String
+            ? config.getString(key)
+            : null;
+    }
+
+    private static List<String> getStrings(ReadableMap config, String key) {
+        if (!config.hasKey(key) || config.getType(key) != ReadableType.Array) {
+            throw new IllegalArgumentException("SDP transform without " + key);
+        }
+
+        ReadableArray array = config.getArray(key);
+        List<String> strings = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            strings.add(array.getString(i));
+        }
+        return strings;
+    }
+
+    private static List<String> getUpperCaseStrings(ReadableMap config, String key) {
+        List<String> strings = getStrings(config, key);
+
+        for (int i = 0; i < strings.size(); i++) {
+            strings.set(i, strings.get(i).toUpperCase(Locale.ROOT));
+        }
+        return strings;
+    }
+
+    /**
+     * The lines of an SDP split into the session section and the media
+     * sections.
+     */
+    static final class ParsedSdp {
+        final List<String> session = new ArrayList<>();
+        final List<MediaSection> media = new ArrayList<>();
+
+        static ParsedSdp parse(String sdp) {
+            ParsedSdp description = new ParsedSdp();
+            List<String> lines = description.session;
+
+            for (String line : sdp.split("\r?\n")) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.startsWith("m=")) {
+                    MediaSection media = new MediaSection();
+                    description.media.add(media);
+                    lines = media.lines;
+                }
+                lines.add(line);
+            }
+            return description;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+
+            for (String line : session) {
+                builder.append(line).append("\r\n");
+            }
+            for (MediaSection media : this.media) {
+                for (String line : media.lines) {
+                    builder.append(line).append("\r\n");
+                }
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * The lines of a media section, the first being the m= line.
+     */
+    static final class MediaSection {
+        final List<String> lines = new ArrayList<>();
+
+        boolean isOfKind(String kind) {
+            return kind == null || lines.get(0).startsWith("m=" + kind + " ");
+        }
+
+        /**
+         * Gets the payload types of the m= line in order.
+         */
+        List<String> getPayloadTypes() {
+            String[] tokens = lines.get(0).split(" ");
+            List<String> payloadTypes = new ArrayList<>();
+
+            // m=<media> <port> <proto> <fmt> ...
+            for (int i = 3; i < tokens.length; i++) {
+                payloadTypes.add(tokens[i]);
+            }
+            return payloadTypes;
+        }
+
+        void setPayloadTypes(List<String> payloadTypes) {
+            String[] tokens = lines.get(0).split(" ");
+            StringBuilder builder = new StringBuilder();
+
+            for (int i = 0; i < 3 && i < tokens.length; i++) {
+                if (i > 0) {
+                    builder.append(' ');
+                }
+                builder.append(tokens[i]);
+            }
+            for (String pt : payloadTypes) {
+                builder.append(' ').append(pt);
+            }
+            lines.set(0, builder.toString());
+        }
+
+        /**
+         * Gets the upper-case codec names of the <tt>a=rtpmap</tt> lines
+         * mapped by payload type.
+         */
+        Map<String, String> getCodecNames() {
+            Map<String, String> names = new HashMap<>();
+
+            for (String line : lines) {
+                if (line.startsWith("a=rtpmap:")) {
+                    // a=rtpmap:<pt> <name>/<clock rate>[/<channels>]
+                    int space = line.indexOf(' ');
+                    int slash = line.indexOf('/', space);
+                    if (space > 0 && slash > space) {
+                        names.put(
+                            line.substring("a=rtpmap:".length(), space),
+                            line.substring(space + 1, slash).toUpperCase(Locale.ROOT));
+                    }
+                }
+            }
+            return names;
+        }
+
+        /**
+         * Gets the payload types the RTX payload types retransmit (their
+         * <tt>apt</tt>) mapped by RTX payload type.
+         */
+        Map<String, String> getAssociatedPayloadTypes() {
+            Map<String, String> associated = new HashMap<>();
+
+            for (String line : lines) {
+                if (line.startsWith("a=fmtp:")) {
+                    int space = line.indexOf(' ');
+                    if (space < 0) {
+                        continue;
+                    }
+                    for (String parameter : line.substring(space + 1).split(";")) {
+                        parameter = parameter.trim();
+                        if (parameter.startsWith("apt=")) {
+                            associated.put(
+                                line.substring("a=fmtp:".length(), space),
+                                parameter.substring("apt=".length()));
+                        }
+                    }
+                }
+            }
+            return associated;
+        }
+
+        /**
+         * Removes specific payload types from the m= line along with their
+         * <tt>a=rtpmap</tt>, <tt>a=fmtp</tt> and <tt>a=rtcp-fb</tt> lines.
+         */
+        void removePayloadTypes(Set<String> removed) {
+            List<String> payloadTypes = getPayloadTypes();
+            payloadTypes.removeAll(removed);
+            setPayloadTypes(payloadTypes);
+
+            for (int i = lines.size() - 1; i > 0; i--) {
+                String pt = getAttributePayloadType(lines.get(i));
+                if (pt != null && removed.contains(pt)) {
+                    lines.remove(i);
+                }
+            }
+        }
+
+        private static String getAttributePayloadType(String line) {
+            String prefix;
+
+            if (line.startsWith("a=rtpmap:")) {
+                prefix = "a=rtpmap:";
+            } else if (line.startsWith("a=fmtp:")) {
+                prefix = "a=fmtp:";
+            } else if (line.startsWith("a=rtcp-fb:")) {
+                prefix = "a=rtcp-fb:";
+            } else {
+                return null;
+            }
+
+            int space = line.indexOf(' ', prefix.length());
+            return space < 0 ? null : line.substring(prefix.length(), space);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.oney.WebRTCModule;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link Executor} which runs the tasks submitted to it one at a time, in
+ * submission order, on a (shared) backing {@code ThreadPoolExecutor}. Multiple
+ * {@code SerialExecutor}s may share the same backing executor and their tasks
+ * will run concurrently with respect to each other.
+ * <p>
+ * If the backing executor is saturated, the {@code SerialExecutor} with the
+ * most urgent pending task is served first. Priorities never reorder the tasks
+ * of a single {@code SerialExecutor}: a lane which has an urgent task queued
+ * behind a less urgent one is scheduled with the urgent priority (and runs the
+ * less urgent task first).
+ * <p>
+ * A {@code SerialExecutor} may be released in favor of another one. Once it
+ * has run the tasks submitted before and while it drains, it retires and
+ * forwards the tasks submitted to it later to its successor so that late tasks
+ * neither run concurrently with its last ones nor require a new lane.
+ */
+final class SerialExecutor implements Executor {
+    /**
+     * The source of the sequence numbers which keep {@link Dispatch}es of the
+     * same priority in FIFO order.
+     */
+    private static final AtomicLong nextSequence = new AtomicLong();
+
+    /**
+     * The backing executor on which the tasks are actually run. Its queue is
+     * expected to order {@link Dispatch}es by their natural order.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * The tasks which have been submitted to this instance and have not been
+     * run yet.
+     */
+    private final ArrayDeque<Task> tasks = new ArrayDeque<>();
+
+    /**
+     * The number of tasks in {@link #tasks} per {@link ThreadUtils.Priority}
+     * ordinal.
+     */
+    private final int[] pendingByPriority
+        = new int[ThreadUtils.Priority.values().length];
+
+    /**
+     * Whether this instance is scheduled on, running on or parked on (in a
+     * {@link Barrier}) the backing executor. While {@code true}, newly
+     * submitted tasks are only queued because they will be picked up by the
+     * already scheduled drain.
+     */
+    private boolean active;
+
+    /**
+     * The {@link Dispatch} of this instance which is waiting in the queue of
+     * the backing executor, if any.
+     */
+    private Dispatch queued;
+
+    /**
+     * The {@code SerialExecutor} to which the tasks submitted after this
+     * instance has retired are forwarded or {@code null} if this instance has
+     * not been released.
+     */
+    private volatile SerialExecutor successor;
+
+    /**
+     * Whether this instance has been released and has drained i.e. it
+     * forwards all tasks to {@link #successor}.
+     */
+    private boolean retired;
+
+    SerialExecutor(ThreadPoolExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        execute(task, ThreadUtils.Priority.NORMAL);
+    }
+
+    void execute(Runnable task, ThreadUtils.Priority priority) {
+        Dispatch boosted = null;
+        SerialExecutor forward = null;
+
+        synchronized (this) {
+            if (retired) {
+                forward = successor;
+            } else {
+                tasks.add(new Task(task, priority));
+                pendingByPriority[priority.ordinal()]++;
+                if (active) {
+                    // If this lane is waiting in the queue of the backing
+                    // executor with a lower priority, requeue it with the new
+                    // one.
+                    if (queued != null
+                            && priority.ordinal() < queued.priority.ordinal()) {
+                        boosted = queued;
+                    } else {
+                        return;
+                    }
+                } else {
+                    active = true;
+                }
+            }
+        }
+
+        if (forward != null) {
+            forward.execute(task, priority);
+            return;
+        }
+
+        // The Dispatch may have been picked up by a worker in the meantime in
+        // which case the new task will be considered on the next schedule().
+        if (boosted == null || executor.remove(boosted)) {
+            schedule();
+        }
+    }
+
+    /**
+     * Releases this instance: the tasks already submitted to it and those
+     * submitted until it drains still run on it, the later ones are forwarded
+     * to a specific successor.
+     *
+     * @param successor the {@code SerialExecutor} to forward the tasks to
+     * once this instance has drained
+     */
+    void release(SerialExecutor successor) {
+        // Retiring has to exclude executeOnAll, see resolve().
+        synchronized (Barrier.class) {
+            synchronized (this) {
+                this.successor = successor;
+                if (!active) {
+                    retired = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the {@code SerialExecutor} which actually runs the tasks submitted
+     * to this instance i.e. this instance unless it has retired. Must be
+     * called while holding the lock of {@code Barrier.class} so that the
+     * result does not retire meanwhile.
+     */
+    private SerialExecutor resolve() {
+        synchronized (this) {
+            if (!retired) {
+                return this;
+            }
+        }
+        return successor.resolve();
+    }
+
+    /**
+     * Schedules the execution of the next queued task on the backing
+     * executor with the most urgent priority of the pending tasks.
+     */
+    private void schedule() {
+        Dispatch dispatch;
+
+        synchronized (this) {
+            ThreadUtils.Priority priority = ThreadUtils.Priority.NORMAL;
+            for (ThreadUtils.Priority p : ThreadUtils.Priority.values()) {
+                if (pendingByPriority[p.ordinal()] > 0) {
+                    priority = p;
+                    break;
+                }
+            }
+            dispatch = new Dispatch(priority);
+            queued = dispatch;
+        }
+
+        executor.execute(dispatch);
+    }
+
+    private void runNext() {
+        Task task;
+
+        if (successor == null) {
+            task = poll();
+        } else {
+            // This instance may retire, which has to exclude executeOnAll.
+            synchronized (Barrier.class) {
+                task = poll();
+            }
+        }
+        if (task == null) {
+            return;
+        }
+
+        // A Barrier occupies multiple SerialExecutors. The lanes which reach
+        // it first are parked and the one which reaches it last runs it (and
+        // resumes the parked ones).
+        if (task.runnable instanceof Barrier
+                && !((Barrier) task.runnable).arrive(this)) {
+            return;
+        }
+
+        try {
+            task.runnable.run();
+        } finally {
+            schedule();
+        }
+    }
+
+    /**
+     * Takes the next queued task, deactivating (and retiring, if released)
+     * this instance if there is none.
+     */
+    private synchronized Task poll() {
+        queued = null;
+
+        Task task = tasks.poll();
+        if (task == null) {
+            active = false;
+            if (successor != null) {
+                retired = true;
+            }
+        } else {
+            pendingByPriority[task.priority.ordinal()]--;
+        }
+        return task;
+    }
+
+    /**
+     * Submits a specific task to multiple {@code SerialExecutor}s at once. The
+     * task runs exactly once, after all tasks submitted earlier to any of the
+     * specified {@code SerialExecutor}s and before any tasks submitted later
+     * to any of them.
+     *
+     * @param task the task to run
+     * @param priority the priority with which {@code task} is to be scheduled
+     * @param lanes the {@code SerialExecutor}s to serialize {@code task} with
+     */
+    static void executeOnAll(
+            Runnable task,
+            ThreadUtils.Priority priority,
+            SerialExecutor... lanes) {
+        // Barriers have to be queued in the same relative order in all lanes
+        // or two of them may end up waiting for each other forever.
+        synchronized (Barrier.class) {
+            // A retired lane is replaced by its successor which may be
+            // another of the lanes. A Barrier must be queued once per lane
+            // or it will wait for itself forever.
+            Set<SerialExecutor> resolved = new LinkedHashSet<>();
+            for (SerialExecutor lane : lanes) {
+                resolved.add(lane.resolve());
+            }
+
+            if (resolved.size() == 1) {
+                resolved.iterator().next().execute(task, priority);
+                return;
+            }
+
+            Barrier barrier = new Barrier(task, resolved.size());
+            for (SerialExecutor lane : resolved) {
+                lane.execute(barrier, priority);
+            }
+        }
+    }
+
+    private static final class Task {
+        final Runnable runnable;
+        final ThreadUtils.Priority priority;
+
+        Task(Runnable runnable, ThreadUtils.Priority priority) {
+            this.runnable = runnable;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * The unit of work a {@code SerialExecutor} submits to its backing
+     * executor: run the next task of the lane.
+     */
+    private final class Dispatch implements Runnable, Comparable<Dispatch> {
+        final ThreadUtils.Priority priority;
+        final long sequence = nextSequence.getAndIncrement();
+
+        Dispatch(ThreadUtils.Priority priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public int compareTo(Dispatch other) {
+            int diff = priority.ordinal() - other.priority.ordinal();
+            if (diff == 0) {
+                diff = Long.compare(sequence, other.sequence);
+            }
+            return diff;
+        }
+
+        @Override
+        public void run() {
+            runNext();
+        }
+    }
+
+    private static final class Barrier implements Runnable {
+        private final Runnable task;
+
+        /**
+         * The lanes which have reached this barrier and are waiting for the
+         * remaining ones.
+         */
+        private final List<SerialExecutor> parked = new ArrayList<>();
+
+        /**
+         * The number of lanes which have not reached this barrier yet.
+         */
+        private int pending;
+
+        Barrier(Runnable task, int lanes) {
+            this.task = task;
+            this.pending = lanes;
+        }
+
+        /**
+         * Notifies this barrier that a specific lane has reached it.
+         *
+         * @return {@code true} if {@code lane} is the last one to reach this
+         * barrier and is to run it; otherwise, {@code false} and {@code lane}
+         * is parked until this barrier has run.
+         */
+        synchronized boolean arrive(SerialExecutor lane) {
+            if (--pending > 0) {
+                parked.add(lane);
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                for (SerialExecutor lane : parked) {
+                    lane.schedule();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.oney.WebRTCModule;
+
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Periodically gets the stats of the PeerConnections it has been started for,
+ * derives a few metrics from them natively (bitrates, packet loss, round-trip
+ * time, jitter and decoded frame rate) and reports the metrics of all
+ * PeerConnections to JavaScript in a single
+ * <tt>peerConnectionStatsSummary</tt> event per interval. Spares JavaScript
+ * polling and parsing the full stats of every PeerConnection.
+ */
+class StatsSampler {
+    private static final String TAG = WebRTCModule.TAG;
+
+    /**
+     * The default time in milliseconds between two samples.
+     */
+    private static final long DEFAULT_INTERVAL = 1000;
+
+    /**
+     * The shortest time in milliseconds between two samples.
+     */
+    private static final long MIN_INTERVAL = 100;
+
+    private final WebRTCModule webRTCModule;
+
+    /**
+     * The previous samples of the PeerConnections which are being sampled
+     * mapped by PeerConnection ID.
+     */
+    private final ConcurrentHashMap<Integer, Sample> samples
+        = new ConcurrentHashMap<>();
+
+    private volatile long interval = DEFAULT_INTERVAL;
+
+    /**
+     * The scheduled next sampling, if any. Guarded by {@code this}.
+     */
+    private ScheduledFuture<?> nextSampling;
+
+    /**
+     * The sampling whose results have not been reported yet, if any. Guarded
+     * by {@code this}.
+     */
+    private Round pendingRound;
+
+    StatsSampler(WebRTCModule webRTCModule) {
+        this.webRTCModule = webRTCModule;
+    }
+
+    /**
+     * Sets the time between two samples. Takes effect after the next sample.
+     *
+     * @param interval the time in milliseconds
+     */
+    void setInterval(long interval) {
+        this.interval = Math.max(MIN_INTERVAL, interval);
+    }
+
+    /**
+     * Starts sampling the stats of a specific PeerConnection.
+     *
+     * @param id the ID of the PeerConnection
+     */
+    void start(int id) {
+        samples.putIfAbsent(id, new Sample());
+
+        synchronized (this) {
+            if (nextSampling == null) {
+                nextSampling = ThreadUtils.schedule(interval, this::sample);
+            }
+        }
+    }
+
+    /**
+     * Stops sampling the stats of a specific PeerConnection.
+     *
+     * @param id the ID of the PeerConnection
+     */
+    void stop(int id) {
+        samples.remove(id);
+
+        synchronized (this) {
+            if (samples.isEmpty() && nextSampling != null) {
+                nextSampling.cancel(false);
+                nextSampling = null;
+            }
+        }
+    }
+
+    /**
+     * Requests the stats of all PeerConnections which are being sampled.
+     * Invoked on the scheduler thread.
+     */
+    private void sample() {
+        List<Integer> ids;
+        Round round;
+        Round unfinishedRound;
+
+        synchronized (this) {
+            // The IDs are read while holding the lock so that a concurrent
+            // start() either is in them or sees nextSampling cleared and
+            // schedules the next sampling itself.
+            ids = new ArrayList<>(samples.keySet());
+            nextSampling
+                = ids.isEmpty()
+                    ? null
+                    : ThreadUtils.schedule(interval, this::sample);
+            unfinishedRound = pendingRound;
+            pendingRound = round = ids.isEmpty() ? null : new Round(ids.size());
+        }
+
+        // Report whatever the previous round got rather than wait forever for
+        // a PeerConnection which doesn't deliver its stats.
+        if (unfinishedRound != null) {
+            unfinishedRound.report();
+        }
+
+        for (int id : ids) {
+            ThreadUtils.runOnPeerConnectionExecutor(
+                id,
+                "statsSamplerGetStats",
+                ThreadUtils.Priority.BULK,
+                () -> sample(id, round));
+        }
+    }
+
+    /**
+     * Requests the stats of a specific PeerConnection as part of a specific
+     * round. Invoked on the lane of the PeerConnection.
+     */
+    private void sample(int id, Round round) {
+        PeerConnectionObserver pco = webRTCModule.getPeerConnectionObserver(id);
+        Sample sample = samples.get(id);
+
+        if (pco == null || pco.getPeerConnection() == null || sample == null) {
+            Log.d(TAG, "statsSamplerGetStats() peerConnection is null");
+            round.complete(null);
+            return;
+        }
+
+        pco.getStats(report -> round.complete(sample.summarize(id, report)));
+    }
+
+    private static long longValue(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    private static double doubleValue(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    /**
+     * The summaries collected in a single sampling of all PeerConnections.
+     */
+    private final class Round {
+        private final AtomicInteger remaining;
+        private final AtomicBoolean reported = new AtomicBoolean();
+
+        /**
+         * Guarded by {@code this}.
+         */
+        private final WritableArray summaries = Arguments.createArray();
+
+        Round(int count) {
+            remaining = new AtomicInteger(count);
+        }
+
+        void complete(WritableMap summary) {
+            if (summary != null) {
+                synchronized (this) {
+                    if (!reported.get()) {
+                        summaries.pushMap(summary);
+                    }
+                }
+            }
+            if (remaining.decrementAndGet() == 0) {
+                report();
+            }
+        }
+
+        void report() {
+            if (!reported.compareAndSet(false, true)) {
+                return;
+            }
+
+            synchronized (StatsSampler.this) {
+                if (pendingRound == this) {
+                    pendingRound = null;
+                }
+            }
+
+            WritableMap params = Arguments.createMap();
+            synchronized (this) {
+                params.putArray("summaries", summaries);
+            }
+            webRTCModule.sendEvent("peerConnectionStatsSummary", params);
+        }
+    }
+
+    /**
+     * The totals of the previous stats of a PeerConnection from which the
+     * rates are derived.
+     */
+    private static final class Sample {
+        private double timestampUs = -1;
+        private long bytesSent;
+        private long bytesReceived;
+        private long packetsReceived;
+        private long packetsLost;
+        private long framesDecoded;
+
+        /**
+         * Derives the metrics of a specific PeerConnection from a specific
+         * report of its stats and remembers the totals for the next time.
+         */
+        synchronized WritableMap summarize(int id, RTCStatsReport report) {
+            long bytesSent = 0;
+            long bytesReceived = 0;
+            long packetsReceived = 0;
+            long packetsLost = 0;
+            long framesDecoded = 0;
+            double jitter = -1;
+            double rtt = -1;
+            double remoteRtt = -1;
+
+            for (RTCStats stats : report.getStatsMap().values()) {
+                Map<String, Object> members = stats.getMembers();
+
+                switch (stats.getType()) {
+                case "outbound-rtp":
+                    bytesSent += longValue(members.get("bytesSent"));
+                    break;
+                case "inbound-rtp":
+                    bytesReceived += longValue(members.get("bytesReceived"));
+                    packetsReceived += longValue(members.get("packetsReceived"));
+                    packetsLost += longValue(members.get("packetsLost"));
+                    framesDecoded += longValue(members.get("framesDecoded"));
+                    if (members.containsKey("jitter")) {
+                        jitter = Math.max(jitter, doubleValue(members.get("jitter")));
+                    }
+                    break;
+                case "candidate-pair":
+                    if (Boolean.TRUE.equals(members.get("nominated"))
+                            && "succeeded".equals(members.get("state"))
+                            && members.containsKey("currentRoundTripTime")) {
+                        rtt = doubleValue(members.get("currentRoundTripTime"));
+                    }
+                    break;
+                case "remote-inbound-rtp":
+                    if (members.containsKey("roundTripTime")) {
+                        remoteRtt
+                            = Math.max(remoteRtt, doubleValue(members.get("roundTripTime")));
+                    }
+                    break;
+                }
+            }
+
+            double timestampUs = report.getTimestampUs();
+            WritableMap summary = Arguments.createMap();
+
+            summary.putInt("id", id);
+            summary.putDouble("timestamp", timestampUs / 1000.0);
+
+            // The rates need a previous sample.
+            double seconds = (timestampUs - this.timestampUs) / 1000000.0;
+            if (this.timestampUs >= 0 && seconds > 0) {
+                summary.putDouble(
+                    "sendBitrate",
+                    Math.max(0, bytesSent - this.bytesSent) * 8 / seconds);
+                summary.putDouble(
+                    "receiveBitrate",
+                    Math.max(0, bytesReceived - this.bytesReceived) * 8 / seconds);
+                summary.putDouble(
+                    "framesDecodedPerSecond",
+                    Math.max(0, framesDecoded - this.framesDecoded) / seconds);
+
+                long lost = Math.max(0, packetsLost - this.packetsLost);
+                long received = Math.max(0, packetsReceived - this.packetsReceived);
+                if (lost + received > 0) {
+                    summary.putDouble("packetLoss", 100.0 * lost / (lost + received));
+                }
+            }
+
+            // The round-trip time of the ICE candidate pair in use, otherwise
+            // the one reported by RTCP.
+            if (rtt < 0) {
+                rtt = remoteRtt;
+            }
+            if (rtt >= 0) {
+                summary.putDouble("rtt", rtt * 1000);
+            }
+            if (jitter >= 0) {
+                summary.putDouble("jitter", jitter * 1000);
+            }
+
+            this.timestampUs = timestampUs;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+            this.packetsReceived = packetsReceived;
+            this.packetsLost = packetsLost;
+            this.framesDecoded = framesDecoded;
+
+            return summary;
+        }
+    }
+}
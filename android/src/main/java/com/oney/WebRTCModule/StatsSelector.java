@@ -0,0 +1,113 @@
+package com.oney.WebRTCModule;
+
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Narrows an <tt>RTCStatsReport</tt> down to the stats which relate to a
+ * single <tt>MediaStreamTrack</tt> as the stats selection algorithm of the
+ * WebRTC standard does for <tt>RTCRtpSender</tt>s and
+ * <tt>RTCRtpReceiver</tt>s: the RTP stream stats of the track and all stats
+ * they (transitively) reference e.g. codecs, transports, candidate pairs and
+ * certificates.
+ * <p>
+ * The <tt>PeerConnection.getStats</tt> overloads which take an
+ * <tt>RtpSender</tt> or an <tt>RtpReceiver</tt> are not available in the
+ * WebRTC library this module is built with.
+ */
+final class StatsSelector {
+    private StatsSelector() {
+    }
+
+    /**
+     * Selects the stats which relate to a specific track.
+     *
+     * @param report the full report of a <tt>PeerConnection</tt>
+     * @param trackId the ID of the track
+     * @return a report with the selected stats of <tt>report</tt>
+     */
+    static RTCStatsReport select(RTCStatsReport report, String trackId) {
+        Map<String, RTCStats> statsMap = report.getStatsMap();
+        Map<String, RTCStats> selected = new LinkedHashMap<>();
+        ArrayDeque<RTCStats> pending = new ArrayDeque<>();
+
+        for (RTCStats stats : statsMap.values()) {
+            if (isRoot(stats, trackId, statsMap)) {
+                selected.put(stats.getId(), stats);
+                pending.add(stats);
+            }
+        }
+
+        // Follow the references (i.e. the members such as codecId and
+        // transportId whose values are IDs of other stats).
+        RTCStats stats;
+        while ((stats = pending.poll()) != null) {
+            for (Map.Entry<String, Object> entry : stats.getMembers().entrySet()) {
+                Object value = entry.getValue();
+
+                if (!(value instanceof String) || !entry.getKey().endsWith("Id")) {
+                    continue;
+                }
+
+                RTCStats referenced = statsMap.get(value);
+                if (referenced != null && !selected.containsKey(referenced.getId())) {
+                    selected.put(referenced.getId(), referenced);
+                    pending.add(referenced);
+                }
+            }
+        }
+
+        return new RTCStatsReport((long) report.getTimestampUs(), selected);
+    }
+
+    /**
+     * Determines whether specific stats are of a specific track i.e. their
+     * <tt>trackIdentifier</tt> is the ID of the track or they reference
+     * (legacy) track stats or media source stats which are. The latter is how
+     * <tt>outbound-rtp</tt> stats identify their track, they have no
+     * <tt>trackIdentifier</tt> of their own.
+     */
+    private static boolean isRoot(
+            RTCStats stats,
+            String trackId,
+            Map<String, RTCStats> statsMap) {
+        switch (stats.getType()) {
+        case "inbound-rtp":
+        case "outbound-rtp":
+        case "media-source":
+        case "track":
+            break;
+        default:
+            return false;
+        }
+
+        Map<String, Object> members = stats.getMembers();
+        if (trackId.equals(members.get("trackIdentifier"))) {
+            return true;
+        }
+
+        return isReferenceToTrack(members.get("trackId"), trackId, statsMap)
+            || isReferenceToTrack(members.get("mediaSourceId"), trackId, statsMap);
+    }
+
+    /**
+     * Determines whether a specific member value is the ID of stats whose
+     * <tt>trackIdentifier</tt> is the ID of a specific track.
+     */
+    private static boolean isReferenceToTrack(
+            Object statsId,
+            String trackId,
+            Map<String, RTCStats> statsMap) {
+        if (!(statsId instanceof String)) {
+            return false;
+        }
+
+        RTCStats stats = statsMap.get(statsId);
+        return stats != null
+            && trackId.equals(stats.getMembers().get("trackIdentifier"));
+    }
+}
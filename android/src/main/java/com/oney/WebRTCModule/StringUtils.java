@@ -5,8 +5,37 @@ import org.webrtc.RTCStats;
 import org.webrtc.RTCStatsReport;
 
 import java.util.Map;
+import java.util.Objects;
 
 public class StringUtils {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * The initial capacity of the buffer of a thread, which fits the stats of
+     * a PeerConnection with a few tracks.
+     */
+    private static final int INITIAL_BUFFER_CAPACITY = 16 * 1024;
+
+    /**
+     * The largest buffer (in chars) which is kept for reuse by a thread.
+     * Larger buffers are dropped after use so that a single large report
+     * doesn't pin memory.
+     */
+    private static final int MAX_RETAINED_BUFFER_CAPACITY = 256 * 1024;
+
+    /**
+     * The buffer in which the JSON representations are constructed, reused
+     * across calls on the same thread (e.g. the WebRTC signaling thread on
+     * which stats are delivered).
+     */
+    private static final ThreadLocal<StringBuilder> buffer
+        = new ThreadLocal<StringBuilder>() {
+            @Override
+            protected StringBuilder initialValue() {
+                return new StringBuilder(INITIAL_BUFFER_CAPACITY);
+            }
+        };
+
     /**
      * Constructs a JSON <tt>String</tt> representation of a specific array of
      * <tt>RTCStatsReport</tt>s (produced by {@link PeerConnection#getStats}).
@@ -17,67 +46,363 @@ public class StringUtils {
      * in JSON format
      */
     public static String statsToJSON(RTCStatsReport report) {
-        StringBuilder builder = new StringBuilder("[");
+        StringBuilder builder = obtainBuffer();
+
+        builder.append('[');
+
+        boolean firstKey = true;
+
+        for (RTCStats stats : report.getStatsMap().values()) {
+            if (firstKey) {
+                firstKey = false;
+            } else {
+                builder.append(',');
+            }
+
+            appendStats(builder, stats, null);
+        }
+
+        builder.append(']');
+
+        return releaseBuffer(builder);
+    }
+
+    /**
+     * Constructs a JSON <tt>String</tt> representation of the differences
+     * between a specific <tt>RTCStatsReport</tt> and the <tt>RTCStats</tt> of
+     * a previous one. The representation is an object with the following
+     * properties:
+     * <ul>
+     * <li><tt>base</tt>: the version of the previous report the differences
+     * apply to or zero if the differences are a full report;</li>
+     * <li><tt>version</tt>: the version of the specified report;</li>
+     * <li><tt>updated</tt>: the <tt>RTCStats</tt> which are new (with all their
+     * members) or have changed (with their changed members only, removed
+     * members being <tt>null</tt>) in the same format as
+     * {@link #statsToJSON(RTCStatsReport)};</li>
+     * <li><tt>removed</tt>: the IDs of the <tt>RTCStats</tt> which are no
+     * longer present.</li>
+     * </ul>
+     *
+     * @param previous the <tt>RTCStats</tt> of the previous report mapped by
+     * ID or <tt>null</tt> to represent the specified report in full
+     * @param report the <tt>RTCStatsReport</tt> to compare to
+     * <tt>previous</tt>
+     * @param base the version of <tt>previous</tt>
+     * @param version the version of <tt>report</tt>
+     * @return a <tt>String</tt> which represents the differences in JSON format
+     */
+    public static String statsDeltaToJSON(
+            Map<String, RTCStats> previous,
+            RTCStatsReport report,
+            int base,
+            int version) {
+        StringBuilder builder = obtainBuffer();
+
+        builder
+            .append("{\"base\":")
+            .append(previous == null ? 0 : base)
+            .append(",\"version\":")
+            .append(version)
+            .append(",\"updated\":[");
 
         boolean firstKey = true;
 
         Map<String, RTCStats> statsMap = report.getStatsMap();
 
-        for (String key : report.getStatsMap().keySet()) {
+        for (Map.Entry<String, RTCStats> entry : statsMap.entrySet()) {
+            RTCStats stats = entry.getValue();
+            RTCStats previousStats
+                = previous == null ? null : previous.get(entry.getKey());
+
+            if (previousStats != null && !hasChanged(previousStats, stats)) {
+                continue;
+            }
 
             if (firstKey) {
                 firstKey = false;
             } else {
-                builder.append(",");
+                builder.append(',');
             }
 
-            builder.append("[\"").append(key).append("\",{");
+            appendStats(builder, stats, previousStats);
+        }
 
-            RTCStats stats = statsMap.get(key);
-            builder
-                .append("\"timestamp\":")
-                .append(stats.getTimestampUs() / 1000.0)
-                .append(",\"type\":\"")
-                .append(stats.getType())
-                .append("\",\"id\":\"")
-                .append(stats.getId())
-                .append("\"");
+        builder.append("],\"removed\":[");
 
-            for (Map.Entry<String, Object> entry : stats.getMembers().entrySet()) {
-                builder
-                    .append(",")
-                    .append("\"")
-                    .append(entry.getKey())
-                    .append("\":");
-                appendValue(builder, entry.getValue());
+        if (previous != null) {
+            firstKey = true;
+
+            for (String key : previous.keySet()) {
+                if (statsMap.containsKey(key)) {
+                    continue;
+                }
+
+                if (firstKey) {
+                    firstKey = false;
+                } else {
+                    builder.append(',');
+                }
+
+                appendString(builder, key);
             }
+        }
+
+        builder.append("]}");
+
+        return releaseBuffer(builder);
+    }
+
+    /**
+     * Appends a specific <tt>RTCStats</tt> as an <tt>[id, stats]</tt> JSON
+     * array. If <tt>previous</tt> is specified, only the members which differ
+     * from it are appended and the members which are no longer present are
+     * appended as <tt>null</tt>.
+     */
+    private static void appendStats(
+            StringBuilder builder,
+            RTCStats stats,
+            RTCStats previous) {
+        builder.append('[');
+        appendString(builder, stats.getId());
+        builder.append(",{\"timestamp\":");
+        appendDouble(builder, stats.getTimestampUs() / 1000.0);
+        builder.append(",\"type\":");
+        appendString(builder, stats.getType());
+        builder.append(",\"id\":");
+        appendString(builder, stats.getId());
 
-            builder.append("}]");
+        Map<String, Object> previousMembers
+            = previous == null ? null : previous.getMembers();
+
+        for (Map.Entry<String, Object> entry : stats.getMembers().entrySet()) {
+            if (previousMembers != null
+                    && Objects.deepEquals(
+                        entry.getValue(),
+                        previousMembers.get(entry.getKey()))) {
+                continue;
+            }
+
+            builder.append(',');
+            appendString(builder, entry.getKey());
+            builder.append(':');
+            appendValue(builder, entry.getValue());
         }
 
-        builder.append("]");
+        if (previousMembers != null) {
+            Map<String, Object> members = stats.getMembers();
+
+            for (String key : previousMembers.keySet()) {
+                if (!members.containsKey(key)) {
+                    builder.append(',');
+                    appendString(builder, key);
+                    builder.append(":null");
+                }
+            }
+        }
 
-        return builder.toString();
+        builder.append("}]");
     }
 
+    /**
+     * Determines whether any member of a specific <tt>RTCStats</tt> differs
+     * from the same member of a previous one. The timestamp is not taken into
+     * account.
+     */
+    private static boolean hasChanged(RTCStats previous, RTCStats stats) {
+        Map<String, Object> previousMembers = previous.getMembers();
+        Map<String, Object> members = stats.getMembers();
+
+        if (previousMembers.size() != members.size()) {
+            return true;
+        }
+
+        for (Map.Entry<String, Object> entry : members.entrySet()) {
+            if (!Objects.deepEquals(
+                    entry.getValue(),
+                    previousMembers.get(entry.getKey()))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Appends the JSON representation of a specific <tt>RTCStats</tt> member
+     * value. The checks are ordered by how common the types are in reports.
+     */
     private static void appendValue(StringBuilder builder, Object value) {
-        if (value instanceof Object[]) {
+        if (value instanceof String) {
+            appendString(builder, (String) value);
+        } else if (value instanceof Long) {
+            builder.append(((Long) value).longValue());
+        } else if (value instanceof Double) {
+            appendDouble(builder, ((Double) value).doubleValue());
+        } else if (value instanceof Integer) {
+            builder.append(((Integer) value).intValue());
+        } else if (value instanceof Boolean) {
+            builder.append(((Boolean) value).booleanValue());
+        } else if (value instanceof Object[]) {
             Object[] arrayValue = (Object[]) value;
-            builder.append("[");
 
+            builder.append('[');
             for (int i = 0; i < arrayValue.length; ++i) {
                 if (i != 0) {
-                    builder.append(",");
+                    builder.append(',');
                 }
-
                 appendValue(builder, arrayValue[i]);
             }
+            builder.append(']');
+        } else if (value instanceof Map) {
+            boolean firstKey = true;
+
+            builder.append('{');
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (firstKey) {
+                    firstKey = false;
+                } else {
+                    builder.append(',');
+                }
+                appendString(builder, String.valueOf(entry.getKey()));
+                builder.append(':');
+                appendValue(builder, entry.getValue());
+            }
+            builder.append('}');
+        } else if (value instanceof long[]) {
+            long[] arrayValue = (long[]) value;
+
+            builder.append('[');
+            for (int i = 0; i < arrayValue.length; ++i) {
+                if (i != 0) {
+                    builder.append(',');
+                }
+                builder.append(arrayValue[i]);
+            }
+            builder.append(']');
+        } else if (value instanceof double[]) {
+            double[] arrayValue = (double[]) value;
+
+            builder.append('[');
+            for (int i = 0; i < arrayValue.length; ++i) {
+                if (i != 0) {
+                    builder.append(',');
+                }
+                appendDouble(builder, arrayValue[i]);
+            }
+            builder.append(']');
+        } else if (value instanceof int[]) {
+            int[] arrayValue = (int[]) value;
+
+            builder.append('[');
+            for (int i = 0; i < arrayValue.length; ++i) {
+                if (i != 0) {
+                    builder.append(',');
+                }
+                builder.append(arrayValue[i]);
+            }
+            builder.append(']');
+        } else if (value instanceof boolean[]) {
+            boolean[] arrayValue = (boolean[]) value;
+
+            builder.append('[');
+            for (int i = 0; i < arrayValue.length; ++i) {
+                if (i != 0) {
+                    builder.append(',');
+                }
+                builder.append(arrayValue[i]);
+            }
+            builder.append(']');
+        } else if (value instanceof Number) {
+            // e.g. BigInteger (uint64 members)
+            builder.append(value.toString());
+        } else if (value == null) {
+            builder.append("null");
+        } else {
+            appendString(builder, value.toString());
+        }
+    }
 
-            builder.append("]");
-        } else if (value instanceof String) {
-            builder.append("\"").append(value).append("\"");
+    /**
+     * Appends a specific <tt>double</tt> as a JSON number. JSON has no
+     * representation for NaN and the infinities so they become <tt>null</tt>.
+     */
+    private static void appendDouble(StringBuilder builder, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            builder.append("null");
+        } else if (value == (long) value) {
+            // Whole numbers (e.g. timestamps in milliseconds) don't need the
+            // trailing ".0" and avoid the slower floating-point formatting.
+            builder.append((long) value);
         } else {
             builder.append(value);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Appends a specific <tt>String</tt> as a quoted and escaped JSON string.
+     */
+    private static void appendString(StringBuilder builder, String value) {
+        builder.append('"');
+
+        int length = value.length();
+        int start = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String escape;
+
+            if (c == '"') {
+                escape = "\\\"";
+            } else if (c == '\\') {
+                escape = "\\\\";
+            } else if (c >= 0x20 && c != '\u2028' && c != '\u2029') {
+                continue;
+            } else if (c == '\n') {
+                escape = "\\n";
+            } else if (c == '\r') {
+                escape = "\\r";
+            } else if (c == '\t') {
+                escape = "\\t";
+            } else {
+                // The other control characters as well as the line and
+                // paragraph separators (which JavaScript did not allow in
+                // string literals).
+                escape = null;
+            }
+
+            builder.append(value, start, i);
+            if (escape != null) {
+                builder.append(escape);
+            } else {
+                builder
+                    .append("\\u")
+                    .append(HEX_DIGITS[(c >> 12) & 0xf])
+                    .append(HEX_DIGITS[(c >> 8) & 0xf])
+                    .append(HEX_DIGITS[(c >> 4) & 0xf])
+                    .append(HEX_DIGITS[c & 0xf]);
+            }
+            start = i + 1;
+        }
+
+        builder.append(value, start, length).append('"');
+    }
+
+    private static StringBuilder obtainBuffer() {
+        StringBuilder builder = buffer.get();
+
+        builder.setLength(0);
+        return builder;
+    }
+
+    private static String releaseBuffer(StringBuilder builder) {
+        String json = builder.toString();
+
+        if (builder.capacity() > MAX_RETAINED_BUFFER_CAPACITY) {
+            buffer.remove();
+        } else {
+            builder.setLength(0);
+        }
+        return json;
+    }
+}
@@ -1,22 +1,320 @@
 package com.oney.WebRTCModule;
 
-import java.util.concurrent.ExecutorService;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 final class ThreadUtils {
     /**
-     * Thread which will be used to call all WebRTC PeerConnection APIs. They
-     * they don't run on the calling thread anyway, we are deferring the calls
-     * to this thread to avoid (potentially) blocking the calling thread.
+     * The urgency of an operation. When all threads are busy, the lane with
+     * the most urgent pending operation is served next. Operations queued on
+     * the same lane still run in order regardless of their priorities.
      */
-    private static final ExecutorService executor
-        = Executors.newSingleThreadExecutor();
+    enum Priority {
+        /**
+         * Latency-sensitive operations such as muting, sending data channel
+         * messages and adding ICE candidates.
+         */
+        INTERACTIVE,
+        NORMAL,
+        /**
+         * Heavy operations whose latency is not critical such as stats,
+         * device enumeration and opening cameras.
+         */
+        BULK
+    }
+
+    /**
+     * The number of threads which will be used to call WebRTC APIs. They
+     * don't run on the calling thread anyway, we are deferring the calls to
+     * these threads to avoid (potentially) blocking the calling thread.
+     */
+    static final int POOL_SIZE
+        = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * The number of threads to which the pool may grow when all of its threads
+     * are blocked (e.g. closing PeerConnections or opening a camera) so that
+     * the other lanes are not starved.
+     */
+    private static final int MAX_POOL_SIZE = 4 * POOL_SIZE;
+
+    /**
+     * The time in milliseconds without any operation completing after which
+     * the pool is considered stalled if operations are waiting for a thread.
+     */
+    private static final long STALL_CHECK_INTERVAL = 250;
+
+    /**
+     * The pool of threads shared by all lanes. Its queue orders the lanes
+     * waiting for a thread by {@link Priority}.
+     */
+    private static final ThreadPoolExecutor executor
+        = new ThreadPoolExecutor(
+            POOL_SIZE, MAX_POOL_SIZE,
+            30L, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<Runnable>()) {
+            @Override
+            public void execute(Runnable command) {
+                super.execute(command);
+                watchForStall();
+            }
+        };
+
+    /**
+     * Whether {@link #checkForStall()} is scheduled.
+     */
+    private static final AtomicBoolean stallWatchScheduled = new AtomicBoolean();
+
+    /**
+     * The number of operations completed by {@link #executor} at the last
+     * {@link #checkForStall()}. Confined to {@link #scheduler}.
+     */
+    private static long lastCompletedTaskCount;
+
+    /**
+     * The thread on which delayed and periodic work (e.g. flushing batched
+     * events) is timed. The work scheduled on it is expected to be short or to
+     * hop onto a lane.
+     */
+    private static final ScheduledExecutorService scheduler
+        = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * The lane on which operations which are not specific to a single
+     * PeerConnection (factory initialization, getUserMedia, local
+     * MediaStreams and MediaStreamTracks) are run.
+     */
+    private static final SerialExecutor globalExecutor
+        = new SerialExecutor(executor);
+
+    /**
+     * The lanes on which the operations on a specific PeerConnection are run,
+     * mapped by PeerConnection ID. Operations on the same PeerConnection run
+     * in order, operations on different PeerConnections run concurrently.
+     */
+    private static final ConcurrentHashMap<Integer, SerialExecutor> peerConnectionExecutors
+        = new ConcurrentHashMap<>();
+
+    /**
+     * The maximum number of released lanes which are remembered.
+     */
+    private static final int MAX_RELEASED_EXECUTORS = 64;
+
+    /**
+     * The most recently released lanes mapped by PeerConnection ID. Operations
+     * queued for a released PeerConnection are submitted to its released lane
+     * (which forwards them to the global lane once it has drained) rather than
+     * to a new lane. Only the most recent ones are remembered so that the
+     * lanes of closed PeerConnections are not kept for the life of the
+     * process; an operation queued for a PeerConnection which was released
+     * longer ago (which is not expected) gets a new lane. Also serves as the
+     * lock which moves lanes from {@link #peerConnectionExecutors} to here.
+     */
+    private static final Map<Integer, SerialExecutor> releasedExecutors
+        = new LinkedHashMap<Integer, SerialExecutor>() {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Integer, SerialExecutor> eldest) {
+                return size() > MAX_RELEASED_EXECUTORS;
+            }
+        };
+
+    /**
+     * Runs the given {@link Runnable} on the global lane.
+     * @param name the name of the operation under which its latency is
+     * recorded by {@link ModuleMetrics}
+     * @param runnable
+     */
+    public static void runOnExecutor(String name, Runnable runnable) {
+        runOnExecutor(name, Priority.NORMAL, runnable);
+    }
 
     /**
-     * Runs the given {@link Runnable} on the executor.
+     * Runs the given {@link Runnable} on the global lane with a specific
+     * {@link Priority}.
+     * @param name the name of the operation under which its latency is
+     * recorded by {@link ModuleMetrics}
+     * @param priority
      * @param runnable
      */
-    public static void runOnExecutor(Runnable runnable) {
-        executor.execute(runnable);
+    public static void runOnExecutor(
+            String name,
+            Priority priority,
+            Runnable runnable) {
+        globalExecutor.execute(
+            ModuleMetrics.instrument(name, runnable),
+            priority);
+    }
+
+    /**
+     * Runs the given {@link Runnable} on the lane of a specific
+     * PeerConnection.
+     * @param id the ID of the PeerConnection
+     * @param name the name of the operation under which its latency is
+     * recorded by {@link ModuleMetrics}
+     * @param runnable
+     */
+    public static void runOnPeerConnectionExecutor(
+            int id,
+            String name,
+            Runnable runnable) {
+        runOnPeerConnectionExecutor(id, name, Priority.NORMAL, runnable);
+    }
+
+    /**
+     * Runs the given {@link Runnable} on the lane of a specific
+     * PeerConnection with a specific {@link Priority}.
+     * @param id the ID of the PeerConnection
+     * @param name the name of the operation under which its latency is
+     * recorded by {@link ModuleMetrics}
+     * @param priority
+     * @param runnable
+     */
+    public static void runOnPeerConnectionExecutor(
+            int id,
+            String name,
+            Priority priority,
+            Runnable runnable) {
+        getPeerConnectionExecutor(id).execute(
+            ModuleMetrics.instrument(name, runnable),
+            priority);
+    }
+
+    /**
+     * Runs the given {@link Runnable} on both the global lane and the lane of
+     * a specific PeerConnection i.e. after all operations queued so far on
+     * either and before any operation queued later on either. Meant for
+     * operations which touch a PeerConnection and global state (e.g. local
+     * MediaStreams) at the same time.
+     * @param id the ID of the PeerConnection
+     * @param name the name of the operation under which its latency is
+     * recorded by {@link ModuleMetrics}
+     * @param runnable
+     */
+    public static void runOnPeerConnectionAndGlobalExecutor(
+            int id,
+            String name,
+            Runnable runnable) {
+        SerialExecutor.executeOnAll(
+            ModuleMetrics.instrument(name, runnable),
+            Priority.NORMAL,
+            globalExecutor,
+            getPeerConnectionExecutor(id));
+    }
+
+    /**
+     * Runs the given {@link Runnable} on the scheduler thread after a specific
+     * delay.
+     * @param delayMs the delay in milliseconds
+     * @param runnable
+     * @return a {@code ScheduledFuture} which may be used to cancel the
+     * execution of {@code runnable}
+     */
+    public static ScheduledFuture<?> schedule(long delayMs, Runnable runnable) {
+        return scheduler.schedule(runnable, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Releases the lane of a specific PeerConnection. Operations already
+     * queued on it still run. Once it has drained, operations queued for the
+     * PeerConnection (e.g. by timers which fired after it was closed) run on
+     * the global lane so that they don't create another lane which would
+     * never be released. Only the {@link #MAX_RELEASED_EXECUTORS} most
+     * recently released lanes are remembered for the purpose.
+     * @param id the ID of the PeerConnection
+     */
+    public static void releasePeerConnectionExecutor(int id) {
+        synchronized (releasedExecutors) {
+            SerialExecutor lane = peerConnectionExecutors.remove(id);
+
+            if (lane != null) {
+                lane.release(globalExecutor);
+                releasedExecutors.put(id, lane);
+            }
+        }
+    }
+
+    /**
+     * Starts watching {@link #executor} for stalls unless it is already being
+     * watched.
+     */
+    private static void watchForStall() {
+        if (stallWatchScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(
+                ThreadUtils::checkForStall,
+                STALL_CHECK_INTERVAL,
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Adds a thread to {@link #executor} if operations are waiting while all
+     * of its threads have been busy without completing any operation since the
+     * last check (i.e. they are blocked), and removes the added threads again
+     * once there is no more waiting. Operations of a lane which is not blocked
+     * therefore never wait for long behind blocked lanes. Runs on
+     * {@link #scheduler} for as long as there are waiting operations or added
+     * threads.
+     */
+    private static void checkForStall() {
+        int corePoolSize = executor.getCorePoolSize();
+        long completedTaskCount = executor.getCompletedTaskCount();
+        boolean waiting = !executor.getQueue().isEmpty();
+
+        if (waiting) {
+            if (completedTaskCount == lastCompletedTaskCount
+                    && executor.getActiveCount() >= corePoolSize
+                    && corePoolSize < MAX_POOL_SIZE) {
+                // Starts a thread for the waiting operations.
+                executor.setCorePoolSize(corePoolSize + 1);
+                ModuleMetrics.count("threadPool.grow");
+            }
+        } else if (corePoolSize > POOL_SIZE
+                && executor.getActiveCount() < corePoolSize) {
+            // Lets an idle thread terminate.
+            executor.setCorePoolSize(corePoolSize - 1);
+        }
+        lastCompletedTaskCount = completedTaskCount;
+
+        if (!waiting && executor.getCorePoolSize() == POOL_SIZE) {
+            stallWatchScheduled.set(false);
+            // An operation may have been queued after the check above and
+            // before the watch was stopped.
+            if (executor.getQueue().isEmpty()
+                    || !stallWatchScheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+        scheduler.schedule(
+            ThreadUtils::checkForStall,
+            STALL_CHECK_INTERVAL,
+            TimeUnit.MILLISECONDS);
+    }
+
+    private static SerialExecutor getPeerConnectionExecutor(int id) {
+        SerialExecutor lane = peerConnectionExecutors.get(id);
+
+        if (lane == null) {
+            synchronized (releasedExecutors) {
+                lane = peerConnectionExecutors.get(id);
+                if (lane == null) {
+                    lane = releasedExecutors.get(id);
+                    if (lane == null) {
+                        lane = new SerialExecutor(executor);
+                        peerConnectionExecutors.put(id, lane);
+                    }
+                }
+            }
+        }
+
+        return lane;
     }
 }
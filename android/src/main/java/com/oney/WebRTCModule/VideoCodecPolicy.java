@@ -0,0 +1,135 @@
+package com.oney.WebRTCModule;
+
+import android.media.MediaCodecInfo;
+
+import org.webrtc.VideoCodecInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The choices made through {@link WebRTCModule.Options} about the video
+ * codecs of the factories created by {@link WebRTCInitializer}: the order in
+ * which the codecs are offered, whether H.264 High Profile is encoded, which
+ * hardware encoders must not be used and whether the probed capabilities are
+ * cached by {@link CodecCapabilitiesCache}.
+ */
+final class VideoCodecPolicy {
+    /**
+     * The names of the codecs (e.g. <tt>VP8</tt>, <tt>H264</tt>) to offer
+     * before the others, in order of preference.
+     */
+    final List<String> preferredCodecs;
+
+    final boolean h264HighProfileEnabled;
+
+    /**
+     * The prefixes of the names of the <tt>MediaCodec</tt> encoders (e.g.
+     * <tt>OMX.Exynos.</tt>) which must not be used.
+     */
+    final List<String> encoderBlocklist;
+
+    final boolean capabilitiesCacheEnabled;
+
+    VideoCodecPolicy(
+            List<String> preferredCodecs,
+            boolean h264HighProfileEnabled,
+            List<String> encoderBlocklist,
+            boolean capabilitiesCacheEnabled) {
+        this.preferredCodecs
+            = preferredCodecs == null
+                ? Collections.<String>emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(preferredCodecs));
+        this.h264HighProfileEnabled = h264HighProfileEnabled;
+        this.encoderBlocklist
+            = encoderBlocklist == null
+                ? Collections.<String>emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(encoderBlocklist));
+        this.capabilitiesCacheEnabled = capabilitiesCacheEnabled;
+    }
+
+    /**
+     * Determines whether a specific <tt>MediaCodec</tt> encoder may be used.
+     */
+    boolean isEncoderAllowed(MediaCodecInfo info) {
+        return isEncoderNameAllowed(info.getName());
+    }
+
+    boolean isEncoderNameAllowed(String name) {
+        for (String prefix : encoderBlocklist) {
+            if (name.startsWith(prefix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Selects the codecs which the encoder factory reports out of specific
+     * probed (or cached) ones: drops H.264 High Profile unless it's enabled
+     * and orders the rest by preference. The blocklist applies to the probe
+     * itself (see {@link #isEncoderAllowed}) because a
+     * <tt>VideoCodecInfo</tt> doesn't tell which <tt>MediaCodec</tt> it came
+     * from.
+     *
+     * @return a new list of the selected codecs
+     */
+    List<VideoCodecInfo> selectEncoderCodecs(List<VideoCodecInfo> codecs) {
+        List<VideoCodecInfo> selected = new ArrayList<>(codecs.size());
+
+        for (VideoCodecInfo codec : codecs) {
+            if (h264HighProfileEnabled || !isH264HighProfile(codec)) {
+                selected.add(codec);
+            }
+        }
+        return order(selected);
+    }
+
+    /**
+     * Orders specific codecs by preference. The codecs which are not
+     * preferred keep their order after the preferred ones.
+     *
+     * @return a new list of the ordered codecs
+     */
+    List<VideoCodecInfo> order(List<VideoCodecInfo> codecs) {
+        List<VideoCodecInfo> ordered = new ArrayList<>(codecs);
+
+        if (!preferredCodecs.isEmpty()) {
+            // Collections.sort is stable.
+            Collections.sort(ordered, (a, b) -> Integer.compare(rank(a), rank(b)));
+        }
+        return ordered;
+    }
+
+    /**
+     * Determines whether a specific codec is H.264 High Profile, whose
+     * <tt>profile_idc</tt> (the first byte of <tt>profile-level-id</tt>) is
+     * 100 (0x64).
+     */
+    static boolean isH264HighProfile(VideoCodecInfo codec) {
+        if (!"H264".equalsIgnoreCase(codec.name)) {
+            return false;
+        }
+
+        String profileLevelId = codec.params.get("profile-level-id");
+        return profileLevelId != null && profileLevelId.regionMatches(true, 0, "64", 0, 2);
+    }
+
+    private int rank(VideoCodecInfo codec) {
+        for (int i = 0; i < preferredCodecs.size(); i++) {
+            if (preferredCodecs.get(i).equalsIgnoreCase(codec.name)) {
+                return i;
+            }
+        }
+        return preferredCodecs.size();
+    }
+
+    /**
+     * Gets the part of this policy which affects the probed capabilities.
+     * Cached capabilities probed with another key are stale.
+     */
+    String getCapabilitiesKey() {
+        return "h264HighProfile=" + h264HighProfileEnabled + ";blocklist=" + encoderBlocklist;
+    }
+}
@@ -30,9 +30,19 @@ public class VideoTrackAdapter {
 
     private final WebRTCModule webRTCModule;
 
-    public VideoTrackAdapter(WebRTCModule webRTCModule, int peerConnectionId) {
+    /**
+     * The timeline of the PeerConnection on which the first remote frame is
+     * marked.
+     */
+    private final NegotiationTimeline negotiationTimeline;
+
+    public VideoTrackAdapter(
+            WebRTCModule webRTCModule,
+            int peerConnectionId,
+            NegotiationTimeline negotiationTimeline) {
         this.peerConnectionId = peerConnectionId;
         this.webRTCModule = webRTCModule;
+        this.negotiationTimeline = negotiationTimeline;
     }
 
     public void addAdapter(String streamReactTag, VideoTrack videoTrack) {
@@ -82,7 +92,9 @@ public class VideoTrackAdapter {
 
         @Override
         public void onFrame(VideoFrame frame) {
-            frameCounter.addAndGet(1);
+            if (frameCounter.addAndGet(1) == 1) {
+                negotiationTimeline.markOnce("firstRemoteFrame");
+            }
         }
 
         private void start() {
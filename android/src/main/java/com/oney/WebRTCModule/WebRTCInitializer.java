@@ -0,0 +1,242 @@
+package com.oney.WebRTCModule;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.webrtc.EglBase;
+import org.webrtc.Loggable;
+import org.webrtc.Logging;
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.VideoDecoderFactory;
+import org.webrtc.VideoEncoderFactory;
+import org.webrtc.audio.AudioDeviceModule;
+import org.webrtc.audio.JavaAudioDeviceModule;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Creates the <tt>PeerConnectionFactory</tt> shared by all
+ * {@link WebRTCModule} instances on a thread of its own, running the
+ * independent steps (loading and initializing the native library, creating
+ * the root EGL context and creating the audio device module) in parallel, and
+ * measures how long every step takes.
+ * <p>
+ * Started either early by the host application through
+ * {@link WebRTCModule#warmUp} or lazily by the first {@link WebRTCModule}.
+ */
+final class WebRTCInitializer {
+    private static final String TAG = WebRTCModule.TAG;
+
+    private static WebRTCInitializer instance;
+
+    private final Context context;
+    private final AudioDeviceModule audioDeviceModule;
+    private final VideoEncoderFactory videoEncoderFactory;
+    private final VideoDecoderFactory videoDecoderFactory;
+    private final Loggable injectableLogger;
+    private final Logging.Severity loggingSeverity;
+    private final VideoCodecPolicy videoCodecPolicy;
+
+    /**
+     * Whether the initialization was started by {@link WebRTCModule#warmUp}
+     * rather than by a {@link WebRTCModule}.
+     */
+    private final boolean warmUp;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    /**
+     * The durations of the steps in milliseconds mapped by step name in the
+     * order they completed. Guarded by {@code this}.
+     */
+    private final Map<String, Double> timings = new LinkedHashMap<>();
+
+    private PeerConnectionFactory factory;
+    private RuntimeException failure;
+
+    private WebRTCInitializer(
+            Context context,
+            AudioDeviceModule audioDeviceModule,
+            VideoEncoderFactory videoEncoderFactory,
+            VideoDecoderFactory videoDecoderFactory,
+            Loggable injectableLogger,
+            Logging.Severity loggingSeverity,
+            VideoCodecPolicy videoCodecPolicy,
+            boolean warmUp) {
+        this.context = context.getApplicationContext() == null
+            ? context
+            : context.getApplicationContext();
+        this.audioDeviceModule = audioDeviceModule;
+        this.videoEncoderFactory = videoEncoderFactory;
+        this.videoDecoderFactory = videoDecoderFactory;
+        this.injectableLogger = injectableLogger;
+        this.loggingSeverity = loggingSeverity;
+        this.videoCodecPolicy = videoCodecPolicy;
+        this.warmUp = warmUp;
+    }
+
+    /**
+     * Starts the initialization unless it has been started already, in which
+     * case the specified arguments are ignored. A failed initialization is
+     * started over with the specified arguments.
+     *
+     * @return the (possibly already started) initialization
+     */
+    static synchronized WebRTCInitializer start(
+            Context context,
+            AudioDeviceModule audioDeviceModule,
+            VideoEncoderFactory videoEncoderFactory,
+            VideoDecoderFactory videoDecoderFactory,
+            Loggable injectableLogger,
+            Logging.Severity loggingSeverity,
+            VideoCodecPolicy videoCodecPolicy,
+            boolean warmUp) {
+        if (instance == null || instance.isFailed()) {
+            instance
+                = new WebRTCInitializer(
+                    context,
+                    audioDeviceModule,
+                    videoEncoderFactory,
+                    videoDecoderFactory,
+                    injectableLogger,
+                    loggingSeverity,
+                    videoCodecPolicy,
+                    warmUp);
+            new Thread(instance::run, "WebRTCInitializer").start();
+        } else if (!warmUp) {
+            Log.d(TAG, "WebRTC already initialized, ignoring the module options");
+        }
+
+        return instance;
+    }
+
+    /**
+     * Waits for the initialization to complete.
+     *
+     * @return the <tt>PeerConnectionFactory</tt>
+     * @throws RuntimeException if the initialization failed
+     */
+    PeerConnectionFactory await() {
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+        return factory;
+    }
+
+    /**
+     * Whether the initialization has completed with a failure.
+     */
+    boolean isFailed() {
+        // The failure is set before the latch is counted down.
+        return done.getCount() == 0 && failure != null;
+    }
+
+    boolean isWarmUp() {
+        return warmUp;
+    }
+
+    /**
+     * Gets the durations of the steps of the initialization completed so far
+     * in milliseconds mapped by step name. <tt>total</tt> is the time from the
+     * start to the end of the initialization.
+     */
+    synchronized Map<String, Double> getTimings() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(timings));
+    }
+
+    private void run() {
+        long startedAt = System.nanoTime();
+
+        try {
+            boolean needEglContext
+                = videoEncoderFactory == null || videoDecoderFactory == null;
+            EglBase.Context[] eglContext = new EglBase.Context[1];
+            Thread eglThread = null;
+
+            // The root EGL context doesn't depend on the native library.
+            if (needEglContext) {
+                eglThread = new Thread(() -> {
+                    long t = System.nanoTime();
+                    eglContext[0] = EglUtils.getRootEglBaseContext();
+                    record("eglContext", t);
+                }, "WebRTCInitializer-EGL");
+                eglThread.start();
+            }
+
+            long t = System.nanoTime();
+            PeerConnectionFactory.initialize(
+                PeerConnectionFactory.InitializationOptions.builder(context)
+                    .setInjectableLogger(injectableLogger, loggingSeverity)
+                    .createInitializationOptions());
+            record("initialize", t);
+
+            AudioDeviceModule adm = audioDeviceModule;
+            if (adm == null) {
+                t = System.nanoTime();
+                adm = JavaAudioDeviceModule.builder(context).createAudioDeviceModule();
+                record("audioDeviceModule", t);
+            }
+
+            VideoEncoderFactory encoderFactory = videoEncoderFactory;
+            VideoDecoderFactory decoderFactory = videoDecoderFactory;
+            if (needEglContext) {
+                eglThread.join();
+
+                t = System.nanoTime();
+                // The EGL context is required for HW acceleration, the
+                // factories fall back to the software codecs without it.
+                CodecCapabilitiesCache cache
+                    = videoCodecPolicy.capabilitiesCacheEnabled
+                        ? new CodecCapabilitiesCache(context, videoCodecPolicy)
+                        : null;
+                if (encoderFactory == null) {
+                    encoderFactory
+                        = new PolicyVideoEncoderFactory(eglContext[0], videoCodecPolicy, cache);
+                }
+                if (decoderFactory == null) {
+                    decoderFactory
+                        = new PolicyVideoDecoderFactory(eglContext[0], videoCodecPolicy, cache);
+                }
+                record("codecFactories", t);
+            }
+
+            t = System.nanoTime();
+            factory
+                = PeerConnectionFactory.builder()
+                    .setAudioDeviceModule(adm)
+                    .setVideoEncoderFactory(encoderFactory)
+                    .setVideoDecoderFactory(decoderFactory)
+                    .createPeerConnectionFactory();
+            record("peerConnectionFactory", t);
+        } catch (InterruptedException e) {
+            failure = new IllegalStateException("WebRTC initialization interrupted", e);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "WebRTC initialization failed", e);
+            failure = e;
+        } finally {
+            record("total", startedAt);
+            done.countDown();
+        }
+    }
+
+    private synchronized void record(String step, long startedAt) {
+        timings.put(step, (System.nanoTime() - startedAt) / 1000000.0);
+    }
+}
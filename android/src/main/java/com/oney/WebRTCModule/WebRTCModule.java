@@ -2,8 +2,8 @@ package com.oney.WebRTCModule;
 
 import androidx.annotation.Nullable;
 
+import android.content.Context;
 import android.util.Log;
-import android.util.SparseArray;
 
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Callback;
@@ -15,28 +15,51 @@ import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.ReadableMapKeySetIterator;
 import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.module.annotations.ReactModule;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 
 import org.webrtc.*;
 import org.webrtc.audio.AudioDeviceModule;
-import org.webrtc.audio.JavaAudioDeviceModule;
 
 @ReactModule(name = "WebRTCModule")
 public class WebRTCModule extends ReactContextBaseJavaModule {
     static final String TAG = WebRTCModule.class.getCanonicalName();
 
     PeerConnectionFactory mFactory;
-    private final SparseArray<PeerConnectionObserver> mPeerConnectionObservers;
-    final Map<String, MediaStream> localStreams;
+    private final Map<Integer, PeerConnectionObserver> mPeerConnectionObservers;
+    final MediaRegistry mediaRegistry;
 
-    private GetUserMediaImpl getUserMediaImpl;
+    /**
+     * Set (after {@link #mFactory}) once the initialization has succeeded.
+     * Read on other lanes through {@link #getLocalTrack(String)}.
+     */
+    private volatile GetUserMediaImpl getUserMediaImpl;
+
+    /**
+     * The options this instance was created with, kept to retry a failed
+     * initialization.
+     */
+    private final Options options;
+
+    /**
+     * The failure of the last initialization attempt or <tt>null</tt>.
+     * Confined to the global lane.
+     */
+    private RuntimeException initFailure;
+
+    private WebRTCInitializer initializer;
+
+    private final StatsSampler statsSampler = new StatsSampler(this);
+
+    private final PeerConnectionPool peerConnectionPool = new PeerConnectionPool(this);
 
     public static class Options {
         private VideoEncoderFactory videoEncoderFactory = null;
@@ -44,6 +67,11 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         private AudioDeviceModule audioDeviceModule = null;
         private Loggable injectableLogger = null;
         private Logging.Severity loggingSeverity = null;
+        private boolean metricsEnabled = false;
+        private List<String> preferredVideoCodecs = null;
+        private boolean h264HighProfileEnabled = false;
+        private List<String> videoEncoderBlocklist = null;
+        private boolean codecCapabilitiesCacheEnabled = true;
 
         public Options() {}
 
@@ -66,6 +94,47 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         public void setLoggingSeverity(Logging.Severity severity) {
             this.loggingSeverity = severity;
         }
+
+        /**
+         * Enables the recording of {@link ModuleMetrics} from the start.
+         */
+        public void setMetricsEnabled(boolean metricsEnabled) {
+            this.metricsEnabled = metricsEnabled;
+        }
+
+        /**
+         * Sets the names of the video codecs (e.g. <tt>H264</tt>,
+         * <tt>VP8</tt>) to offer before the others, in order of preference.
+         * Ignored if both video codec factories are set.
+         */
+        public void setPreferredVideoCodecs(List<String> preferredVideoCodecs) {
+            this.preferredVideoCodecs = preferredVideoCodecs;
+        }
+
+        /**
+         * Enables encoding H.264 High Profile with the hardware encoders.
+         * Ignored if the video encoder factory is set.
+         */
+        public void setH264HighProfileEnabled(boolean h264HighProfileEnabled) {
+            this.h264HighProfileEnabled = h264HighProfileEnabled;
+        }
+
+        /**
+         * Sets the prefixes of the names of the <tt>MediaCodec</tt> encoders
+         * (e.g. <tt>OMX.Exynos.</tt>) which must not be used. Ignored if the
+         * video encoder factory is set.
+         */
+        public void setVideoEncoderBlocklist(List<String> videoEncoderBlocklist) {
+            this.videoEncoderBlocklist = videoEncoderBlocklist;
+        }
+
+        /**
+         * Enables persisting the video codecs probed on the device so that
+         * later starts of the app skip the probe. Enabled by default.
+         */
+        public void setCodecCapabilitiesCacheEnabled(boolean codecCapabilitiesCacheEnabled) {
+            this.codecCapabilitiesCacheEnabled = codecCapabilitiesCacheEnabled;
+        }
     }
 
     public WebRTCModule(ReactApplicationContext reactContext) {
@@ -75,66 +144,147 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     public WebRTCModule(ReactApplicationContext reactContext, Options options) {
         super(reactContext);
 
-        mPeerConnectionObservers = new SparseArray<>();
-        localStreams = new HashMap<>();
+        mPeerConnectionObservers = new ConcurrentHashMap<>();
+        mediaRegistry = new MediaRegistry();
+
+        this.options = options;
+        if (options != null && options.metricsEnabled) {
+            ModuleMetrics.setEnabled(true);
+        }
+
+        ThreadUtils.runOnExecutor("initAsync", this::initAsync);
+    }
+
+    /**
+     * Starts creating the <tt>PeerConnectionFactory</tt> ahead of the React
+     * Native bridge so that the first {@code WebRTCModule} finds it ready or
+     * partially ready. Meant to be called from
+     * <tt>Application.onCreate</tt>; returns immediately. Only the first call
+     * takes effect and, once it has been made, the factory related
+     * {@link Options} of {@code WebRTCModule} instances are ignored.
+     *
+     * @param context the application context
+     * @param options the factory related options or <tt>null</tt>
+     */
+    public static void warmUp(Context context, @Nullable Options options) {
+        startInitializer(context, options, /* warmUp */ true);
+    }
+
+    /**
+     * Registers a type of SDP transforms which JavaScript may then configure
+     * for PeerConnections like the built-in ones, replacing the type with the
+     * same name, if any.
+     *
+     * @param type the name of the type
+     * @param factory the factory of the transforms of the type
+     */
+    public static void registerSdpTransform(String type, SdpTransform.Factory factory) {
+        SdpTransforms.register(type, factory);
+    }
+
+    private static WebRTCInitializer startInitializer(
+            Context context,
+            Options options,
+            boolean warmUp) {
+        if (options == null) {
+            options = new Options();
+        }
 
-        ThreadUtils.runOnExecutor(() -> initAsync(options));
+        return WebRTCInitializer.start(
+            context,
+            options.audioDeviceModule,
+            options.videoEncoderFactory,
+            options.videoDecoderFactory,
+            options.injectableLogger,
+            options.loggingSeverity,
+            new VideoCodecPolicy(
+                options.preferredVideoCodecs,
+                options.h264HighProfileEnabled,
+                options.videoEncoderBlocklist,
+                options.codecCapabilitiesCacheEnabled),
+            warmUp);
     }
 
     /**
      * Invoked asynchronously to initialize this {@code WebRTCModule} instance.
+     * Emits <tt>webrtcReady</tt> if the initialization succeeds and
+     * <tt>webrtcInitFailed</tt> if it fails, in which case it is retried by
+     * the next method which depends on it (see
+     * {@link #ensureInitialized(String)}). Does nothing if this instance is
+     * initialized already.
      */
-    private void initAsync(Options options) {
+    private void initAsync() {
+        if (getUserMediaImpl != null) {
+            return;
+        }
+
         ReactApplicationContext reactContext = getReactApplicationContext();
 
-        AudioDeviceModule adm = null;
-        VideoEncoderFactory encoderFactory = null;
-        VideoDecoderFactory decoderFactory = null;
-        Loggable injectableLogger = null;
-        Logging.Severity loggingSeverity = null;
-
-        if (options != null) {
-            adm = options.audioDeviceModule;
-            encoderFactory = options.videoEncoderFactory;
-            decoderFactory = options.videoDecoderFactory;
-            injectableLogger = options.injectableLogger;
-            loggingSeverity = options.loggingSeverity;
-        }
-
-        PeerConnectionFactory.initialize(
-            PeerConnectionFactory.InitializationOptions.builder(reactContext)
-                .setInjectableLogger(injectableLogger, loggingSeverity)
-                .createInitializationOptions());
-
-        if (encoderFactory == null || decoderFactory == null) {
-            // Initialize EGL context required for HW acceleration.
-            EglBase.Context eglContext = EglUtils.getRootEglBaseContext();
-
-            if (eglContext != null) {
-                encoderFactory
-                    = new DefaultVideoEncoderFactory(
-                    eglContext,
-                    /* enableIntelVp8Encoder */ true,
-                    /* enableH264HighProfile */ false);
-                decoderFactory = new DefaultVideoDecoderFactory(eglContext);
-            } else {
-                encoderFactory = new SoftwareVideoEncoderFactory();
-                decoderFactory = new SoftwareVideoDecoderFactory();
-            }
+        // A failed initialization is started over rather than reused.
+        initializer = startInitializer(reactContext, options, /* warmUp */ false);
+        try {
+            mFactory = initializer.await();
+        } catch (RuntimeException e) {
+            initFailure = e;
+            sendEvent("webrtcInitFailed", createInitFailure());
+            return;
         }
+        initFailure = null;
 
-        if (adm == null) {
-            adm = JavaAudioDeviceModule.builder(reactContext).createAudioDeviceModule();
+        getUserMediaImpl = new GetUserMediaImpl(this, reactContext);
+
+        sendEvent("webrtcReady", createStartupTimings());
+    }
+
+    /**
+     * Makes sure that this instance is initialized before a method which
+     * depends on {@link #mFactory} or {@link #getUserMediaImpl} runs,
+     * retrying a failed initialization. Must be called on the global lane.
+     *
+     * @param methodName the name of the method, for logging
+     * @return <tt>true</tt> if this instance is initialized
+     */
+    private boolean ensureInitialized(String methodName) {
+        if (getUserMediaImpl == null) {
+            Log.d(TAG, methodName + "() initializing WebRTC");
+            initAsync();
+        }
+        if (getUserMediaImpl == null) {
+            Log.e(TAG, methodName + "() " + getInitFailureMessage());
+            return false;
         }
+        return true;
+    }
 
-        mFactory
-            = PeerConnectionFactory.builder()
-                .setAudioDeviceModule(adm)
-                .setVideoEncoderFactory(encoderFactory)
-                .setVideoDecoderFactory(decoderFactory)
-                .createPeerConnectionFactory();
+    private String getInitFailureMessage() {
+        return "WebRTC initialization failed: "
+            + (initFailure == null ? null : initFailure.getMessage());
+    }
 
-        getUserMediaImpl = new GetUserMediaImpl(this, reactContext);
+    /**
+     * Gets the <tt>webrtcInitFailed</tt> payload: the message of the failure
+     * and the startup timings of the failed attempt.
+     */
+    private WritableMap createInitFailure() {
+        WritableMap params = createStartupTimings();
+        params.putString("message", getInitFailureMessage());
+        return params;
+    }
+
+    /**
+     * Gets the durations of the initialization steps in milliseconds and
+     * whether the initialization was started by {@link #warmUp}.
+     */
+    private WritableMap createStartupTimings() {
+        WritableMap timings = Arguments.createMap();
+        for (Map.Entry<String, Double> e : initializer.getTimings().entrySet()) {
+            timings.putDouble(e.getKey(), e.getValue());
+        }
+
+        WritableMap params = Arguments.createMap();
+        params.putMap("timings", timings);
+        params.putBoolean("warmedUp", initializer.isWarmUp());
+        return params;
     }
 
     @Override
@@ -142,6 +292,51 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         return "WebRTCModule";
     }
 
+    /**
+     * Closes the pooled PeerConnections when the React instance is destroyed
+     * (e.g. on a reload). Also invoked by <tt>invalidate()</tt> on the React
+     * Native versions which have it.
+     */
+    @Override
+    public void onCatalystInstanceDestroy() {
+        ThreadUtils.runOnExecutor("peerConnectionPoolDisposeAll", peerConnectionPool::disposeAll);
+    }
+
+    /**
+     * Resolves with the queue wait and run time percentiles and the queue
+     * depth of every method recorded by {@link ModuleMetrics}.
+     */
+    @ReactMethod
+    public void getModuleMetrics(Promise promise) {
+        promise.resolve(ModuleMetrics.toWritableMap());
+    }
+
+    /**
+     * Resolves with the same payload as the <tt>webrtcReady</tt> event once
+     * this {@code WebRTCModule} is initialized, for listeners which
+     * subscribed too late to receive the event. Retries a failed
+     * initialization and rejects if it fails again.
+     */
+    @ReactMethod
+    public void getStartupTimings(Promise promise) {
+        ThreadUtils.runOnExecutor("getStartupTimings", () -> {
+            if (ensureInitialized("getStartupTimings")) {
+                promise.resolve(createStartupTimings());
+            } else {
+                promise.reject(new Exception(getInitFailureMessage()));
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setModuleMetricsEnabled(boolean enabled) {
+        ModuleMetrics.setEnabled(enabled);
+    }
+
+    PeerConnectionObserver getPeerConnectionObserver(int id) {
+        return mPeerConnectionObservers.get(id);
+    }
+
     private PeerConnection getPeerConnection(int id) {
         PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
         return (pco == null) ? null : pco.getPeerConnection();
@@ -391,63 +586,125 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
             conf.presumeWritableWhenFullyRelayed = v;
         }
 
+        // sdpSemantics
+        if (map.hasKey("sdpSemantics")
+                && map.getType("sdpSemantics") == ReadableType.String) {
+            final String v = map.getString("sdpSemantics");
+            if (v != null) {
+                switch (v) {
+                case "plan-b":
+                    conf.sdpSemantics = PeerConnection.SdpSemantics.PLAN_B;
+                    break;
+                case "unified-plan":
+                    conf.sdpSemantics = PeerConnection.SdpSemantics.UNIFIED_PLAN;
+                    break;
+                }
+            }
+        }
+
         return conf;
     }
 
     @ReactMethod
     public void peerConnectionInit(ReadableMap configuration, int id) {
+        final long requested = System.nanoTime();
         PeerConnection.RTCConfiguration rtcConfiguration
             = parseRTCConfiguration(configuration);
-
-        ThreadUtils.runOnExecutor(() ->
-            peerConnectionInitAsync(rtcConfiguration, id));
+        // The key is only needed (and only worth its cost) to match pooled
+        // PeerConnections.
+        String key
+            = peerConnectionPool.isUsed()
+                ? PeerConnectionPool.canonicalKey(configuration)
+                : null;
+
+        // iceCandidateBatchingWindow (non-standard)
+        final int iceCandidateBatchingWindow
+            = configuration != null
+                    && configuration.hasKey("iceCandidateBatchingWindow")
+                    && configuration.getType("iceCandidateBatchingWindow") == ReadableType.Number
+                ? configuration.getInt("iceCandidateBatchingWindow")
+                : 0;
+
+        ThreadUtils.runOnPeerConnectionAndGlobalExecutor(id, "peerConnectionInit", () ->
+            peerConnectionInitAsync(
+                key, rtcConfiguration, iceCandidateBatchingWindow, id, requested));
     }
 
     private void peerConnectionInitAsync(
+            String key,
             PeerConnection.RTCConfiguration configuration,
-            int id) {
-        PeerConnectionObserver observer = new PeerConnectionObserver(this, id);
-        PeerConnection peerConnection
-            = mFactory.createPeerConnection(configuration, observer);
+            int iceCandidateBatchingWindow,
+            int id,
+            long requested) {
+        NegotiationTimeline timeline = new NegotiationTimeline(id, requested);
+        timeline.begin("peerConnectionInit", requested);
+
+        if (!ensureInitialized("peerConnectionInit")) {
+            timeline.end("peerConnectionInit", "failed");
+            return;
+        }
+
+        PeerConnectionObserver observer = new PeerConnectionObserver(this, id, timeline);
+        observer.setIceCandidateBatchingWindow(iceCandidateBatchingWindow);
+        observer.setUnifiedPlan(
+            configuration.sdpSemantics == PeerConnection.SdpSemantics.UNIFIED_PLAN);
+
+        PeerConnectionPool.Entry pooled = peerConnectionPool.take(key);
+        PeerConnection peerConnection;
+        if (pooled != null) {
+            peerConnection = pooled.peerConnection;
+            observer.setPeerConnection(peerConnection);
+            pooled.attach(observer);
+        } else {
+            peerConnection = mFactory.createPeerConnection(configuration, observer);
+            observer.setPeerConnection(peerConnection);
+        }
 
-        observer.setPeerConnection(peerConnection);
         mPeerConnectionObservers.put(id, observer);
+        timeline.end("peerConnectionInit", peerConnection == null ? "failed" : null);
     }
 
-    MediaStream getStreamForReactTag(String streamReactTag) {
-        MediaStream stream = localStreams.get(streamReactTag);
+    /**
+     * Keeps a specific number of PeerConnections with a specific
+     * configuration created in advance. <tt>peerConnectionInit</tt> with the
+     * same configuration adopts one of them instead of creating a
+     * PeerConnection.
+     * <p>
+     * The pooled PeerConnections gather ICE candidates while idle: their
+     * <tt>iceCandidatePoolSize</tt> is raised to at least 1 even if
+     * <tt>configuration</tt> specifies 0, which is what the adopting
+     * PeerConnection then has too.
+     *
+     * @param configuration the <tt>RTCConfiguration</tt> as it will be passed
+     * to <tt>peerConnectionInit</tt>
+     * @param size the number of PeerConnections to keep, zero to close them
+     */
+    @ReactMethod
+    public void peerConnectionPoolConfigure(ReadableMap configuration, int size) {
+        String key = PeerConnectionPool.canonicalKey(configuration);
+        PeerConnection.RTCConfiguration rtcConfiguration
+            = parseRTCConfiguration(configuration);
 
-        if (stream == null) {
-            for (int i = 0, size = mPeerConnectionObservers.size(); i < size; i++) {
-                PeerConnectionObserver pco = mPeerConnectionObservers.valueAt(i);
-                stream = pco.remoteStreams.get(streamReactTag);
-                if (stream != null) {
-                    break;
-                }
-            }
-        }
+        peerConnectionPool.markUsed();
+        ThreadUtils.runOnExecutor("peerConnectionPoolConfigure", () ->
+            peerConnectionPool.configure(key, rtcConfiguration, size));
+    }
 
-        return stream;
+    MediaStream getStreamForReactTag(String streamReactTag) {
+        return mediaRegistry.getStream(streamReactTag);
     }
 
     private MediaStreamTrack getTrack(String trackId) {
         MediaStreamTrack track = getLocalTrack(trackId);
 
-        if (track == null) {
-            for (int i = 0, size = mPeerConnectionObservers.size(); i < size; i++) {
-                PeerConnectionObserver pco = mPeerConnectionObservers.valueAt(i);
-                track = pco.remoteTracks.get(trackId);
-                if (track != null) {
-                    break;
-                }
-            }
-        }
-
-        return track;
+        return track == null ? mediaRegistry.getRemoteTrack(trackId) : track;
     }
 
     MediaStreamTrack getLocalTrack(String trackId) {
-        return getUserMediaImpl.getTrack(trackId);
+        GetUserMediaImpl getUserMediaImpl = this.getUserMediaImpl;
+
+        // There are no local tracks before the initialization.
+        return getUserMediaImpl == null ? null : getUserMediaImpl.getTrack(trackId);
     }
 
     private static MediaStreamTrack getLocalTrack(
@@ -491,41 +748,59 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void getDisplayMedia(Promise promise) {
-        ThreadUtils.runOnExecutor(() -> getUserMediaImpl.getDisplayMedia(promise));
+        ThreadUtils.runOnExecutor("getDisplayMedia", ThreadUtils.Priority.BULK, () -> {
+            if (ensureInitialized("getDisplayMedia")) {
+                getUserMediaImpl.getDisplayMedia(promise);
+            } else {
+                promise.reject(new Exception(getInitFailureMessage()));
+            }
+        });
     }
 
     @ReactMethod
     public void getUserMedia(ReadableMap constraints,
                              Callback    successCallback,
                              Callback    errorCallback) {
-        ThreadUtils.runOnExecutor(() ->
-            getUserMediaImpl.getUserMedia(constraints, successCallback, errorCallback));
+        ThreadUtils.runOnExecutor("getUserMedia", ThreadUtils.Priority.BULK, () -> {
+            if (ensureInitialized("getUserMedia")) {
+                getUserMediaImpl.getUserMedia(constraints, successCallback, errorCallback);
+            } else {
+                errorCallback.invoke("NotReadableError", getInitFailureMessage());
+            }
+        });
     }
 
     @ReactMethod
     public void enumerateDevices(Callback callback) {
-        ThreadUtils.runOnExecutor(() ->
-            callback.invoke(getUserMediaImpl.enumerateDevices()));
+        ThreadUtils.runOnExecutor("enumerateDevices", ThreadUtils.Priority.BULK, () ->
+            callback.invoke(
+                ensureInitialized("enumerateDevices")
+                    ? getUserMediaImpl.enumerateDevices()
+                    : Arguments.createArray()));
     }
 
     @ReactMethod
     public void mediaStreamCreate(String id) {
-        ThreadUtils.runOnExecutor(() -> mediaStreamCreateAsync(id));
+        ThreadUtils.runOnExecutor("mediaStreamCreate", () -> mediaStreamCreateAsync(id));
     }
 
     private void mediaStreamCreateAsync(String id) {
+        if (!ensureInitialized("mediaStreamCreate")) {
+            return;
+        }
+
         MediaStream mediaStream = mFactory.createLocalMediaStream(id);
-        localStreams.put(id, mediaStream);
+        mediaRegistry.putLocalStream(id, mediaStream);
     }
 
     @ReactMethod
     public void mediaStreamAddTrack(String streamId, String trackId) {
-        ThreadUtils.runOnExecutor(() ->
+        ThreadUtils.runOnExecutor("mediaStreamAddTrack", () ->
             mediaStreamAddTrackAsync(streamId, trackId));
     }
 
     private void mediaStreamAddTrackAsync(String streamId, String trackId) {
-        MediaStream stream = localStreams.get(streamId);
+        MediaStream stream = mediaRegistry.getLocalStream(streamId);
         MediaStreamTrack track = getTrack(trackId);
 
         if (stream == null || track == null) {
@@ -543,12 +818,12 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void mediaStreamRemoveTrack(String streamId, String trackId) {
-        ThreadUtils.runOnExecutor(() ->
+        ThreadUtils.runOnExecutor("mediaStreamRemoveTrack", () ->
             mediaStreamRemoveTrackAsync(streamId, trackId));
     }
 
     private void mediaStreamRemoveTrackAsync(String streamId, String trackId) {
-        MediaStream stream = localStreams.get(streamId);
+        MediaStream stream = mediaRegistry.getLocalStream(streamId);
         MediaStreamTrack track = getTrack(trackId);
 
         if (stream == null || track == null) {
@@ -566,22 +841,22 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void mediaStreamRelease(String id) {
-        ThreadUtils.runOnExecutor(() -> mediaStreamReleaseAsync(id));
+        ThreadUtils.runOnExecutor(
+            "mediaStreamRelease",
+            () -> mediaStreamReleaseAsync(id));
     }
 
     private void mediaStreamReleaseAsync(String id) {
-        MediaStream stream = localStreams.get(id);
+        MediaStream stream = mediaRegistry.removeLocalStream(id);
         if (stream == null) {
             Log.d(TAG, "mediaStreamRelease() stream is null");
             return;
         }
 
-        localStreams.remove(id);
-
         // MediaStream.dispose() may be called without an exception only if
         // it's no longer added to any PeerConnection.
-        for (int i = 0, size = mPeerConnectionObservers.size(); i < size; i++) {
-            mPeerConnectionObservers.valueAt(i).removeStream(stream);
+        for (PeerConnectionObserver pco : mPeerConnectionObservers.values()) {
+            pco.removeStream(stream);
         }
 
         stream.dispose();
@@ -589,7 +864,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void mediaStreamTrackRelease(String id) {
-        ThreadUtils.runOnExecutor(() ->
+        ThreadUtils.runOnExecutor("mediaStreamTrackRelease", () ->
             mediaStreamTrackReleaseAsync(id));
     }
 
@@ -605,8 +880,10 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void mediaStreamTrackSetEnabled(String id, boolean enabled) {
-        ThreadUtils.runOnExecutor(() ->
-            mediaStreamTrackSetEnabledAsync(id, enabled));
+        ThreadUtils.runOnExecutor(
+            "mediaStreamTrackSetEnabled",
+            ThreadUtils.Priority.INTERACTIVE,
+            () -> mediaStreamTrackSetEnabledAsync(id, enabled));
     }
 
     private void mediaStreamTrackSetEnabledAsync(String id, boolean enabled) {
@@ -632,8 +909,10 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     @ReactMethod
     public void peerConnectionSetConfiguration(ReadableMap configuration,
                                                int id) {
-        ThreadUtils.runOnExecutor(() ->
-            peerConnectionSetConfigurationAsync(configuration, id));
+        ThreadUtils.runOnPeerConnectionExecutor(
+            id,
+            "peerConnectionSetConfiguration",
+            () -> peerConnectionSetConfigurationAsync(configuration, id));
     }
 
     private void peerConnectionSetConfigurationAsync(ReadableMap configuration,
@@ -648,12 +927,14 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void peerConnectionAddStream(String streamId, int id) {
-        ThreadUtils.runOnExecutor(() ->
-            peerConnectionAddStreamAsync(streamId, id));
+        ThreadUtils.runOnPeerConnectionAndGlobalExecutor(
+            id,
+            "peerConnectionAddStream",
+            () -> peerConnectionAddStreamAsync(streamId, id));
     }
 
     private void peerConnectionAddStreamAsync(String streamId, int id) {
-        MediaStream mediaStream = localStreams.get(streamId);
+        MediaStream mediaStream = mediaRegistry.getLocalStream(streamId);
         if (mediaStream == null) {
             Log.d(TAG, "peerConnectionAddStream() mediaStream is null");
             return;
@@ -664,14 +945,66 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         }
     }
 
+    @ReactMethod
+    public void peerConnectionAddTransceiver(int id,
+                                             String trackId,
+                                             ReadableMap init,
+                                             Promise promise) {
+        ThreadUtils.runOnPeerConnectionAndGlobalExecutor(
+            id,
+            "peerConnectionAddTransceiver",
+            () -> peerConnectionAddTransceiverAsync(id, trackId, init, promise));
+    }
+
+    private void peerConnectionAddTransceiverAsync(int id,
+                                                   String trackId,
+                                                   ReadableMap init,
+                                                   Promise promise) {
+        MediaStreamTrack track = getLocalTrack(trackId);
+        if (track == null) {
+            Log.d(TAG, "peerConnectionAddTransceiver() track is null");
+            promise.reject("InvalidAccessError", "The track is not a local track");
+            return;
+        }
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+        if (pco == null) {
+            Log.d(TAG, "peerConnectionAddTransceiver() peerConnection is null");
+            promise.reject(new Exception("PeerConnection ID not found"));
+            return;
+        }
+        pco.addTransceiver(track, init, promise);
+    }
+
+    @ReactMethod
+    public void peerConnectionTransceiverSetDirection(int id, String trackId, String direction) {
+        ThreadUtils.runOnPeerConnectionExecutor(
+            id,
+            "peerConnectionTransceiverSetDirection",
+            () -> peerConnectionTransceiverSetDirectionAsync(id, trackId, direction));
+    }
+
+    private void peerConnectionTransceiverSetDirectionAsync(
+            int id,
+            String trackId,
+            String direction) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionTransceiverSetDirection() peerConnection is null");
+            return;
+        }
+        pco.setTransceiverDirection(trackId, direction);
+    }
+
     @ReactMethod
     public void peerConnectionRemoveStream(String streamId, int id) {
-        ThreadUtils.runOnExecutor(() ->
-            peerConnectionRemoveStreamAsync(streamId, id));
+        ThreadUtils.runOnPeerConnectionAndGlobalExecutor(
+            id,
+            "peerConnectionRemoveStream",
+            () -> peerConnectionRemoveStreamAsync(streamId, id));
     }
 
     private void peerConnectionRemoveStreamAsync(String streamId, int id) {
-        MediaStream mediaStream = localStreams.get(streamId);
+        MediaStream mediaStream = mediaRegistry.getLocalStream(streamId);
         if (mediaStream == null) {
             Log.d(TAG, "peerConnectionRemoveStream() mediaStream is null");
             return;
@@ -682,40 +1015,66 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         }
     }
 
+    /**
+     * Sets the transforms applied natively to the SDP of the offers and
+     * answers a specific PeerConnection creates, replacing the previous ones.
+     *
+     * @param id the ID of the PeerConnection
+     * @param transforms the configurations of the transforms, see
+     * {@link SdpTransforms}
+     * @param promise rejected, with the previous transforms kept, if a
+     * configuration is invalid
+     */
+    @ReactMethod
+    public void peerConnectionSetSdpTransforms(int id, ReadableArray transforms, Promise promise) {
+        ThreadUtils.runOnPeerConnectionExecutor(
+            id,
+            "peerConnectionSetSdpTransforms",
+            () -> peerConnectionSetSdpTransformsAsync(id, transforms, promise));
+    }
+
+    private void peerConnectionSetSdpTransformsAsync(
+            int id,
+            ReadableArray transforms,
+            Promise promise) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionSetSdpTransforms() peerConnection is null");
+            promise.reject(new Exception("PeerConnection ID not found"));
+            return;
+        }
+
+        try {
+            pco.setSdpTransforms(SdpTransforms.fromReadableArray(transforms));
+        } catch (IllegalArgumentException e) {
+            promise.reject("NotSupportedError", e.getMessage());
+            return;
+        }
+        promise.resolve(null);
+    }
+
     @ReactMethod
     public void peerConnectionCreateOffer(int id,
                                           ReadableMap options,
                                           Callback callback) {
-        ThreadUtils.runOnExecutor(() ->
+        ThreadUtils.runOnPeerConnectionExecutor(id, "peerConnectionCreateOffer", () ->
             peerConnectionCreateOfferAsync(id, options, callback));
     }
 
     private void peerConnectionCreateOfferAsync(int id,
                                                 ReadableMap options,
                                                 final Callback callback) {
-        PeerConnection peerConnection = getPeerConnection(id);
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+        PeerConnection peerConnection = pco == null ? null : pco.getPeerConnection();
 
         if (peerConnection != null) {
-            peerConnection.createOffer(new SdpObserver() {
-                @Override
-                public void onCreateFailure(String s) {
-                    callback.invoke(false, s);
-                }
-
-                @Override
-                public void onCreateSuccess(SessionDescription sdp) {
-                    WritableMap params = Arguments.createMap();
-                    params.putString("sdp", sdp.description);
-                    params.putString("type", sdp.type.canonicalForm());
-                    callback.invoke(true, params);
+            createDescription(pco, /* offer */ true, options, (sdp, error) -> {
+                if (sdp != null) {
+                    callback.invoke(true, serializeSessionDescription(sdp));
+                } else {
+                    callback.invoke(false, error);
                 }
-
-                @Override
-                public void onSetFailure(String s) {}
-
-                @Override
-                public void onSetSuccess() {}
-            }, constraintsForOptions(options));
+            });
         } else {
             Log.d(TAG, "peerConnectionCreateOffer() peerConnection is null");
             callback.invoke(false, "peerConnection is null");
@@ -726,36 +1085,24 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     public void peerConnectionCreateAnswer(int id,
                                            ReadableMap options,
                                            Callback callback) {
-        ThreadUtils.runOnExecutor(() ->
+        ThreadUtils.runOnPeerConnectionExecutor(id, "peerConnectionCreateAnswer", () ->
             peerConnectionCreateAnswerAsync(id, options, callback));
     }
 
     private void peerConnectionCreateAnswerAsync(int id,
                                                  ReadableMap options,
                                                  final Callback callback) {
-        PeerConnection peerConnection = getPeerConnection(id);
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+        PeerConnection peerConnection = pco == null ? null : pco.getPeerConnection();
 
         if (peerConnection != null) {
-            peerConnection.createAnswer(new SdpObserver() {
-                @Override
-                public void onCreateFailure(String s) {
-                    callback.invoke(false, s);
-                }
-
-                @Override
-                public void onCreateSuccess(SessionDescription sdp) {
-                    WritableMap params = Arguments.createMap();
-                    params.putString("sdp", sdp.description);
-                    params.putString("type", sdp.type.canonicalForm());
-                    callback.invoke(true, params);
+            createDescription(pco, /* offer */ false, options, (sdp, error) -> {
+                if (sdp != null) {
+                    callback.invoke(true, serializeSessionDescription(sdp));
+                } else {
+                    callback.invoke(false, error);
                 }
-
-                @Override
-                public void onSetFailure(String s) {}
-
-                @Override
-                public void onSetSuccess() {}
-            }, constraintsForOptions(options));
+            });
         } else {
             Log.d(TAG, "peerConnectionCreateAnswer() peerConnection is null");
             callback.invoke(false, "peerConnection is null");
@@ -766,41 +1113,32 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     public void peerConnectionSetLocalDescription(ReadableMap sdpMap,
                                                   int id,
                                                   Callback callback) {
-        ThreadUtils.runOnExecutor(() ->
-            peerConnectionSetLocalDescriptionAsync(sdpMap, id, callback));
+        ThreadUtils.runOnPeerConnectionExecutor(
+            id,
+            "peerConnectionSetLocalDescription",
+            () -> peerConnectionSetLocalDescriptionAsync(sdpMap, id, callback));
     }
 
     private void peerConnectionSetLocalDescriptionAsync(ReadableMap sdpMap,
                                                         int id,
                                                         final Callback callback) {
-        PeerConnection peerConnection = getPeerConnection(id);
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+        PeerConnection peerConnection = pco == null ? null : pco.getPeerConnection();
 
         Log.d(TAG, "peerConnectionSetLocalDescription() start");
         if (peerConnection != null) {
-            SessionDescription sdp = new SessionDescription(
-                SessionDescription.Type.fromCanonicalForm(sdpMap.getString("type")),
-                sdpMap.getString("sdp")
-            );
-
-            peerConnection.setLocalDescription(new SdpObserver() {
-                @Override
-                public void onCreateSuccess(SessionDescription sdp) {
-                }
-
-                @Override
-                public void onSetSuccess() {
-                    callback.invoke(true);
-                }
-
-                @Override
-                public void onCreateFailure(String s) {
-                }
-
-                @Override
-                public void onSetFailure(String s) {
-                    callback.invoke(false, s);
-                }
-            }, sdp);
+            setDescription(
+                id,
+                pco,
+                /* local */ true,
+                sessionDescriptionFromMap(sdpMap),
+                (sdp, error) -> {
+                    if (sdp != null) {
+                        callback.invoke(true, serializeSessionDescription(sdp));
+                    } else {
+                        callback.invoke(false, error);
+                    }
+                });
         } else {
             Log.d(TAG, "peerConnectionSetLocalDescription() peerConnection is null");
             callback.invoke(false, "peerConnection is null");
@@ -812,54 +1150,448 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     public void peerConnectionSetRemoteDescription(ReadableMap sdpMap,
                                                    int id,
                                                    Callback callback) {
-        ThreadUtils.runOnExecutor(() ->
-            peerConnectionSetRemoteDescriptionAsync(sdpMap, id, callback));
+        ThreadUtils.runOnPeerConnectionExecutor(
+            id,
+            "peerConnectionSetRemoteDescription",
+            () -> peerConnectionSetRemoteDescriptionAsync(sdpMap, id, callback));
     }
 
     private void peerConnectionSetRemoteDescriptionAsync(ReadableMap sdpMap,
                                                          int id,
                                                          final Callback callback) {
-        PeerConnection peerConnection = getPeerConnection(id);
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+        PeerConnection peerConnection = pco == null ? null : pco.getPeerConnection();
 
         Log.d(TAG, "peerConnectionSetRemoteDescription() start");
         if (peerConnection != null) {
-            SessionDescription sdp = new SessionDescription(
-                SessionDescription.Type.fromCanonicalForm(sdpMap.getString("type")),
-                sdpMap.getString("sdp")
-            );
+            setDescription(
+                id,
+                pco,
+                /* local */ false,
+                sessionDescriptionFromMap(sdpMap),
+                (sdp, error) -> {
+                    if (sdp != null) {
+                        callback.invoke(true, serializeSessionDescription(sdp));
+                    } else {
+                        callback.invoke(false, error);
+                    }
+                });
+        } else {
+            Log.d(TAG, "peerConnectionSetRemoteDescription() peerConnection is null");
+            callback.invoke(false, "peerConnection is null");
+        }
+        Log.d(TAG, "peerConnectionSetRemoteDescription() end");
+    }
 
-            peerConnection.setRemoteDescription(new SdpObserver() {
-                @Override
-                public void onCreateSuccess(final SessionDescription sdp) {
-                }
+    /**
+     * Creates an offer and sets it as the local description of a specific
+     * PeerConnection without returning to JavaScript in between i.e. in one
+     * bridge round trip instead of the two of <tt>createOffer</tt> and
+     * <tt>setLocalDescription</tt>. The callback receives
+     * <tt>{localDescription}</tt>. No other operation on the PeerConnection
+     * runs between the steps (see {@link NegotiationStep}).
+     *
+     * @param id the ID of the PeerConnection
+     * @param options the options of <tt>createOffer</tt>
+     */
+    @ReactMethod
+    public void peerConnectionCreateAndApplyOffer(int id,
+                                                  ReadableMap options,
+                                                  Callback callback) {
+        ThreadUtils.runOnPeerConnectionExecutor(id, "peerConnectionCreateAndApplyOffer", () ->
+            peerConnectionCreateAndApplyOfferAsync(id, options, callback));
+    }
+
+    private void peerConnectionCreateAndApplyOfferAsync(int id,
+                                                        ReadableMap options,
+                                                        final Callback callback) {
+        final String name = "createAndApplyOffer";
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionCreateAndApplyOffer() peerConnection is null");
+            callback.invoke(false, "peerConnection is null");
+            return;
+        }
+
+        pco.negotiationTimeline.begin(name);
+
+        NegotiationStep offer = new NegotiationStep();
+        createDescription(pco, /* offer */ true, options, offer);
+        if (offer.await().sdp == null) {
+            pco.negotiationTimeline.end(name, offer.error);
+            callback.invoke(false, offer.error);
+            return;
+        }
+
+        NegotiationStep local = new NegotiationStep();
+        setDescription(id, pco, /* local */ true, offer.sdp, local);
+        pco.negotiationTimeline.end(name, local.await().error);
+        if (local.sdp == null) {
+            callback.invoke(false, local.error);
+            return;
+        }
+
+        WritableMap params = Arguments.createMap();
+        params.putMap("localDescription", serializeSessionDescription(local.sdp));
+        callback.invoke(true, params);
+    }
+
+    /**
+     * Sets a remote offer, creates an answer and sets it as the local
+     * description of a specific PeerConnection without returning to
+     * JavaScript in between i.e. in one bridge round trip instead of the
+     * three of <tt>setRemoteDescription</tt>, <tt>createAnswer</tt> and
+     * <tt>setLocalDescription</tt>. The callback receives
+     * <tt>{remoteDescription, localDescription}</tt>. No other operation on
+     * the PeerConnection runs between the steps (see
+     * {@link NegotiationStep}).
+     *
+     * @param id the ID of the PeerConnection
+     * @param offerMap the remote offer
+     * @param options the options of <tt>createAnswer</tt>
+     */
+    @ReactMethod
+    public void peerConnectionApplyOfferAndAnswer(int id,
+                                                  ReadableMap offerMap,
+                                                  ReadableMap options,
+                                                  Callback callback) {
+        ThreadUtils.runOnPeerConnectionExecutor(id, "peerConnectionApplyOfferAndAnswer", () ->
+            peerConnectionApplyOfferAndAnswerAsync(id, offerMap, options, callback));
+    }
+
+    private void peerConnectionApplyOfferAndAnswerAsync(int id,
+                                                        ReadableMap offerMap,
+                                                        ReadableMap options,
+                                                        final Callback callback) {
+        final String name = "applyOfferAndAnswer";
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionApplyOfferAndAnswer() peerConnection is null");
+            callback.invoke(false, "peerConnection is null");
+            return;
+        }
+
+        pco.negotiationTimeline.begin(name);
+
+        NegotiationStep remote = new NegotiationStep();
+        setDescription(id, pco, /* local */ false, sessionDescriptionFromMap(offerMap), remote);
+        if (remote.await().sdp == null) {
+            pco.negotiationTimeline.end(name, remote.error);
+            callback.invoke(false, remote.error);
+            return;
+        }
+
+        NegotiationStep answer = new NegotiationStep();
+        createDescription(pco, /* offer */ false, options, answer);
+        if (answer.await().sdp == null) {
+            pco.negotiationTimeline.end(name, answer.error);
+            callback.invoke(false, answer.error);
+            return;
+        }
+
+        NegotiationStep local = new NegotiationStep();
+        setDescription(id, pco, /* local */ true, answer.sdp, local);
+        pco.negotiationTimeline.end(name, local.await().error);
+        if (local.sdp == null) {
+            callback.invoke(false, local.error);
+            return;
+        }
+
+        WritableMap params = Arguments.createMap();
+        params.putMap("remoteDescription", serializeSessionDescription(remote.sdp));
+        params.putMap("localDescription", serializeSessionDescription(local.sdp));
+        callback.invoke(true, params);
+    }
+
+    /**
+     * Receives the outcome of {@link #createDescription} or
+     * {@link #setDescription}.
+     */
+    private interface DescriptionCallback {
+        /**
+         * @param sdp the created or set description or <tt>null</tt> if the
+         * operation failed
+         * @param error the reason the operation failed, if it did
+         */
+        void onComplete(@Nullable SessionDescription sdp, @Nullable String error);
+    }
+
+    /**
+     * A step of a compound negotiation operation. The operation holds the
+     * lane of its PeerConnection while it waits for each step to be reported
+     * on the signaling thread so that the steps run back to back and no other
+     * operation on the PeerConnection (e.g. a <tt>close</tt> or another
+     * negotiation) interleaves. The thread pool grows while lanes are blocked
+     * so the other PeerConnections are not held up.
+     */
+    private static final class NegotiationStep implements DescriptionCallback {
+        private final CountDownLatch done = new CountDownLatch(1);
 
-                @Override
-                public void onSetSuccess() {
-                    callback.invoke(true);
+        @Nullable
+        SessionDescription sdp;
+
+        @Nullable
+        String error;
+
+        @Override
+        public void onComplete(@Nullable SessionDescription sdp, @Nullable String error) {
+            this.sdp = sdp;
+            this.error = error;
+            done.countDown();
+        }
+
+        /**
+         * Blocks until the step has completed.
+         *
+         * @return this step
+         */
+        NegotiationStep await() {
+            boolean interrupted = false;
+
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
                 }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return this;
+        }
+    }
 
-                @Override
-                public void onCreateFailure(String s) {
+    /**
+     * Creates an offer or an answer with a specific PeerConnection and
+     * applies its SDP transforms to it.
+     */
+    private void createDescription(PeerConnectionObserver pco,
+                                   boolean offer,
+                                   ReadableMap options,
+                                   DescriptionCallback callback) {
+        final String name = offer ? "createOffer" : "createAnswer";
+        final NegotiationTimeline timeline = pco.negotiationTimeline;
+        SdpObserver observer = new SdpObserver() {
+            @Override
+            public void onCreateFailure(String s) {
+                timeline.end(name, s);
+                callback.onComplete(null, s);
+            }
+
+            @Override
+            public void onCreateSuccess(SessionDescription sdp) {
+                String description;
+                try {
+                    description = pco.transformSdp(sdp.description, sdp.type.canonicalForm());
+                } catch (RuntimeException e) {
+                    Log.e(TAG, name + "() SDP transform failed", e);
+                    timeline.end(name, "SDP transform failed");
+                    callback.onComplete(null, "SDP transform failed: " + e.getMessage());
+                    return;
                 }
 
-                @Override
-                public void onSetFailure(String s) {
-                    callback.invoke(false, s);
+                timeline.end(name, null);
+                callback.onComplete(new SessionDescription(sdp.type, description), null);
+            }
+
+            @Override
+            public void onSetFailure(String s) {}
+
+            @Override
+            public void onSetSuccess() {}
+        };
+
+        timeline.begin(name);
+        if (offer) {
+            pco.getPeerConnection().createOffer(observer, constraintsForOptions(options));
+        } else {
+            pco.getPeerConnection().createAnswer(observer, constraintsForOptions(options));
+        }
+    }
+
+    /**
+     * Sets the local or remote description of a specific PeerConnection,
+     * applying its audio profile to it.
+     */
+    private void setDescription(int id,
+                                PeerConnectionObserver pco,
+                                boolean local,
+                                SessionDescription description,
+                                DescriptionCallback callback) {
+        final String name = local ? "setLocalDescription" : "setRemoteDescription";
+        final NegotiationTimeline timeline = pco.negotiationTimeline;
+
+        timeline.begin(name);
+
+        final SessionDescription sdp;
+        try {
+            sdp = new SessionDescription(
+                description.type,
+                pco.applyAudioProfile(
+                    description.description,
+                    description.type.canonicalForm()));
+        } catch (RuntimeException e) {
+            Log.e(TAG, name + "() audio profile failed", e);
+            timeline.end(name, "Audio profile failed");
+            callback.onComplete(null, "Audio profile failed: " + e.getMessage());
+            return;
+        }
+
+        SdpObserver observer = new SdpObserver() {
+            @Override
+            public void onCreateSuccess(SessionDescription sdp) {
+            }
+
+            @Override
+            public void onSetSuccess() {
+                timeline.end(name, null);
+                // Before the callback like the tracks which were added.
+                pco.removeUnreceivedRemoteTracks();
+                if (!local) {
+                    // Add the remote ICE candidates which arrived too early
+                    // before any candidates the app adds in response to the
+                    // callback.
+                    ThreadUtils.runOnPeerConnectionExecutor(
+                        id,
+                        "addPendingRemoteCandidates",
+                        ThreadUtils.Priority.INTERACTIVE,
+                        () -> {
+                            PeerConnectionObserver current
+                                = mPeerConnectionObservers.get(id);
+                            if (current != null) {
+                                current.addPendingRemoteCandidates();
+                            }
+                        });
                 }
-            }, sdp);
+                callback.onComplete(sdp, null);
+            }
+
+            @Override
+            public void onCreateFailure(String s) {
+            }
+
+            @Override
+            public void onSetFailure(String s) {
+                timeline.end(name, s);
+                callback.onComplete(null, s);
+            }
+        };
+
+        if (local) {
+            pco.getPeerConnection().setLocalDescription(observer, sdp);
         } else {
-            Log.d(TAG, "peerConnectionSetRemoteDescription() peerConnection is null");
-            callback.invoke(false, "peerConnection is null");
+            pco.getPeerConnection().setRemoteDescription(observer, sdp);
         }
-        Log.d(TAG, "peerConnectionSetRemoteDescription() end");
+    }
+
+    private SessionDescription sessionDescriptionFromMap(ReadableMap sdpMap) {
+        return new SessionDescription(
+            SessionDescription.Type.fromCanonicalForm(sdpMap.getString("type")),
+            sdpMap.getString("sdp"));
+    }
+
+    private WritableMap serializeSessionDescription(SessionDescription sdp) {
+        WritableMap params = Arguments.createMap();
+        params.putString("sdp", sdp.description);
+        params.putString("type", sdp.type.canonicalForm());
+        return params;
+    }
+
+    /**
+     * Sets the Opus profile (see {@link OpusProfiles}) applied to the local
+     * and remote descriptions of a specific PeerConnection.
+     *
+     * @param id the ID of the PeerConnection
+     * @param profile the name of the profile or <tt>null</tt> to apply none
+     */
+    @ReactMethod
+    public void peerConnectionSetAudioProfile(int id, String profile, Promise promise) {
+        ThreadUtils.runOnPeerConnectionExecutor(
+            id,
+            "peerConnectionSetAudioProfile",
+            () -> peerConnectionSetAudioProfileAsync(id, profile, promise));
+    }
+
+    private void peerConnectionSetAudioProfileAsync(int id, String profile, Promise promise) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionSetAudioProfile() peerConnection is null");
+            promise.reject(new Exception("PeerConnection ID not found"));
+            return;
+        }
+
+        try {
+            pco.setAudioProfile(profile);
+        } catch (IllegalArgumentException e) {
+            promise.reject("NotSupportedError", e.getMessage());
+            return;
+        }
+        promise.resolve(null);
+    }
+
+    /**
+     * Gets the milestones of the setup of a specific PeerConnection, see
+     * {@link NegotiationTimeline}.
+     *
+     * @param id the ID of the PeerConnection
+     */
+    @ReactMethod
+    public void peerConnectionGetNegotiationTimeline(int id, Promise promise) {
+        ThreadUtils.runOnPeerConnectionExecutor(
+            id,
+            "peerConnectionGetNegotiationTimeline",
+            () -> {
+                PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+                if (pco == null) {
+                    Log.d(TAG, "peerConnectionGetNegotiationTimeline() peerConnection is null");
+                    promise.reject(new Exception("PeerConnection ID not found"));
+                    return;
+                }
+                promise.resolve(pco.negotiationTimeline.toWritableMap());
+            });
+    }
+
+    /**
+     * Exports the milestones of the setup of a specific PeerConnection as the
+     * JSON of a Chrome trace.
+     *
+     * @param id the ID of the PeerConnection
+     */
+    @ReactMethod
+    public void peerConnectionGetNegotiationTrace(int id, Promise promise) {
+        ThreadUtils.runOnPeerConnectionExecutor(
+            id,
+            "peerConnectionGetNegotiationTrace",
+            () -> {
+                PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+                if (pco == null) {
+                    Log.d(TAG, "peerConnectionGetNegotiationTrace() peerConnection is null");
+                    promise.reject(new Exception("PeerConnection ID not found"));
+                    return;
+                }
+
+                String trace = pco.negotiationTimeline.toTraceEvents();
+                if (trace == null) {
+                    promise.reject(new Exception("Failed to export the negotiation trace"));
+                } else {
+                    promise.resolve(trace);
+                }
+            });
     }
 
     @ReactMethod
     public void peerConnectionAddICECandidate(ReadableMap candidateMap,
                                               int id,
                                               Callback callback) {
-        ThreadUtils.runOnExecutor(() ->
-            peerConnectionAddICECandidateAsync(candidateMap, id, callback));
+        ThreadUtils.runOnPeerConnectionExecutor(
+            id,
+            "peerConnectionAddICECandidate",
+            ThreadUtils.Priority.INTERACTIVE,
+            () -> peerConnectionAddICECandidateAsync(candidateMap, id, callback));
     }
 
     private void peerConnectionAddICECandidateAsync(ReadableMap candidateMap,
@@ -882,10 +1614,73 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         Log.d(TAG, "peerConnectionAddICECandidate() end");
     }
 
+    @ReactMethod
+    public void peerConnectionAddICECandidates(int id,
+                                               ReadableArray candidates,
+                                               Callback callback) {
+        ThreadUtils.runOnPeerConnectionExecutor(
+            id,
+            "peerConnectionAddICECandidates",
+            ThreadUtils.Priority.INTERACTIVE,
+            () -> peerConnectionAddICECandidatesAsync(id, candidates, callback));
+    }
+
+    /**
+     * Adds a batch of remote ICE candidates in a single executor task and
+     * reports the result of each candidate in a single callback invocation.
+     * Candidates which arrive before the remote description are added once it
+     * has been set and the callback is invoked then.
+     */
+    private void peerConnectionAddICECandidatesAsync(int id,
+                                                     ReadableArray candidates,
+                                                     Callback callback) {
+        final int size = candidates.size();
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionAddICECandidates() peerConnection is null");
+            invokeWithResults(callback, new boolean[size]);
+            return;
+        }
+
+        List<IceCandidate> iceCandidates = new ArrayList<>(size);
+        List<Integer> indices = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            ReadableMap candidateMap = candidates.getMap(i);
+            if (candidateMap != null && candidateMap.hasKey("candidate")) {
+                iceCandidates.add(new IceCandidate(
+                    candidateMap.getString("sdpMid"),
+                    candidateMap.getInt("sdpMLineIndex"),
+                    candidateMap.getString("candidate")));
+                indices.add(i);
+            }
+        }
+
+        pco.addIceCandidates(iceCandidates, added -> {
+            boolean[] results = new boolean[size];
+            for (int i = 0; i < added.length; i++) {
+                results[indices.get(i)] = added[i];
+            }
+            invokeWithResults(callback, results);
+        });
+    }
+
+    private static void invokeWithResults(Callback callback, boolean[] results) {
+        WritableArray resultsArray = Arguments.createArray();
+        for (boolean result : results) {
+            resultsArray.pushBoolean(result);
+        }
+        callback.invoke(resultsArray);
+    }
+
     @ReactMethod
     public void peerConnectionGetStats(int peerConnectionId, Promise promise) {
-        ThreadUtils.runOnExecutor(() ->
-            peerConnectionGetStatsAsync(peerConnectionId, promise));
+        ThreadUtils.runOnPeerConnectionExecutor(
+            peerConnectionId,
+            "peerConnectionGetStats",
+            ThreadUtils.Priority.BULK,
+            () -> peerConnectionGetStatsAsync(peerConnectionId, promise));
     }
 
     private void peerConnectionGetStatsAsync(int peerConnectionId,
@@ -899,9 +1694,213 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         }
     }
 
+    /**
+     * Gets the <tt>RTCRtpSendParameters</tt> of the sender of a specific track
+     * of a specific <tt>PeerConnection</tt>.
+     */
+    @ReactMethod
+    public void peerConnectionSenderGetParameters(int peerConnectionId,
+                                                  String trackId,
+                                                  Promise promise) {
+        ThreadUtils.runOnPeerConnectionExecutor(
+            peerConnectionId,
+            "peerConnectionSenderGetParameters",
+            () -> peerConnectionSenderGetParametersAsync(peerConnectionId, trackId, promise));
+    }
+
+    private void peerConnectionSenderGetParametersAsync(int peerConnectionId,
+                                                        String trackId,
+                                                        Promise promise) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionSenderGetParameters() peerConnection is null");
+            promise.reject(new Exception("PeerConnection ID not found"));
+        } else {
+            pco.getSenderParameters(trackId, promise);
+        }
+    }
+
+    /**
+     * Sets the <tt>RTCRtpSendParameters</tt> of the sender of a specific track
+     * of a specific <tt>PeerConnection</tt>.
+     */
+    @ReactMethod
+    public void peerConnectionSenderSetParameters(int peerConnectionId,
+                                                  String trackId,
+                                                  ReadableMap parameters,
+                                                  Promise promise) {
+        ThreadUtils.runOnPeerConnectionExecutor(
+            peerConnectionId,
+            "peerConnectionSenderSetParameters",
+            ThreadUtils.Priority.INTERACTIVE,
+            () -> peerConnectionSenderSetParametersAsync(
+                peerConnectionId, trackId, parameters, promise));
+    }
+
+    private void peerConnectionSenderSetParametersAsync(int peerConnectionId,
+                                                        String trackId,
+                                                        ReadableMap parameters,
+                                                        Promise promise) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionSenderSetParameters() peerConnection is null");
+            promise.reject(new Exception("PeerConnection ID not found"));
+        } else {
+            pco.setSenderParameters(trackId, parameters, promise);
+        }
+    }
+
+    /**
+     * Activates or deactivates the simulcast encodings, identified by their
+     * <tt>rid</tt>, of the sender of a specific track of a specific
+     * <tt>PeerConnection</tt>.
+     */
+    @ReactMethod
+    public void peerConnectionSenderSetEncodingsActive(int peerConnectionId,
+                                                       String trackId,
+                                                       ReadableMap activeByRid,
+                                                       Promise promise) {
+        ThreadUtils.runOnPeerConnectionExecutor(
+            peerConnectionId,
+            "peerConnectionSenderSetEncodingsActive",
+            ThreadUtils.Priority.INTERACTIVE,
+            () -> peerConnectionSenderSetEncodingsActiveAsync(
+                peerConnectionId, trackId, activeByRid, promise));
+    }
+
+    private void peerConnectionSenderSetEncodingsActiveAsync(int peerConnectionId,
+                                                             String trackId,
+                                                             ReadableMap activeByRid,
+                                                             Promise promise) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionSenderSetEncodingsActive() peerConnection is null");
+            promise.reject(new Exception("PeerConnection ID not found"));
+        } else {
+            pco.setSenderEncodingsActive(trackId, activeByRid, promise);
+        }
+    }
+
+    /**
+     * Starts the native adaptive bitrate control loop of a specific
+     * PeerConnection. Its decisions are reported in
+     * <tt>peerConnectionBitrateDecision</tt> events.
+     *
+     * @param peerConnectionId the ID of the PeerConnection
+     * @param policy the parameters of the loop, missing ones have defaults
+     */
+    @ReactMethod
+    public void peerConnectionStartBitrateController(int peerConnectionId,
+                                                     ReadableMap policy) {
+        ThreadUtils.runOnPeerConnectionExecutor(
+            peerConnectionId,
+            "peerConnectionStartBitrateController",
+            () -> {
+                PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+                if (pco == null || pco.getPeerConnection() == null) {
+                    Log.d(TAG, "peerConnectionStartBitrateController() peerConnection is null");
+                    return;
+                }
+                pco.startBitrateController(policy);
+            });
+    }
+
+    @ReactMethod
+    public void peerConnectionStopBitrateController(int peerConnectionId) {
+        ThreadUtils.runOnPeerConnectionExecutor(
+            peerConnectionId,
+            "peerConnectionStopBitrateController",
+            () -> {
+                PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+                if (pco != null) {
+                    pco.stopBitrateController();
+                }
+            });
+    }
+
+    /**
+     * Gets the stats of a specific <tt>PeerConnection</tt> which relate to a
+     * specific track of one of its senders or receivers.
+     */
+    @ReactMethod
+    public void peerConnectionGetTrackStats(int peerConnectionId,
+                                            String trackId,
+                                            Promise promise) {
+        ThreadUtils.runOnPeerConnectionExecutor(
+            peerConnectionId,
+            "peerConnectionGetTrackStats",
+            ThreadUtils.Priority.BULK,
+            () -> peerConnectionGetTrackStatsAsync(peerConnectionId, trackId, promise));
+    }
+
+    private void peerConnectionGetTrackStatsAsync(int peerConnectionId,
+                                                  String trackId,
+                                                  Promise promise) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionGetTrackStats() peerConnection is null");
+            promise.reject(new Exception("PeerConnection ID not found"));
+        } else {
+            pco.getTrackStats(trackId, promise);
+        }
+    }
+
+    /**
+     * Gets the stats of a specific <tt>PeerConnection</tt> as the differences
+     * from the stats reported by the previous call, or in full if
+     * <tt>full</tt> is <tt>true</tt>.
+     */
+    @ReactMethod
+    public void peerConnectionGetStatsDelta(int peerConnectionId,
+                                            boolean full,
+                                            Promise promise) {
+        ThreadUtils.runOnPeerConnectionExecutor(
+            peerConnectionId,
+            "peerConnectionGetStatsDelta",
+            ThreadUtils.Priority.BULK,
+            () -> peerConnectionGetStatsDeltaAsync(peerConnectionId, full, promise));
+    }
+
+    private void peerConnectionGetStatsDeltaAsync(int peerConnectionId,
+                                                  boolean full,
+                                                  Promise promise) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionGetStatsDelta() peerConnection is null");
+            promise.reject(new Exception("PeerConnection ID not found"));
+        } else {
+            pco.getStatsDelta(full, promise);
+        }
+    }
+
+    /**
+     * Starts reporting derived metrics of the stats of a specific
+     * <tt>PeerConnection</tt> in the <tt>peerConnectionStatsSummary</tt>
+     * event.
+     */
+    @ReactMethod
+    public void peerConnectionStartStatsSampling(int peerConnectionId) {
+        statsSampler.start(peerConnectionId);
+    }
+
+    @ReactMethod
+    public void peerConnectionStopStatsSampling(int peerConnectionId) {
+        statsSampler.stop(peerConnectionId);
+    }
+
+    /**
+     * Sets the time in milliseconds between two
+     * <tt>peerConnectionStatsSummary</tt> events.
+     */
+    @ReactMethod
+    public void setStatsSamplingInterval(double interval) {
+        statsSampler.setInterval((long) interval);
+    }
+
     @ReactMethod
     public void peerConnectionClose(int id) {
-        ThreadUtils.runOnExecutor(() -> peerConnectionCloseAsync(id));
+        ThreadUtils.runOnPeerConnectionExecutor(id, "peerConnectionClose", () ->
+            peerConnectionCloseAsync(id));
     }
 
     private void peerConnectionCloseAsync(int id) {
@@ -912,14 +1911,18 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
             pco.close();
             mPeerConnectionObservers.remove(id);
         }
+        statsSampler.stop(id);
+        ThreadUtils.releasePeerConnectionExecutor(id);
     }
 
     @ReactMethod
     public void createDataChannel(int peerConnectionId,
                                   String label,
                                   ReadableMap config) {
-        ThreadUtils.runOnExecutor(() ->
-            createDataChannelAsync(peerConnectionId, label, config));
+        ThreadUtils.runOnPeerConnectionExecutor(
+            peerConnectionId,
+            "createDataChannel",
+            () -> createDataChannelAsync(peerConnectionId, label, config));
     }
 
     private void createDataChannelAsync(int peerConnectionId,
@@ -938,8 +1941,10 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void dataChannelClose(int peerConnectionId, int dataChannelId) {
-        ThreadUtils.runOnExecutor(() ->
-            dataChannelCloseAsync(peerConnectionId, dataChannelId));
+        ThreadUtils.runOnPeerConnectionExecutor(
+            peerConnectionId,
+            "dataChannelClose",
+            () -> dataChannelCloseAsync(peerConnectionId, dataChannelId));
     }
 
     private void dataChannelCloseAsync(int peerConnectionId,
@@ -960,8 +1965,11 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
                                 int dataChannelId,
                                 String data,
                                 String type) {
-        ThreadUtils.runOnExecutor(() ->
-            dataChannelSendAsync(peerConnectionId, dataChannelId, data, type));
+        ThreadUtils.runOnPeerConnectionExecutor(
+            peerConnectionId,
+            "dataChannelSend",
+            ThreadUtils.Priority.INTERACTIVE,
+            () -> dataChannelSendAsync(peerConnectionId, dataChannelId, data, type));
     }
 
     private void dataChannelSendAsync(int peerConnectionId,
@@ -978,4 +1986,70 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
             pco.dataChannelSend(dataChannelId, data, type);
         }
     }
+
+    @ReactMethod
+    public void dataChannelSetBufferedAmountLowThreshold(int peerConnectionId,
+                                                         int dataChannelId,
+                                                         double threshold) {
+        ThreadUtils.runOnPeerConnectionExecutor(
+            peerConnectionId,
+            "dataChannelSetBufferedAmountLowThreshold",
+            () -> {
+                PeerConnectionObserver pco
+                    = mPeerConnectionObservers.get(peerConnectionId);
+                if (pco == null || pco.getPeerConnection() == null) {
+                    Log.d(TAG, "dataChannelSetBufferedAmountLowThreshold() peerConnection is null");
+                } else {
+                    pco.dataChannelSetBufferedAmountLowThreshold(dataChannelId, (long) threshold);
+                }
+            });
+    }
+
+    /**
+     * Sets the buffered amount (in bytes) above which the messages sent on a
+     * specific <tt>DataChannel</tt> are held natively instead of being handed
+     * to WebRTC, or zero to disable the native send queue.
+     */
+    @ReactMethod
+    public void dataChannelSetSendQueueHighWatermark(int peerConnectionId,
+                                                     int dataChannelId,
+                                                     double highWatermark) {
+        ThreadUtils.runOnPeerConnectionExecutor(
+            peerConnectionId,
+            "dataChannelSetSendQueueHighWatermark",
+            () -> {
+                PeerConnectionObserver pco
+                    = mPeerConnectionObservers.get(peerConnectionId);
+                if (pco == null || pco.getPeerConnection() == null) {
+                    Log.d(TAG, "dataChannelSetSendQueueHighWatermark() peerConnection is null");
+                } else {
+                    pco.dataChannelSetSendQueueHighWatermark(dataChannelId, (long) highWatermark);
+                }
+            });
+    }
+
+    /**
+     * Sets the time (in milliseconds) for which the messages received on a
+     * specific <tt>DataChannel</tt> are collected and reported in a single
+     * event, or zero to report every message in its own event, and the number
+     * of messages at which the collected messages are reported early.
+     */
+    @ReactMethod
+    public void dataChannelSetMessageBatching(int peerConnectionId,
+                                              int dataChannelId,
+                                              int window,
+                                              int maxSize) {
+        ThreadUtils.runOnPeerConnectionExecutor(
+            peerConnectionId,
+            "dataChannelSetMessageBatching",
+            () -> {
+                PeerConnectionObserver pco
+                    = mPeerConnectionObservers.get(peerConnectionId);
+                if (pco == null || pco.getPeerConnection() == null) {
+                    Log.d(TAG, "dataChannelSetMessageBatching() peerConnection is null");
+                } else {
+                    pco.dataChannelSetMessageBatching(dataChannelId, window, maxSize);
+                }
+            });
+    }
 }
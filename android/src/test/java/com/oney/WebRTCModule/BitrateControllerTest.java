@@ -0,0 +1,236 @@
+package com.oney.WebRTCModule;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class BitrateControllerTest {
+    private final BitrateController.Policy policy = new BitrateController.Policy();
+
+    private static BitrateController.Inputs inputs(double available, double fractionLost) {
+        return new BitrateController.Inputs(available, fractionLost, null);
+    }
+
+    /**
+     * Three simulcast layers of 150 kbps, 500 kbps and 1.5 Mbps.
+     */
+    private static List<BitrateController.Ceiling> simulcast() {
+        return Arrays.asList(
+            new BitrateController.Ceiling(true, 150000, 30, 4),
+            new BitrateController.Ceiling(true, 500000, 30, 2),
+            new BitrateController.Ceiling(true, 1500000, 30, 1));
+    }
+
+    @Test
+    public void targetsAShareOfTheAvailableBitrateFirst() {
+        // 0.85 of 1 Mbps, without a previous target to limit the increase.
+        assertEquals(
+            850000,
+            BitrateController.computeTargetBitrate(policy, inputs(1000000, 0), 0));
+    }
+
+    @Test
+    public void clampsTheIncreaseToMaxIncrease() {
+        // 0.85 of 2 Mbps but at most 15% more than the previous 1 Mbps.
+        assertEquals(
+            1150000,
+            BitrateController.computeTargetBitrate(policy, inputs(2000000, 0), 1000000));
+        // A decrease isn't clamped.
+        assertEquals(
+            425000,
+            BitrateController.computeTargetBitrate(policy, inputs(500000, 0), 1000000));
+    }
+
+    @Test
+    public void backsOffOnLoss() {
+        // 20% loss halves it: 10% below the previous target.
+        assertEquals(
+            900000,
+            BitrateController.computeTargetBitrate(policy, inputs(2000000, 0.2), 1000000));
+        // Loss at the threshold doesn't.
+        assertEquals(
+            1150000,
+            BitrateController.computeTargetBitrate(policy, inputs(2000000, 0.05), 1000000));
+        // The share of the available bitrate still applies if it's lower.
+        assertEquals(
+            425000,
+            BitrateController.computeTargetBitrate(policy, inputs(500000, 0.2), 1000000));
+    }
+
+    @Test
+    public void keepsTheTargetWithinThePolicyBounds() {
+        // The minBitrate floor.
+        assertEquals(
+            150000,
+            BitrateController.computeTargetBitrate(policy, inputs(50000, 0), 0));
+        assertEquals(
+            150000,
+            BitrateController.computeTargetBitrate(policy, inputs(1000000, 0.9), 160000));
+        // The maxBitrate ceiling.
+        assertEquals(
+            2500000,
+            BitrateController.computeTargetBitrate(policy, inputs(10000000, 0), 0));
+    }
+
+    @Test
+    public void activatesTheLayersWhichFit() {
+        // 150 + 500 fit, 0.75 of 1500 doesn't fit the 400 left.
+        List<BitrateController.Allocation> allocations
+            = BitrateController.allocate(policy, 1050000, false, simulcast());
+
+        assertAllocation(allocations.get(0), true, 150000, 30);
+        assertAllocation(allocations.get(1), true, 500000, 30);
+        assertAllocation(allocations.get(2), false, 1500000, 30);
+    }
+
+    @Test
+    public void activatesALayerAtTheActivationRatio() {
+        // 650 + 0.75 of 1500 exactly.
+        List<BitrateController.Allocation> allocations
+            = BitrateController.allocate(policy, 650000 + 1125000, false, simulcast());
+
+        assertAllocation(allocations.get(2), true, 1125000, 30);
+
+        allocations
+            = BitrateController.allocate(policy, 650000 + 1124999, false, simulcast());
+        assertAllocation(allocations.get(2), false, 1500000, 30);
+
+        // A lower ratio turns it on with less.
+        policy.layerActivationRatio = 0.5;
+        allocations
+            = BitrateController.allocate(policy, 650000 + 750000, false, simulcast());
+        assertAllocation(allocations.get(2), true, 750000, 30);
+    }
+
+    @Test
+    public void keepsAllLayersWithoutLayerManagement() {
+        policy.manageLayers = false;
+
+        List<BitrateController.Allocation> allocations
+            = BitrateController.allocate(policy, 400000, false, simulcast());
+
+        assertAllocation(allocations.get(0), true, 150000, 30);
+        assertAllocation(allocations.get(1), true, 250000, 30);
+        assertAllocation(allocations.get(2), true, 0, 30);
+    }
+
+    @Test
+    public void keepsTheLowestLayerOnAtTheMinimum() {
+        List<BitrateController.Ceiling> ceilings = Arrays.asList(
+            new BitrateController.Ceiling(true, 300000, null, 2),
+            new BitrateController.Ceiling(true, 1000000, null, 1));
+
+        List<BitrateController.Allocation> allocations
+            = BitrateController.allocate(policy, 50000, false, ceilings);
+
+        // minBitrate even though only 50 kbps are allocated.
+        assertAllocation(allocations.get(0), true, 150000, null);
+        assertAllocation(allocations.get(1), false, 1000000, null);
+
+        // No more than its own ceiling.
+        allocations
+            = BitrateController.allocate(
+                policy,
+                50000,
+                false,
+                Arrays.asList(new BitrateController.Ceiling(true, 100000, null, 1)));
+        assertAllocation(allocations.get(0), true, 100000, null);
+    }
+
+    @Test
+    public void capsTheFramerateWhileCpuLimited() {
+        List<BitrateController.Ceiling> ceilings = Arrays.asList(
+            new BitrateController.Ceiling(true, 150000, 30, 4),
+            new BitrateController.Ceiling(true, 500000, 10, 2),
+            new BitrateController.Ceiling(true, 1500000, null, 1));
+
+        List<BitrateController.Allocation> allocations
+            = BitrateController.allocate(policy, 3000000, true, ceilings);
+
+        assertAllocation(allocations.get(0), true, 150000, 15);
+        // A lower ceiling stays.
+        assertAllocation(allocations.get(1), true, 500000, 10);
+        // No ceiling gets the cap.
+        assertAllocation(allocations.get(2), true, 1500000, 15);
+
+        allocations = BitrateController.allocate(policy, 3000000, false, ceilings);
+        assertAllocation(allocations.get(0), true, 150000, 30);
+        assertAllocation(allocations.get(2), true, 1500000, null);
+    }
+
+    @Test
+    public void leavesInactiveEncodingsAtTheirCeiling() {
+        List<BitrateController.Ceiling> ceilings = Arrays.asList(
+            new BitrateController.Ceiling(false, 150000, 30, 4),
+            new BitrateController.Ceiling(true, 500000, 30, 2),
+            new BitrateController.Ceiling(false, null, 24, 1));
+
+        List<BitrateController.Allocation> allocations
+            = BitrateController.allocate(policy, 3000000, true, ceilings);
+
+        // Never turned on and not CPU capped, whatever the bitrate.
+        assertAllocation(allocations.get(0), false, 150000, 30);
+        assertAllocation(allocations.get(2), false, null, 24);
+        // The lowest active layer is the first one served.
+        assertAllocation(allocations.get(1), true, 500000, 15);
+    }
+
+    @Test
+    public void takesTheChangesOfTheAppIntoTheCeilings() {
+        List<BitrateController.Ceiling> ceilings = simulcast();
+        // The controller turned the top layer off and capped the middle one.
+        List<BitrateController.Ceiling> before = Arrays.asList(
+            new BitrateController.Ceiling(true, 150000, 30, 4),
+            new BitrateController.Ceiling(true, 400000, 30, 2),
+            new BitrateController.Ceiling(false, 1500000, 30, 1));
+        // The app lowers the maxFramerate of the lowest layer and turns the
+        // middle one off, leaving the rest as read from getParameters().
+        List<BitrateController.Ceiling> after = Arrays.asList(
+            new BitrateController.Ceiling(true, 150000, 15, 4),
+            new BitrateController.Ceiling(false, 400000, 30, 2),
+            new BitrateController.Ceiling(false, 1500000, 30, 1));
+
+        List<BitrateController.Ceiling> updated
+            = BitrateController.updateCeilings(ceilings, before, after);
+
+        assertCeiling(updated.get(0), true, 150000, 15);
+        // The value the controller had set doesn't become the ceiling.
+        assertCeiling(updated.get(1), false, 500000, 30);
+        assertCeiling(updated.get(2), true, 1500000, 30);
+    }
+
+    @Test
+    public void takesAllOfANewNumberOfEncodings() {
+        List<BitrateController.Ceiling> after
+            = Arrays.asList(new BitrateController.Ceiling(true, 800000, null, 1));
+
+        List<BitrateController.Ceiling> updated
+            = BitrateController.updateCeilings(simulcast(), simulcast(), after);
+
+        assertEquals(1, updated.size());
+        assertCeiling(updated.get(0), true, 800000, null);
+    }
+
+    private static void assertAllocation(
+            BitrateController.Allocation allocation,
+            boolean active,
+            Integer maxBitrate,
+            Integer maxFramerate) {
+        assertEquals(active, allocation.active);
+        assertEquals(maxBitrate, allocation.maxBitrate);
+        assertEquals(maxFramerate, allocation.maxFramerate);
+    }
+
+    private static void assertCeiling(
+            BitrateController.Ceiling ceiling,
+            boolean active,
+            Integer maxBitrate,
+            Integer maxFramerate) {
+        assertEquals(active, ceiling.active);
+        assertEquals(maxBitrate, ceiling.maxBitrate);
+        assertEquals(maxFramerate, ceiling.maxFramerate);
+    }
+}
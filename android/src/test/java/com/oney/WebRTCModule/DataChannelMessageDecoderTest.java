@@ -0,0 +1,113 @@
+package com.oney.WebRTCModule;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class DataChannelMessageDecoderTest {
+    private final DataChannelMessageDecoder decoder = new DataChannelMessageDecoder();
+
+    @Test
+    public void encodesLikeJavaUtilBase64() {
+        Random random = new Random(42);
+
+        // Lengths 0 to 8 cover all three padding lengths twice.
+        for (int length = 0; length <= 8; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            assertBase64(bytes, ByteBuffer.wrap(bytes));
+        }
+    }
+
+    @Test
+    public void encodesPaddingLengths() {
+        assertEquals("", encode(""));
+        assertEquals("Zm9v", encode("foo"));
+        assertEquals("Zm9vYg==", encode("foob"));
+        assertEquals("Zm9vYmE=", encode("fooba"));
+        assertEquals("Zm9vYmFy", encode("foobar"));
+    }
+
+    @Test
+    public void encodesAllByteValues() {
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        assertBase64(bytes, ByteBuffer.wrap(bytes));
+    }
+
+    @Test
+    public void encodesOnlyTheSliceOfAnOffsetBuffer() {
+        byte[] backing = new byte[64];
+        new Random(7).nextBytes(backing);
+
+        for (int padding = 0; padding < 3; padding++) {
+            int offset = 5;
+            int length = 30 + padding;
+            byte[] expected = new byte[length];
+            System.arraycopy(backing, offset, expected, 0, length);
+
+            // A buffer whose position is not zero.
+            ByteBuffer buffer = ByteBuffer.wrap(backing, offset, length);
+            assertBase64(expected, buffer);
+            assertEquals(offset, buffer.position());
+
+            // A slice whose arrayOffset is not zero.
+            assertBase64(expected, buffer.slice());
+
+            // A direct buffer whose position is not zero.
+            ByteBuffer direct = ByteBuffer.allocateDirect(backing.length);
+            direct.put(backing);
+            direct.position(offset);
+            direct.limit(offset + length);
+            assertBase64(expected, direct);
+        }
+    }
+
+    @Test
+    public void encodesLargeMessagesPastTheRetainedScratchBuffer() {
+        byte[] bytes = new byte[200 * 1024 + 1];
+        new Random(3).nextBytes(bytes);
+
+        assertBase64(bytes, ByteBuffer.wrap(bytes));
+        // The scratch buffer retained for small messages is still right.
+        assertEquals("Zm9vYg==", encode("foob"));
+    }
+
+    @Test
+    public void decodesTextOfTheSlice() {
+        byte[] backing = "xx h\u00e9llo w\u00f6rld \u2713 \ud83d\ude00 xx".getBytes(StandardCharsets.UTF_8);
+        int length = backing.length - 6;
+        ByteBuffer buffer = ByteBuffer.wrap(backing, 3, length);
+
+        assertEquals(
+            new String(backing, 3, length, StandardCharsets.UTF_8),
+            decoder.decodeText(buffer));
+    }
+
+    @Test
+    public void replacesMalformedTextLikeNewString() {
+        byte[] bytes = { 'a', (byte) 0xc3, 'b', (byte) 0xff, (byte) 0xe2, (byte) 0x9c };
+
+        assertEquals(
+            new String(bytes, StandardCharsets.UTF_8),
+            decoder.decodeText(ByteBuffer.wrap(bytes)));
+    }
+
+    private String encode(String text) {
+        return decoder.encodeBinary(
+            ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private void assertBase64(byte[] expected, ByteBuffer data) {
+        assertEquals(
+            Base64.getEncoder().encodeToString(expected),
+            decoder.encodeBinary(data));
+    }
+}
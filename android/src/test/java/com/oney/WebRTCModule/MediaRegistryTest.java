@@ -0,0 +1,128 @@
+package com.oney.WebRTCModule;
+
+import org.junit.Test;
+import org.webrtc.MediaStream;
+import org.webrtc.MediaStreamTrack;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class MediaRegistryTest {
+    private final MediaRegistry registry = new MediaRegistry();
+
+    @Test
+    public void looksUpLocalAndRemoteStreams() {
+        MediaStream local = new MediaStream(0);
+        MediaStream remote = new MediaStream(0);
+
+        registry.putLocalStream("local", local);
+        registry.putRemoteStream(1, "remote", remote);
+
+        assertSame(local, registry.getStream("local"));
+        assertSame(remote, registry.getStream("remote"));
+        assertSame(local, registry.getLocalStream("local"));
+        assertNull(registry.getLocalStream("remote"));
+        assertNull(registry.getStream("unknown"));
+    }
+
+    @Test
+    public void removeByNonOwnerIsNoOp() {
+        MediaStream local = new MediaStream(0);
+        MediaStream remote = new MediaStream(0);
+        MediaStreamTrack track = new FakeTrack("track");
+
+        registry.putLocalStream("local", local);
+        registry.putRemoteStream(1, "remote", remote);
+        registry.putRemoteTrack(1, track);
+
+        // Another PeerConnection or a local operation.
+        registry.removeRemoteStream(2, "remote");
+        registry.removeRemoteStream(1, "local");
+        assertNull(registry.removeLocalStream("remote"));
+        registry.removeRemoteTrack(2, "track");
+        registry.removeRemoteTrack(MediaRegistry.LOCAL, "track");
+
+        assertSame(local, registry.getStream("local"));
+        assertSame(remote, registry.getStream("remote"));
+        assertSame(track, registry.getRemoteTrack("track"));
+    }
+
+    @Test
+    public void removeByOwner() {
+        MediaStream local = new MediaStream(0);
+
+        registry.putLocalStream("local", local);
+        registry.putRemoteStream(1, "remote", new MediaStream(0));
+        registry.putRemoteTrack(1, new FakeTrack("track"));
+
+        assertSame(local, registry.removeLocalStream("local"));
+        registry.removeRemoteStream(1, "remote");
+        registry.removeRemoteTrack(1, "track");
+
+        assertNull(registry.getStream("local"));
+        assertNull(registry.getStream("remote"));
+        assertNull(registry.getRemoteTrack("track"));
+        assertNull(registry.removeLocalStream("local"));
+    }
+
+    @Test
+    public void collidingRemoteTrackIdsKeepTheLastOne() {
+        MediaStreamTrack first = new FakeTrack("track");
+        MediaStreamTrack second = new FakeTrack("track");
+
+        registry.putRemoteTrack(1, first);
+        registry.putRemoteTrack(2, second);
+
+        // The PeerConnection which registered the track first no longer owns
+        // the ID.
+        registry.removeRemoteTrack(1, "track");
+        assertSame(second, registry.getRemoteTrack("track"));
+
+        registry.removeRemoteTrack(2, "track");
+        assertNull(registry.getRemoteTrack("track"));
+    }
+
+    @Test
+    public void looksUpAmongManyPeerConnections() {
+        int peerConnections = 50;
+        int tracks = 4;
+        MediaStream[] streams = new MediaStream[peerConnections];
+        MediaStreamTrack[][] remoteTracks = new MediaStreamTrack[peerConnections][tracks];
+
+        for (int pc = 0; pc < peerConnections; pc++) {
+            streams[pc] = new MediaStream(0);
+            registry.putRemoteStream(pc, "stream" + pc, streams[pc]);
+            for (int t = 0; t < tracks; t++) {
+                remoteTracks[pc][t] = new FakeTrack("track" + pc + "-" + t);
+                registry.putRemoteTrack(pc, remoteTracks[pc][t]);
+            }
+        }
+
+        for (int pc = 0; pc < peerConnections; pc++) {
+            assertSame(streams[pc], registry.getStream("stream" + pc));
+            for (int t = 0; t < tracks; t++) {
+                assertSame(
+                    remoteTracks[pc][t],
+                    registry.getRemoteTrack("track" + pc + "-" + t));
+            }
+        }
+    }
+
+    /**
+     * A <tt>MediaStreamTrack</tt> which has an ID without a native track. The
+     * (non-null) native pointer is never dereferenced.
+     */
+    static final class FakeTrack extends MediaStreamTrack {
+        private final String id;
+
+        FakeTrack(String id) {
+            super(1);
+            this.id = id;
+        }
+
+        @Override
+        public String id() {
+            return id;
+        }
+    }
+}
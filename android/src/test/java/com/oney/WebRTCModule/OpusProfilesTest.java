@@ -0,0 +1,199 @@
+package com.oney.WebRTCModule;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class OpusProfilesTest {
+    /**
+     * An offer as created by Chrome with an audio and a video section.
+     */
+    private static final String OFFER
+        = "v=0\r\n"
+            + "o=- 8403615332048243445 2 IN IP4 127.0.0.1\r\n"
+            + "s=-\r\n"
+            + "t=0 0\r\n"
+            + "a=group:BUNDLE 0 1\r\n"
+            + "m=audio 9 UDP/TLS/RTP/SAVPF 111 63 9 0 8 13 110 126\r\n"
+            + "c=IN IP4 0.0.0.0\r\n"
+            + "a=rtcp:9 IN IP4 0.0.0.0\r\n"
+            + "a=ice-ufrag:Hn4x\r\n"
+            + "a=ice-pwd:b1uxcZ0K0MrgQzj1Nb3lDq6D\r\n"
+            + "a=fingerprint:sha-256 4A:AD:B9:B1:3F:82:18:3B:54:02:12:DF:3E:5D:49:6B:19:E5:7C:AB:13:5B:9C:67:1B:20:85:02:8E:B6:D5:84\r\n"
+            + "a=setup:actpass\r\n"
+            + "a=mid:0\r\n"
+            + "a=extmap:1 urn:ietf:params:rtp-hdrext:ssrc-audio-level\r\n"
+            + "a=sendrecv\r\n"
+            + "a=msid:- 6f2b8e4c-2d3a-4c4f-9d8e-2b3f5a6c7d8e\r\n"
+            + "a=rtcp-mux\r\n"
+            + "a=rtpmap:111 opus/48000/2\r\n"
+            + "a=rtcp-fb:111 transport-cc\r\n"
+            + "a=fmtp:111 minptime=10;useinbandfec=1\r\n"
+            + "a=rtpmap:63 red/48000/2\r\n"
+            + "a=fmtp:63 111/111\r\n"
+            + "a=rtpmap:9 G722/8000\r\n"
+            + "a=rtpmap:0 PCMU/8000\r\n"
+            + "a=rtpmap:8 PCMA/8000\r\n"
+            + "a=rtpmap:13 CN/8000\r\n"
+            + "a=rtpmap:110 telephone-event/48000\r\n"
+            + "a=rtpmap:126 telephone-event/8000\r\n"
+            + "a=ssrc:3735928559 cname:aZ3bW9qL2kR8tY5u\r\n"
+            + "m=video 9 UDP/TLS/RTP/SAVPF 96 97\r\n"
+            + "c=IN IP4 0.0.0.0\r\n"
+            + "a=rtcp:9 IN IP4 0.0.0.0\r\n"
+            + "a=mid:1\r\n"
+            + "a=sendrecv\r\n"
+            + "a=rtcp-mux\r\n"
+            + "a=rtpmap:96 VP8/90000\r\n"
+            + "a=rtpmap:97 rtx/90000\r\n"
+            + "a=fmtp:97 apt=96\r\n";
+
+    private static String apply(String profile, String sdp) {
+        return OpusProfiles.create(profile).transform(sdp, "offer");
+    }
+
+    private static List<String> linesStartingWith(String sdp, String prefix) {
+        List<String> lines = new ArrayList<>();
+
+        for (String line : sdp.split("\r\n")) {
+            if (line.startsWith(prefix)) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static String fmtp(String sdp) {
+        List<String> lines = linesStartingWith(sdp, "a=fmtp:111 ");
+
+        assertEquals(1, lines.size());
+        return lines.get(0);
+    }
+
+    /**
+     * Gets the SDP without the Opus <tt>a=fmtp</tt> line and the
+     * <tt>a=ptime</tt> lines, which must be all a profile changes.
+     */
+    private static String withoutProfile(String sdp) {
+        StringBuilder builder = new StringBuilder();
+
+        for (String line : sdp.split("\r\n")) {
+            if (!line.startsWith("a=fmtp:111 ") && !line.startsWith("a=ptime:")) {
+                builder.append(line).append("\r\n");
+            }
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void appliesVoiceLowBandwidth() {
+        String sdp = apply("voice-low-bandwidth", OFFER);
+
+        assertEquals(
+            "a=fmtp:111 minptime=10;useinbandfec=1;stereo=0;sprop-stereo=0;usedtx=1"
+                + ";maxaveragebitrate=16000;maxplaybackrate=16000",
+            fmtp(sdp));
+        assertEquals(1, linesStartingWith(sdp, "a=ptime:").size());
+        assertEquals("a=ptime:40", linesStartingWith(sdp, "a=ptime:").get(0));
+        assertEquals(withoutProfile(OFFER), withoutProfile(sdp));
+    }
+
+    @Test
+    public void appliesVoiceResilient() {
+        String sdp = apply("voice-resilient", OFFER);
+
+        assertEquals(
+            "a=fmtp:111 minptime=10;useinbandfec=1;stereo=0;sprop-stereo=0;usedtx=0"
+                + ";maxaveragebitrate=32000",
+            fmtp(sdp));
+        assertEquals("a=ptime:20", linesStartingWith(sdp, "a=ptime:").get(0));
+        assertEquals(withoutProfile(OFFER), withoutProfile(sdp));
+    }
+
+    @Test
+    public void appliesMusicStereo() {
+        String sdp = apply("music-stereo", OFFER);
+
+        assertEquals(
+            "a=fmtp:111 minptime=10;useinbandfec=0;stereo=1;sprop-stereo=1;usedtx=0"
+                + ";maxaveragebitrate=128000;maxplaybackrate=48000",
+            fmtp(sdp));
+        assertEquals("a=ptime:20", linesStartingWith(sdp, "a=ptime:").get(0));
+        assertEquals(withoutProfile(OFFER), withoutProfile(sdp));
+        // RED keeps referring to Opus.
+        assertEquals(1, linesStartingWith(sdp, "a=fmtp:63 111/111").size());
+    }
+
+    @Test
+    public void mergesIntoTheFmtpWithoutDuplicateKeys() {
+        String sdp = apply(
+            "voice-resilient",
+            OFFER.replace(
+                "a=fmtp:111 minptime=10;useinbandfec=1\r\n",
+                "a=fmtp:111 minptime=20; useinbandfec=0;cbr=1;maxaveragebitrate=64000\r\n"));
+
+        // Existing keys keep their position with the values of the profile,
+        // unknown keys are kept.
+        assertEquals(
+            "a=fmtp:111 minptime=10;useinbandfec=1;cbr=1;maxaveragebitrate=32000"
+                + ";stereo=0;sprop-stereo=0;usedtx=0",
+            fmtp(sdp));
+    }
+
+    @Test
+    public void addsTheFmtpAfterTheRtpmap() {
+        String sdp = apply(
+            "voice-resilient",
+            OFFER.replace("a=fmtp:111 minptime=10;useinbandfec=1\r\n", ""));
+        List<String> lines = Arrays.asList(sdp.split("\r\n"));
+        int rtpmap = lines.indexOf("a=rtpmap:111 opus/48000/2");
+
+        assertEquals(
+            "a=fmtp:111 minptime=10;stereo=0;sprop-stereo=0;usedtx=0;useinbandfec=1"
+                + ";maxaveragebitrate=32000",
+            lines.get(rtpmap + 1));
+        assertEquals("a=rtcp-fb:111 transport-cc", lines.get(rtpmap + 2));
+    }
+
+    @Test
+    public void replacesAnExistingPtime() {
+        String sdp = apply(
+            "voice-low-bandwidth",
+            OFFER.replace("a=rtpmap:9 G722/8000\r\n", "a=ptime:20\r\na=rtpmap:9 G722/8000\r\n"));
+        List<String> ptimes = linesStartingWith(sdp, "a=ptime:");
+
+        assertEquals(1, ptimes.size());
+        assertEquals("a=ptime:40", ptimes.get(0));
+        // In place.
+        assertEquals(
+            sdp.indexOf("a=rtpmap:9 ") - "a=ptime:40\r\n".length(),
+            sdp.indexOf("a=ptime:40"));
+    }
+
+    @Test
+    public void addsPtimeOnlyToSectionsWithOpus() {
+        String sdp = apply(
+            "voice-resilient",
+            OFFER.replace("a=rtpmap:111 opus/48000/2", "a=rtpmap:111 ISAC/16000"));
+
+        assertEquals(0, linesStartingWith(sdp, "a=ptime:").size());
+        assertEquals(1, linesStartingWith(sdp, "a=fmtp:111 minptime=10;useinbandfec=1").size());
+    }
+
+    @Test
+    public void rejectsUnknownProfiles() {
+        for (String name : new String[] { null, "", "voice" }) {
+            try {
+                OpusProfiles.create(name);
+                fail(name);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.oney.WebRTCModule;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Test;
+import org.webrtc.DataChannel;
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaStream;
+import org.webrtc.PeerConnection;
+import org.webrtc.RtpReceiver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class PeerConnectionPoolTest {
+    private static JavaOnlyMap turnServer(String username) {
+        return JavaOnlyMap.of(
+            "urls", JavaOnlyArray.of("turn:a.example.com", "turns:a.example.com"),
+            "username", username,
+            "credential", "secret");
+    }
+
+    @Test
+    public void canonicalKeyIgnoresPropertyOrder() {
+        JavaOnlyMap a = JavaOnlyMap.of(
+            "iceServers", JavaOnlyArray.of(turnServer("user")),
+            "bundlePolicy", "max-bundle",
+            "iceCandidatePoolSize", 2);
+        JavaOnlyMap b = JavaOnlyMap.of(
+            "iceCandidatePoolSize", 2,
+            "bundlePolicy", "max-bundle",
+            "iceServers", JavaOnlyArray.of(turnServer("user")));
+
+        assertEquals(
+            PeerConnectionPool.canonicalKey(a),
+            PeerConnectionPool.canonicalKey(b));
+    }
+
+    @Test
+    public void canonicalKeyDistinguishesValues() {
+        String key = PeerConnectionPool.canonicalKey(
+            JavaOnlyMap.of("iceServers", JavaOnlyArray.of(turnServer("user"))));
+
+        assertNotEquals(
+            key,
+            PeerConnectionPool.canonicalKey(
+                JavaOnlyMap.of("iceServers", JavaOnlyArray.of(turnServer("other")))));
+        // The order of the ICE server URLs matters.
+        assertNotEquals(
+            key,
+            PeerConnectionPool.canonicalKey(
+                JavaOnlyMap.of(
+                    "iceServers",
+                    JavaOnlyArray.of(
+                        JavaOnlyMap.of(
+                            "urls", JavaOnlyArray.of("turns:a.example.com", "turn:a.example.com"),
+                            "username", "user",
+                            "credential", "secret")))));
+        // A string can't be mistaken for a structure.
+        assertNotEquals(
+            PeerConnectionPool.canonicalKey(JavaOnlyMap.of("a", "1\"b:2")),
+            PeerConnectionPool.canonicalKey(JavaOnlyMap.of("a", "1", "b", 2)));
+    }
+
+    @Test
+    public void canonicalKeyOfNoConfiguration() {
+        assertEquals("null", PeerConnectionPool.canonicalKey(null));
+        assertNotEquals(
+            PeerConnectionPool.canonicalKey(null),
+            PeerConnectionPool.canonicalKey(new JavaOnlyMap()));
+    }
+
+    @Test
+    public void takesNothingWithoutAKey() {
+        PeerConnectionPool pool = new PeerConnectionPool(null);
+
+        assertNull(pool.take(null));
+        assertNull(pool.take(PeerConnectionPool.canonicalKey(null)));
+    }
+
+    @Test
+    public void forwardingObserverReplaysPendingEventsFirst() {
+        PeerConnectionPool.ForwardingObserver observer
+            = new PeerConnectionPool.ForwardingObserver();
+        RecordingObserver target = new RecordingObserver();
+
+        observer.onIceGatheringChange(PeerConnection.IceGatheringState.GATHERING);
+        observer.onIceCandidate(new IceCandidate("0", 0, "candidate:1"));
+        observer.attach(target);
+        observer.onIceCandidate(new IceCandidate("0", 0, "candidate:2"));
+
+        assertEquals(
+            Arrays.asList("gathering GATHERING", "candidate candidate:1", "candidate candidate:2"),
+            target.events);
+    }
+
+    @Test
+    public void forwardingObserverKeepsOrderDuringReplay() {
+        PeerConnectionPool.ForwardingObserver observer
+            = new PeerConnectionPool.ForwardingObserver();
+        // An event which occurs while the first pending one is delivered must
+        // not overtake the second pending one.
+        RecordingObserver target = new RecordingObserver() {
+            @Override
+            public void onIceGatheringChange(PeerConnection.IceGatheringState state) {
+                super.onIceGatheringChange(state);
+                if (state == PeerConnection.IceGatheringState.GATHERING) {
+                    observer.onIceGatheringChange(PeerConnection.IceGatheringState.COMPLETE);
+                }
+            }
+        };
+
+        observer.onIceGatheringChange(PeerConnection.IceGatheringState.GATHERING);
+        observer.onIceCandidate(new IceCandidate("0", 0, "candidate:1"));
+        observer.attach(target);
+
+        assertEquals(
+            Arrays.asList("gathering GATHERING", "candidate candidate:1", "gathering COMPLETE"),
+            target.events);
+    }
+
+    private static class RecordingObserver implements PeerConnection.Observer {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onSignalingChange(PeerConnection.SignalingState state) {
+            events.add("signaling " + state);
+        }
+
+        @Override
+        public void onIceConnectionChange(PeerConnection.IceConnectionState state) {
+            events.add("iceConnection " + state);
+        }
+
+        @Override
+        public void onIceConnectionReceivingChange(boolean receiving) {
+            events.add("receiving " + receiving);
+        }
+
+        @Override
+        public void onIceGatheringChange(PeerConnection.IceGatheringState state) {
+            events.add("gathering " + state);
+        }
+
+        @Override
+        public void onIceCandidate(IceCandidate candidate) {
+            events.add("candidate " + candidate.sdp);
+        }
+
+        @Override
+        public void onIceCandidatesRemoved(IceCandidate[] candidates) {
+            events.add("candidatesRemoved " + candidates.length);
+        }
+
+        @Override
+        public void onAddStream(MediaStream stream) {
+            events.add("addStream");
+        }
+
+        @Override
+        public void onRemoveStream(MediaStream stream) {
+            events.add("removeStream");
+        }
+
+        @Override
+        public void onDataChannel(DataChannel dataChannel) {
+            events.add("dataChannel");
+        }
+
+        @Override
+        public void onRenegotiationNeeded() {
+            events.add("renegotiationNeeded");
+        }
+
+        @Override
+        public void onAddTrack(RtpReceiver receiver, MediaStream[] streams) {
+            events.add("addTrack");
+        }
+    }
+}
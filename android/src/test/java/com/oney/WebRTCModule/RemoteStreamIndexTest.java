@@ -0,0 +1,139 @@
+package com.oney.WebRTCModule;
+
+import org.junit.Test;
+import org.webrtc.MediaStream;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RemoteStreamIndexTest {
+    private final RemoteStreamIndex index = new RemoteStreamIndex();
+
+    @Test
+    public void mapsBothWaysAfterAdd() {
+        MediaStream a = new MediaStream(0);
+        MediaStream b = new MediaStream(0);
+
+        index.put("a", a);
+        index.put("b", b);
+
+        assertConsistent();
+        assertSame(a, index.get("a"));
+        assertEquals("a", index.getReactTag(a));
+        assertEquals("b", index.getReactTag(b));
+        assertNull(index.getReactTag(new MediaStream(0)));
+    }
+
+    @Test
+    public void mapsBothWaysAfterRemove() {
+        MediaStream a = new MediaStream(0);
+        MediaStream b = new MediaStream(0);
+
+        index.put("a", a);
+        index.put("b", b);
+
+        assertEquals("a", index.remove(a));
+        assertConsistent();
+        assertNull(index.get("a"));
+        assertNull(index.getReactTag(a));
+        assertSame(b, index.get("b"));
+
+        // Removing again or removing an unknown stream changes nothing.
+        assertNull(index.remove(a));
+        assertNull(index.remove(new MediaStream(0)));
+        assertConsistent();
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void clearsBothWaysOnClose() {
+        MediaStream a = new MediaStream(0);
+
+        index.put("a", a);
+        index.put("b", new MediaStream(0));
+        index.clear();
+
+        assertConsistent();
+        assertEquals(0, index.size());
+        assertNull(index.getReactTag(a));
+        assertTrue(index.streams().isEmpty());
+    }
+
+    @Test
+    public void replacesMappingsOfEitherSide() {
+        MediaStream a = new MediaStream(0);
+        MediaStream b = new MediaStream(0);
+
+        // The same stream under a new reactTag.
+        index.put("old", a);
+        index.put("new", a);
+        assertConsistent();
+        assertNull(index.get("old"));
+        assertEquals("new", index.getReactTag(a));
+
+        // Another stream under the same reactTag.
+        index.put("new", b);
+        assertConsistent();
+        assertNull(index.getReactTag(a));
+        assertEquals("new", index.getReactTag(b));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void looksUpByIdentity() {
+        // MediaStreams of the same native stream are distinct objects.
+        MediaStream a = new MediaStream(0);
+        MediaStream b = new MediaStream(0);
+
+        index.put("a", a);
+
+        assertNull(index.getReactTag(b));
+        assertNull(index.remove(b));
+        assertSame(a, index.get("a"));
+    }
+
+    @Test
+    public void staysConsistentThroughManyChanges() {
+        MediaStream[] streams = new MediaStream[100];
+
+        for (int i = 0; i < streams.length; i++) {
+            streams[i] = new MediaStream(0);
+            index.put("s" + i, streams[i]);
+        }
+        for (int i = 0; i < streams.length; i += 2) {
+            index.remove(streams[i]);
+        }
+        assertConsistent();
+        assertEquals(50, index.size());
+        for (int i = 1; i < streams.length; i += 2) {
+            assertEquals("s" + i, index.getReactTag(streams[i]));
+        }
+    }
+
+    /**
+     * Asserts that every stream maps back to the reactTag which maps to it and
+     * that there are no other reverse mappings.
+     */
+    private void assertConsistent() {
+        int reverse = 0;
+
+        for (String reactTag : index.reactTags()) {
+            MediaStream stream = index.get(reactTag);
+            assertEquals(reactTag, index.getReactTag(stream));
+        }
+        for (MediaStream stream : index.streams()) {
+            if (index.getReactTag(stream) != null) {
+                reverse++;
+            }
+        }
+        assertEquals(index.size(), reverse);
+        assertEquals(
+            index.size(),
+            new HashSet<>(Arrays.asList(index.streams().toArray())).size());
+    }
+}
@@ -0,0 +1,160 @@
+package com.oney.WebRTCModule;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Test;
+import org.webrtc.RtpParameters;
+import org.webrtc.RtpTransceiver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RtpParametersUtilsTest {
+    private static RtpParameters.Encoding fullEncoding() {
+        RtpParameters.Encoding encoding = new RtpParameters.Encoding("h", false, 2.0);
+
+        encoding.maxBitrateBps = 1500000;
+        encoding.minBitrateBps = 300000;
+        encoding.maxFramerate = 24;
+        encoding.networkPriority = 3;
+        encoding.ssrc = 4000000000L;
+        return encoding;
+    }
+
+    @Test
+    public void roundTripsAllMembers() {
+        RtpParameters.Encoding encoding = fullEncoding();
+        JavaOnlyMap map = new JavaOnlyMap();
+
+        RtpParametersUtils.putEncoding(map, encoding);
+        assertEquals("h", map.getString("rid"));
+        assertFalse(map.getBoolean("active"));
+        assertEquals(1500000, map.getInt("maxBitrate"));
+        assertEquals(300000, map.getInt("minBitrate"));
+        assertEquals(24, map.getInt("maxFramerate"));
+        assertEquals(2.0, map.getDouble("scaleResolutionDownBy"), 0);
+        assertEquals("high", map.getString("networkPriority"));
+        // Beyond the range of an int.
+        assertEquals(4000000000.0, map.getDouble("ssrc"), 0);
+
+        RtpParameters.Encoding applied = new RtpParameters.Encoding("h", true, null);
+        RtpParametersUtils.applyEncoding(map, applied);
+        assertFalse(applied.active);
+        assertEquals(Integer.valueOf(1500000), applied.maxBitrateBps);
+        assertEquals(Integer.valueOf(300000), applied.minBitrateBps);
+        assertEquals(Integer.valueOf(24), applied.maxFramerate);
+        assertEquals(Double.valueOf(2.0), applied.scaleResolutionDownBy);
+        assertEquals(3, applied.networkPriority);
+        // Read-only members aren't applied.
+        assertNull(applied.ssrc);
+    }
+
+    @Test
+    public void absentMembersAreNotWrittenAndUnsetWhenApplied() {
+        RtpParameters.Encoding empty = new RtpParameters.Encoding(null, true, null);
+        JavaOnlyMap map = new JavaOnlyMap();
+
+        RtpParametersUtils.putEncoding(map, empty);
+        for (String key : new String[] {
+                "rid", "maxBitrate", "minBitrate", "maxFramerate",
+                "scaleResolutionDownBy", "ssrc" }) {
+            assertFalse(key, map.hasKey(key));
+        }
+
+        // As with setParameters, a missing member removes the limit.
+        RtpParameters.Encoding applied = fullEncoding();
+        RtpParametersUtils.applyEncoding(map, applied);
+        assertTrue(applied.active);
+        assertNull(applied.maxBitrateBps);
+        assertNull(applied.minBitrateBps);
+        assertNull(applied.maxFramerate);
+        assertNull(applied.scaleResolutionDownBy);
+    }
+
+    @Test
+    public void nullMembersAreMissing() {
+        JavaOnlyMap map = new JavaOnlyMap();
+        for (String key : new String[] {
+                "active", "maxBitrate", "minBitrate", "maxFramerate",
+                "scaleResolutionDownBy", "networkPriority" }) {
+            map.putNull(key);
+        }
+
+        RtpParameters.Encoding applied = fullEncoding();
+        RtpParametersUtils.applyEncoding(map, applied);
+        assertTrue(applied.active);
+        assertNull(applied.maxBitrateBps);
+        assertNull(applied.minBitrateBps);
+        assertNull(applied.maxFramerate);
+        assertNull(applied.scaleResolutionDownBy);
+        // Without a new value the priority is kept.
+        assertEquals(3, applied.networkPriority);
+    }
+
+    @Test
+    public void truncatesFractionalIntegers() {
+        RtpParameters.Encoding applied = fullEncoding();
+
+        RtpParametersUtils.applyEncoding(
+            JavaOnlyMap.of("maxBitrate", 2500000.9, "maxFramerate", 29.97),
+            applied);
+        assertEquals(Integer.valueOf(2500000), applied.maxBitrateBps);
+        assertEquals(Integer.valueOf(29), applied.maxFramerate);
+    }
+
+    @Test
+    public void rejectsOutOfRangeMembers() {
+        assertInvalid("maxBitrate", -1);
+        assertInvalid("maxBitrate", 1e12);
+        assertInvalid("maxBitrate", Double.NaN);
+        assertInvalid("minBitrate", Double.POSITIVE_INFINITY);
+        assertInvalid("maxFramerate", -30);
+        assertInvalid("scaleResolutionDownBy", 0.5);
+        assertInvalid("scaleResolutionDownBy", Double.NaN);
+        assertInvalid("scaleResolutionDownBy", Double.POSITIVE_INFINITY);
+        assertInvalid("networkPriority", "urgent");
+
+        // The bounds themselves are valid.
+        RtpParameters.Encoding applied = fullEncoding();
+        RtpParametersUtils.applyEncoding(
+            JavaOnlyMap.of(
+                "maxBitrate", (double) Integer.MAX_VALUE,
+                "maxFramerate", 0,
+                "scaleResolutionDownBy", 1),
+            applied);
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), applied.maxBitrateBps);
+        assertEquals(Integer.valueOf(0), applied.maxFramerate);
+        assertEquals(Double.valueOf(1), applied.scaleResolutionDownBy);
+    }
+
+    @Test
+    public void roundTripsDirections() {
+        for (RtpTransceiver.RtpTransceiverDirection direction
+                : RtpTransceiver.RtpTransceiverDirection.values()) {
+            assertEquals(
+                direction,
+                RtpParametersUtils.directionFromString(
+                    RtpParametersUtils.directionToString(direction)));
+        }
+        try {
+            RtpParametersUtils.directionFromString("stopped");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static void assertInvalid(String key, Object value) {
+        try {
+            RtpParametersUtils.applyEncoding(
+                JavaOnlyMap.of(key, value),
+                new RtpParameters.Encoding(null, true, null));
+            fail(key + ": " + value);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.oney.WebRTCModule;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SdpTransformsTest {
+    /**
+     * An offer with an Opus audio section and a video section of VP8, VP9
+     * and H.264, each with RTX.
+     */
+    static final String OFFER
+        = "v=0\r\n"
+            + "o=- 4611731400430051336 2 IN IP4 127.0.0.1\r\n"
+            + "s=-\r\n"
+            + "t=0 0\r\n"
+            + "a=group:BUNDLE 0 1\r\n"
+            + "a=extmap-allow-mixed\r\n"
+            + "m=audio 9 UDP/TLS/RTP/SAVPF 111 63 9 0\r\n"
+            + "c=IN IP4 0.0.0.0\r\n"
+            + "a=rtcp:9 IN IP4 0.0.0.0\r\n"
+            + "a=mid:0\r\n"
+            + "a=extmap:1 urn:ietf:params:rtp-hdrext:ssrc-audio-level\r\n"
+            + "a=extmap:2 http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time\r\n"
+            + "a=sendrecv\r\n"
+            + "a=rtcp-mux\r\n"
+            + "a=rtpmap:111 opus/48000/2\r\n"
+            + "a=rtcp-fb:111 transport-cc\r\n"
+            + "a=fmtp:111 minptime=10;useinbandfec=1\r\n"
+            + "a=rtpmap:63 red/48000/2\r\n"
+            + "a=fmtp:63 111/111\r\n"
+            + "a=rtpmap:9 G722/8000\r\n"
+            + "a=rtpmap:0 PCMU/8000\r\n"
+            + "m=video 9 UDP/TLS/RTP/SAVPF 96 97 98 99 102 103\r\n"
+            + "c=IN IP4 0.0.0.0\r\n"
+            + "a=rtcp:9 IN IP4 0.0.0.0\r\n"
+            + "a=mid:1\r\n"
+            + "a=extmap:2 http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time\r\n"
+            + "a=extmap:3 urn:3gpp:video-orientation\r\n"
+            + "a=sendrecv\r\n"
+            + "a=rtcp-mux\r\n"
+            + "a=rtpmap:96 VP8/90000\r\n"
+            + "a=rtcp-fb:96 nack\r\n"
+            + "a=rtcp-fb:96 nack pli\r\n"
+            + "a=rtpmap:97 rtx/90000\r\n"
+            + "a=fmtp:97 apt=96\r\n"
+            + "a=rtpmap:98 VP9/90000\r\n"
+            + "a=rtcp-fb:98 nack\r\n"
+            + "a=fmtp:98 profile-id=0\r\n"
+            + "a=rtpmap:99 rtx/90000\r\n"
+            + "a=fmtp:99 apt=98\r\n"
+            + "a=rtpmap:102 H264/90000\r\n"
+            + "a=rtcp-fb:102 nack\r\n"
+            + "a=fmtp:102 level-asymmetry-allowed=1;packetization-mode=1;profile-level-id=42e01f\r\n"
+            + "a=rtpmap:103 rtx/90000\r\n"
+            + "a=fmtp:103 apt=102\r\n";
+
+    private static String apply(JavaOnlyMap... configs) {
+        return SdpTransforms.apply(
+            SdpTransforms.fromReadableArray(JavaOnlyArray.of((Object[]) configs)),
+            OFFER,
+            "offer");
+    }
+
+    private static JavaOnlyArray strings(String... strings) {
+        return JavaOnlyArray.of((Object[]) strings);
+    }
+
+    /**
+     * Gets the lines of the media section of a specific kind.
+     */
+    private static List<String> section(String sdp, String kind) {
+        List<String> lines = new ArrayList<>();
+        boolean in = false;
+
+        for (String line : sdp.split("\r\n")) {
+            if (line.startsWith("m=")) {
+                in = line.startsWith("m=" + kind + " ");
+            }
+            if (in) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    public void appliesNoTransforms() {
+        assertEquals(OFFER, apply());
+    }
+
+    @Test
+    public void movesPreferredCodecsToTheFront() {
+        String sdp = apply(
+            JavaOnlyMap.of("type", "codecOrder", "kind", "video", "codecs", strings("h264", "VP9")));
+
+        assertEquals(
+            "m=video 9 UDP/TLS/RTP/SAVPF 102 98 96 97 99 103",
+            section(sdp, "video").get(0));
+        // Other kinds and the attributes are left alone.
+        assertEquals(section(OFFER, "audio"), section(sdp, "audio"));
+        assertEquals(
+            section(OFFER, "video").subList(1, section(OFFER, "video").size()),
+            section(sdp, "video").subList(1, section(sdp, "video").size()));
+    }
+
+    @Test
+    public void ordersCodecsOfAllKindsWithoutAKind() {
+        String sdp = apply(JavaOnlyMap.of("type", "codecOrder", "codecs", strings("PCMU", "VP9")));
+
+        assertEquals("m=audio 9 UDP/TLS/RTP/SAVPF 0 111 63 9", section(sdp, "audio").get(0));
+        assertEquals(
+            "m=video 9 UDP/TLS/RTP/SAVPF 98 96 97 99 102 103",
+            section(sdp, "video").get(0));
+    }
+
+    @Test
+    public void insertsBandwidthAfterTheConnectionLine() {
+        List<String> video = section(
+            apply(JavaOnlyMap.of("type", "bandwidth", "kind", "video", "bitrate", 1500500)),
+            "video");
+
+        assertEquals("c=IN IP4 0.0.0.0", video.get(1));
+        // Rounded up to kbps.
+        assertEquals("b=AS:1501", video.get(2));
+        assertEquals("b=TIAS:1500500", video.get(3));
+        assertEquals("a=rtcp:9 IN IP4 0.0.0.0", video.get(4));
+    }
+
+    @Test
+    public void replacesAndRemovesBandwidth() {
+        String capped = apply(
+            JavaOnlyMap.of("type", "bandwidth", "bitrate", 64000),
+            JavaOnlyMap.of("type", "bandwidth", "kind", "video", "bitrate", 500000));
+        List<String> audio = section(capped, "audio");
+        List<String> video = section(capped, "video");
+
+        assertEquals(Arrays.asList("b=AS:64", "b=TIAS:64000"), audio.subList(2, 4));
+        assertEquals(Arrays.asList("b=AS:500", "b=TIAS:500000"), video.subList(2, 4));
+        assertEquals(2, countPrefix(video, "b="));
+
+        String uncapped = SdpTransforms.apply(
+            SdpTransforms.fromReadableArray(
+                JavaOnlyArray.of(JavaOnlyMap.of("type", "bandwidth"))),
+            capped,
+            "offer");
+        assertEquals(OFFER, uncapped);
+    }
+
+    @Test
+    public void stripsCodecsWithTheirRtx() {
+        List<String> video = section(
+            apply(
+                JavaOnlyMap.of("type", "stripCodecs", "kind", "video", "codecs", strings("vp9"))),
+            "video");
+
+        assertEquals("m=video 9 UDP/TLS/RTP/SAVPF 96 97 102 103", video.get(0));
+        for (String line : video) {
+            assertFalse(line, line.matches("a=(rtpmap|fmtp|rtcp-fb):(98|99) .*"));
+        }
+        assertTrue(video.contains("a=fmtp:97 apt=96"));
+    }
+
+    @Test
+    public void keepsCodecsWithTheirRtx() {
+        List<String> video = section(
+            apply(
+                JavaOnlyMap.of("type", "keepCodecs", "kind", "video", "codecs", strings("H264"))),
+            "video");
+
+        assertEquals("m=video 9 UDP/TLS/RTP/SAVPF 102 103", video.get(0));
+        assertTrue(video.contains("a=fmtp:103 apt=102"));
+        assertEquals(1, countPrefix(video, "a=rtpmap:102 "));
+        assertEquals(0, countPrefix(video, "a=rtpmap:96 "));
+    }
+
+    @Test
+    public void stripsRtxOnlyWhenListed() {
+        List<String> video = section(
+            apply(
+                JavaOnlyMap.of("type", "stripCodecs", "kind", "video", "codecs", strings("RTX"))),
+            "video");
+
+        assertEquals("m=video 9 UDP/TLS/RTP/SAVPF 96 98 102", video.get(0));
+        assertEquals(0, countPrefix(video, "a=fmtp:97 "));
+    }
+
+    @Test
+    public void neverLeavesASectionWithoutCodecs() {
+        String sdp = apply(
+            JavaOnlyMap.of(
+                "type", "stripCodecs",
+                "kind", "video",
+                "codecs", strings("VP8", "VP9", "H264")));
+        assertEquals(OFFER, sdp);
+
+        sdp = apply(JavaOnlyMap.of("type", "keepCodecs", "codecs", strings("AV1")));
+        assertEquals(OFFER, sdp);
+
+        // Only the sections which would be left empty are spared.
+        sdp = apply(JavaOnlyMap.of("type", "keepCodecs", "codecs", strings("opus", "red")));
+        assertEquals("m=audio 9 UDP/TLS/RTP/SAVPF 111 63", section(sdp, "audio").get(0));
+        assertEquals(section(OFFER, "video"), section(sdp, "video"));
+    }
+
+    @Test
+    public void stripsHeaderExtensionsOfAllSections() {
+        String sdp = apply(
+            JavaOnlyMap.of(
+                "type", "stripHeaderExtensions",
+                "uris", strings(
+                    "http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time",
+                    "urn:3gpp:video-orientation")));
+
+        assertEquals(0, countPrefix(section(sdp, "video"), "a=extmap:"));
+        assertEquals(
+            Arrays.asList("a=extmap:1 urn:ietf:params:rtp-hdrext:ssrc-audio-level"),
+            filterPrefix(section(sdp, "audio"), "a=extmap:"));
+        // a=extmap-allow-mixed isn't an a=extmap: line.
+        assertTrue(sdp.contains("a=extmap-allow-mixed\r\n"));
+    }
+
+    @Test
+    public void rejectsInvalidConfigurations() {
+        assertInvalid(JavaOnlyMap.of("type", "unknown"));
+        assertInvalid(JavaOnlyMap.of("kind", "video"));
+        assertInvalid(JavaOnlyMap.of("type", "codecOrder"));
+        assertInvalid(JavaOnlyMap.of("type", "stripHeaderExtensions", "uris", "urn:x"));
+    }
+
+    private static void assertInvalid(JavaOnlyMap config) {
+        try {
+            SdpTransforms.fromReadableArray(JavaOnlyArray.of(config));
+            fail(config.toHashMap().toString());
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static int countPrefix(List<String> lines, String prefix) {
+        return filterPrefix(lines, prefix).size();
+    }
+
+    private static List<String> filterPrefix(List<String> lines, String prefix) {
+        List<String> filtered = new ArrayList<>();
+
+        for (String line : lines) {
+            if (line.startsWith(prefix)) {
+                filtered.add(line);
+            }
+        }
+        return filtered;
+    }
+}
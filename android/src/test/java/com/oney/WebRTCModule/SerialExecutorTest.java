@@ -0,0 +1,181 @@
+package com.oney.WebRTCModule;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SerialExecutorTest {
+    private static final long TIMEOUT = 5;
+
+    private ThreadPoolExecutor executor;
+    private SerialExecutor global;
+    private final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() {
+        executor
+            = new ThreadPoolExecutor(
+                2, 2,
+                0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(),
+                r -> {
+                    Thread thread = new Thread(r);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        global = new SerialExecutor(executor);
+    }
+
+    @Test
+    public void runsTasksOfALaneInOrder() throws InterruptedException {
+        SerialExecutor lane = new SerialExecutor(executor);
+        CountDownLatch done = new CountDownLatch(1);
+
+        lane.execute(record("1"), ThreadUtils.Priority.BULK);
+        lane.execute(record("2"), ThreadUtils.Priority.NORMAL);
+        lane.execute(record("3"), ThreadUtils.Priority.INTERACTIVE);
+        lane.execute(done::countDown);
+
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("1", "2", "3"), log);
+    }
+
+    @Test
+    public void blockedLaneDoesNotDelayOtherLanes() throws InterruptedException {
+        SerialExecutor a = new SerialExecutor(executor);
+        SerialExecutor b = new SerialExecutor(executor);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        a.execute(() -> {
+            blocked.countDown();
+            await(release);
+        });
+        a.execute(record("a"));
+        assertTrue(blocked.await(TIMEOUT, TimeUnit.SECONDS));
+
+        b.execute(record("b"));
+        b.execute(done::countDown);
+
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("b"), log);
+
+        release.countDown();
+    }
+
+    @Test
+    public void barrierOrdersTasksAcrossLanes() throws InterruptedException {
+        SerialExecutor lane = new SerialExecutor(executor);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+
+        lane.execute(() -> {
+            await(release);
+            log.add("lane1");
+        });
+        global.execute(record("global1"));
+        SerialExecutor.executeOnAll(
+            record("barrier"),
+            ThreadUtils.Priority.NORMAL,
+            global,
+            lane);
+        lane.execute(record("lane2"));
+        global.execute(record("global2"));
+        lane.execute(done::countDown);
+        global.execute(done::countDown);
+
+        // The global lane has reached the barrier but the barrier waits for
+        // the blocked lane and so do the tasks queued after it.
+        Thread.sleep(100);
+        assertEquals(Collections.singletonList("global1"), log);
+
+        release.countDown();
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+
+        int barrier = log.indexOf("barrier");
+        assertEquals(2, barrier);
+        assertTrue(log.indexOf("lane1") < barrier);
+        assertTrue(log.indexOf("lane2") > barrier);
+        assertTrue(log.indexOf("global2") > barrier);
+        assertEquals(5, log.size());
+    }
+
+    @Test
+    public void releasedLaneRunsQueuedTasksThenForwards() throws InterruptedException {
+        SerialExecutor lane = new SerialExecutor(executor);
+        CountDownLatch releaseLane = new CountDownLatch(1);
+        CountDownLatch releaseGlobal = new CountDownLatch(1);
+        CountDownLatch drained = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        lane.execute(() -> {
+            await(releaseLane);
+            log.add("lane1");
+        });
+        lane.release(global);
+        // Submitted before the lane drained, still runs on it.
+        lane.execute(record("lane2"));
+        lane.execute(drained::countDown);
+        releaseLane.countDown();
+        assertTrue(drained.await(TIMEOUT, TimeUnit.SECONDS));
+
+        // The lane has drained (and retired) so a late task runs on the
+        // global lane, after the tasks queued there earlier.
+        global.execute(() -> {
+            await(releaseGlobal);
+            log.add("global1");
+        });
+        Thread.sleep(50);
+        lane.execute(record("late"));
+        lane.execute(done::countDown);
+
+        Thread.sleep(100);
+        assertFalse(log.contains("late"));
+
+        releaseGlobal.countDown();
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("lane1", "lane2", "global1", "late"), log);
+    }
+
+    @Test
+    public void barrierOnRetiredLaneRunsOnce() throws InterruptedException {
+        SerialExecutor lane = new SerialExecutor(executor);
+        CountDownLatch done = new CountDownLatch(1);
+
+        lane.release(global);
+        SerialExecutor.executeOnAll(
+            record("barrier"),
+            ThreadUtils.Priority.NORMAL,
+            global,
+            lane);
+        global.execute(done::countDown);
+
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("barrier"), log);
+    }
+
+    private Runnable record(String name) {
+        return () -> log.add(name);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.oney.WebRTCModule;
+
+import org.junit.Test;
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+public class StatsSelectorTest {
+    /**
+     * A report of a PeerConnection which sends an audio track and receives a
+     * video track over the same transport.
+     */
+    private static RTCStatsReport fakeReport() {
+        Map<String, RTCStats> map = new LinkedHashMap<>();
+
+        put(map, "P", "peer-connection", "dataChannelsOpened", 0L);
+        put(map, "T", "transport",
+            "selectedCandidatePairId", "CP",
+            "localCertificateId", "CFL",
+            "remoteCertificateId", "CFR");
+        put(map, "CP", "candidate-pair",
+            "transportId", "T",
+            "localCandidateId", "LC",
+            "remoteCandidateId", "RC");
+        put(map, "LC", "local-candidate", "transportId", "T");
+        put(map, "RC", "remote-candidate", "transportId", "T");
+        put(map, "CFL", "certificate", "issuerCertificateId", "CFI");
+        put(map, "CFI", "certificate");
+        put(map, "CFR", "certificate");
+        // An unused candidate pair of the same transport.
+        put(map, "CP2", "candidate-pair", "transportId", "T");
+
+        // The sent audio track.
+        put(map, "MS", "media-source", "trackIdentifier", "audio1", "kind", "audio");
+        put(map, "OA", "outbound-rtp",
+            "mediaSourceId", "MS",
+            "codecId", "COA",
+            "transportId", "T",
+            "remoteId", "RIA");
+        put(map, "COA", "codec", "transportId", "T", "mimeType", "audio/opus");
+        put(map, "RIA", "remote-inbound-rtp", "localId", "OA", "codecId", "COA");
+
+        // The received video track, referenced through (legacy) track stats.
+        put(map, "TRV", "track", "trackIdentifier", "video1", "remoteSource", true);
+        put(map, "IV", "inbound-rtp",
+            "trackId", "TRV",
+            "codecId", "COV",
+            "transportId", "T");
+        put(map, "COV", "codec", "transportId", "T", "mimeType", "video/VP8");
+
+        return new RTCStatsReport(1000L, map);
+    }
+
+    @Test
+    public void selectsRootsByTrackIdentifier() {
+        RTCStatsReport selected = StatsSelector.select(fakeReport(), "audio1");
+
+        assertIds(
+            selected,
+            "MS", "OA", "COA", "T", "RIA", "CP", "CFL", "CFR", "LC", "RC", "CFI");
+    }
+
+    @Test
+    public void selectsRootsByTrackStatsId() {
+        RTCStatsReport selected = StatsSelector.select(fakeReport(), "video1");
+
+        assertIds(
+            selected,
+            "TRV", "IV", "COV", "T", "CP", "CFL", "CFR", "LC", "RC", "CFI");
+    }
+
+    @Test
+    public void followsReferencesTransitively() {
+        RTCStatsReport report = fakeReport();
+        Map<String, RTCStats> stats
+            = StatsSelector.select(report, "audio1").getStatsMap();
+
+        // outbound-rtp -> transport -> certificate -> issuer certificate
+        assertSame(report.getStatsMap().get("CFI"), stats.get("CFI"));
+        // outbound-rtp -> transport -> candidate pair -> candidates
+        assertSame(report.getStatsMap().get("RC"), stats.get("RC"));
+    }
+
+    @Test
+    public void doesNotLeakUnrelatedStats() {
+        Map<String, RTCStats> audio
+            = StatsSelector.select(fakeReport(), "audio1").getStatsMap();
+        Map<String, RTCStats> video
+            = StatsSelector.select(fakeReport(), "video1").getStatsMap();
+
+        for (String id : new String[] { "P", "CP2", "TRV", "IV", "COV" }) {
+            assertFalse(id, audio.containsKey(id));
+        }
+        for (String id : new String[] { "P", "CP2", "MS", "OA", "COA", "RIA" }) {
+            assertFalse(id, video.containsKey(id));
+        }
+    }
+
+    @Test
+    public void selectsNothingForAnUnknownTrack() {
+        RTCStatsReport selected = StatsSelector.select(fakeReport(), "unknown");
+
+        assertEquals(Collections.emptySet(), selected.getStatsMap().keySet());
+        assertEquals(1000.0, selected.getTimestampUs(), 0);
+    }
+
+    @Test
+    public void ignoresTrackIdentifierOfOtherTypes() {
+        Map<String, RTCStats> map = new LinkedHashMap<>();
+        put(map, "X", "codec", "trackIdentifier", "audio1");
+
+        assertEquals(
+            Collections.emptySet(),
+            StatsSelector.select(new RTCStatsReport(0L, map), "audio1")
+                .getStatsMap().keySet());
+    }
+
+    @Test
+    public void ignoresDanglingReferences() {
+        Map<String, RTCStats> map = new LinkedHashMap<>();
+        put(map, "OA", "outbound-rtp", "trackIdentifier", "audio1", "codecId", "missing");
+
+        assertIds(StatsSelector.select(new RTCStatsReport(0L, map), "audio1"), "OA");
+    }
+
+    private static void assertIds(RTCStatsReport report, String... ids) {
+        Set<String> expected = new HashSet<>(Arrays.asList(ids));
+
+        assertEquals(expected, report.getStatsMap().keySet());
+    }
+
+    private static void put(
+            Map<String, RTCStats> map,
+            String id,
+            String type,
+            Object... members) {
+        Map<String, Object> memberMap = new LinkedHashMap<>();
+        for (int i = 0; i < members.length; i += 2) {
+            memberMap.put((String) members[i], members[i + 1]);
+        }
+        map.put(id, new RTCStats(0L, type, id, memberMap));
+    }
+}
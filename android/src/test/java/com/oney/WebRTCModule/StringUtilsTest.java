@@ -0,0 +1,203 @@
+package com.oney.WebRTCModule;
+
+import org.junit.Test;
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class StringUtilsTest {
+    @Test
+    public void escapesStrings() {
+        assertEquals(
+            "\"quote\\\" backslash\\\\ slash/\"",
+            member("quote\" backslash\\ slash/"));
+        assertEquals(
+            // DEL is not a control character in JSON.
+            "\"\\n\\r\\t\\u0000\\u0001\\u0008\\u000c\\u001f\u007f\"",
+            member("\n\r\t\u0000\u0001\b\f\u001f\u007f"));
+    }
+
+    @Test
+    public void escapesLineAndParagraphSeparators() {
+        assertEquals("\"a\\u2028b\\u2029c\"", member("a\u2028b\u2029c"));
+    }
+
+    @Test
+    public void keepsSurrogatesAsIs() {
+        // A pair (U+1F600) and lone surrogates are valid in a JavaScript
+        // string and are passed through unescaped.
+        assertEquals("\"\ud83d\ude00\"", member("\ud83d\ude00"));
+        assertEquals("\"\ud800x\udc00\"", member("\ud800x\udc00"));
+    }
+
+    @Test
+    public void keepsNonAsciiAsIs() {
+        assertEquals("\"h\u00e9llo \u4e16\u754c\"", member("h\u00e9llo \u4e16\u754c"));
+    }
+
+    @Test
+    public void writesNonFiniteNumbersAsNull() {
+        assertEquals("null", member(Double.NaN));
+        assertEquals("null", member(Double.POSITIVE_INFINITY));
+        assertEquals("null", member(Double.NEGATIVE_INFINITY));
+        assertEquals(
+            "[1.5,null,null,2]",
+            member(new double[] { 1.5, Double.NaN, Double.NEGATIVE_INFINITY, 2.0 }));
+        assertEquals("[null,3]", member(new Object[] { Double.NaN, 3L }));
+    }
+
+    @Test
+    public void writesNumbers() {
+        assertEquals("42", member(42.0));
+        assertEquals("-0.25", member(-0.25));
+        assertEquals("9007199254740993", member(9007199254740993L));
+        assertEquals("7", member(7));
+        assertEquals(
+            "18446744073709551615",
+            member(new BigInteger("18446744073709551615")));
+    }
+
+    @Test
+    public void writesPrimitiveArrays() {
+        assertEquals("[1,-2]", member(new int[] { 1, -2 }));
+        assertEquals("[3,4]", member(new long[] { 3L, 4L }));
+        assertEquals("[true,false]", member(new boolean[] { true, false }));
+        assertEquals("[]", member(new long[0]));
+        assertEquals("[\"a\",null]", member(new String[] { "a", null }));
+    }
+
+    @Test
+    public void writesNestedMaps() {
+        Map<String, Object> inner = new LinkedHashMap<>();
+        inner.put("x", 1L);
+        inner.put("y\n", new double[] { 0.5 });
+
+        Map<String, Object> outer = new LinkedHashMap<>();
+        outer.put("inner", inner);
+        outer.put("list", new Object[] { inner, null });
+        outer.put("empty", Collections.emptyMap());
+
+        assertEquals(
+            "{\"inner\":{\"x\":1,\"y\\n\":[0.5]},"
+                + "\"list\":[{\"x\":1,\"y\\n\":[0.5]},null],"
+                + "\"empty\":{}}",
+            member(outer));
+    }
+
+    @Test
+    public void writesReport() {
+        Map<String, Object> members = new LinkedHashMap<>();
+        members.put("kind", "audio");
+        members.put("bytesSent", 1000L);
+
+        RTCStatsReport report
+            = report(
+                stats("OT01", "outbound-rtp", 1500500L, members),
+                stats("T01", "transport", 2000000L, Collections.emptyMap()));
+
+        assertEquals(
+            "[[\"OT01\",{\"timestamp\":1500.5,\"type\":\"outbound-rtp\",\"id\":\"OT01\","
+                + "\"kind\":\"audio\",\"bytesSent\":1000}],"
+                + "[\"T01\",{\"timestamp\":2000,\"type\":\"transport\",\"id\":\"T01\"}]]",
+            StringUtils.statsToJSON(report));
+        assertEquals("[]", StringUtils.statsToJSON(report()));
+    }
+
+    @Test
+    public void writesFullDeltaWithoutPrevious() {
+        RTCStatsReport report
+            = report(stats("A", "codec", 1000L, singleton("clockRate", 48000L)));
+
+        assertEquals(
+            "{\"base\":0,\"version\":1,\"updated\":["
+                + "[\"A\",{\"timestamp\":1,\"type\":\"codec\",\"id\":\"A\",\"clockRate\":48000}]"
+                + "],\"removed\":[]}",
+            StringUtils.statsDeltaToJSON(null, report, 7, 1));
+    }
+
+    @Test
+    public void writesDelta() {
+        Map<String, Object> before = new LinkedHashMap<>();
+        before.put("packetsSent", 10L);
+        before.put("kind", "video");
+        before.put("qualityLimitationReason", "cpu");
+
+        Map<String, Object> after = new LinkedHashMap<>();
+        after.put("packetsSent", 12L);
+        after.put("kind", "video");
+
+        RTCStatsReport previous
+            = report(
+                stats("OT01", "outbound-rtp", 1000L, before),
+                stats("C01", "codec", 1000L, singleton("payloadType", 96L)),
+                stats("gone", "codec", 1000L, singleton("payloadType", 97L)));
+        RTCStatsReport report
+            = report(
+                stats("OT01", "outbound-rtp", 2000L, after),
+                // Unchanged but for the timestamp.
+                stats("C01", "codec", 2000L, singleton("payloadType", 96L)),
+                stats("new", "codec", 2000L, singleton("payloadType", 98L)));
+
+        assertEquals(
+            "{\"base\":1,\"version\":2,\"updated\":["
+                + "[\"OT01\",{\"timestamp\":2,\"type\":\"outbound-rtp\",\"id\":\"OT01\","
+                + "\"packetsSent\":12,\"qualityLimitationReason\":null}],"
+                + "[\"new\",{\"timestamp\":2,\"type\":\"codec\",\"id\":\"new\",\"payloadType\":98}]"
+                + "],\"removed\":[\"gone\"]}",
+            StringUtils.statsDeltaToJSON(previous.getStatsMap(), report, 1, 2));
+    }
+
+    @Test
+    public void writesDeltaOfArraysByValue() {
+        RTCStatsReport previous
+            = report(stats("A", "x", 0L, singleton("a", new long[] { 1L, 2L })));
+        RTCStatsReport report
+            = report(stats("A", "x", 0L, singleton("a", new long[] { 1L, 2L })));
+
+        assertEquals(
+            "{\"base\":1,\"version\":2,\"updated\":[],\"removed\":[]}",
+            StringUtils.statsDeltaToJSON(previous.getStatsMap(), report, 1, 2));
+    }
+
+    /**
+     * Gets the JSON of a specific value as the value of an
+     * <tt>RTCStats</tt> member.
+     */
+    private static String member(Object value) {
+        String json
+            = StringUtils.statsToJSON(
+                report(stats("s", "t", 0L, singleton("m", value))));
+        String prefix = "[[\"s\",{\"timestamp\":0,\"type\":\"t\",\"id\":\"s\",\"m\":";
+
+        assertEquals(prefix, json.substring(0, prefix.length()));
+        return json.substring(prefix.length(), json.length() - "}]]".length());
+    }
+
+    private static Map<String, Object> singleton(String key, Object value) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put(key, value);
+        return map;
+    }
+
+    private static RTCStats stats(
+            String id,
+            String type,
+            long timestampUs,
+            Map<String, Object> members) {
+        return new RTCStats(timestampUs, type, id, members);
+    }
+
+    private static RTCStatsReport report(RTCStats... stats) {
+        Map<String, RTCStats> map = new LinkedHashMap<>();
+        for (RTCStats s : stats) {
+            map.put(s.getId(), s);
+        }
+        return new RTCStatsReport(0L, map);
+    }
+}
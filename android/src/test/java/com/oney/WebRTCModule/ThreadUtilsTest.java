@@ -0,0 +1,71 @@
+package com.oney.WebRTCModule;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadUtilsTest {
+    private static final long TIMEOUT = 5;
+
+    @Test
+    public void stalledLanesDoNotStarveOtherLanes() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(ThreadUtils.POOL_SIZE);
+        CountDownLatch done = new CountDownLatch(1);
+
+        try {
+            // Blocks every thread of the pool e.g. as closing PeerConnections
+            // does.
+            for (int i = 0; i < ThreadUtils.POOL_SIZE; i++) {
+                ThreadUtils.runOnPeerConnectionExecutor(1000 + i, "test", () -> {
+                    blocked.countDown();
+                    await(release);
+                });
+            }
+            assertTrue(blocked.await(TIMEOUT, TimeUnit.SECONDS));
+
+            ThreadUtils.runOnPeerConnectionExecutor(
+                2000,
+                "test",
+                ThreadUtils.Priority.INTERACTIVE,
+                done::countDown);
+
+            assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void releasedLaneForwardsToGlobalLane() throws InterruptedException {
+        int id = 3000;
+        CountDownLatch drained = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        ThreadUtils.runOnPeerConnectionExecutor(id, "test", drained::countDown);
+        ThreadUtils.releasePeerConnectionExecutor(id);
+        assertTrue(drained.await(TIMEOUT, TimeUnit.SECONDS));
+        Thread.sleep(50);
+
+        ThreadUtils.runOnExecutor("test", () -> await(release));
+        ThreadUtils.runOnPeerConnectionExecutor(id, "test", done::countDown);
+
+        // Queued behind the blocked global lane rather than on a new lane.
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.oney.WebRTCModule;
+
+import org.junit.Test;
+import org.webrtc.VideoCodecInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VideoCodecPolicyTest {
+    private static final VideoCodecInfo VP8 = codec("VP8");
+    private static final VideoCodecInfo VP9 = codec("VP9");
+    private static final VideoCodecInfo H264_BASELINE
+        = codec("H264", "profile-level-id", "42e01f", "packetization-mode", "1");
+    private static final VideoCodecInfo H264_HIGH
+        = codec("H264", "profile-level-id", "640c1f", "packetization-mode", "1");
+    private static final VideoCodecInfo AV1 = codec("AV1");
+
+    /**
+     * The codecs in the order the software and hardware encoders report them.
+     */
+    private static final List<VideoCodecInfo> PROBED
+        = Arrays.asList(VP8, VP9, H264_HIGH, H264_BASELINE, AV1);
+
+    private static VideoCodecInfo codec(String name, String... params) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < params.length; i += 2) {
+            map.put(params[i], params[i + 1]);
+        }
+        return new VideoCodecInfo(name, map);
+    }
+
+    private static VideoCodecPolicy policy(
+            List<String> preferredCodecs,
+            boolean h264HighProfileEnabled,
+            List<String> encoderBlocklist) {
+        return new VideoCodecPolicy(
+            preferredCodecs, h264HighProfileEnabled, encoderBlocklist, true);
+    }
+
+    @Test
+    public void keepsTheOrderWithoutPreferences() {
+        VideoCodecPolicy policy = policy(null, true, null);
+
+        assertEquals(PROBED, policy.selectEncoderCodecs(PROBED));
+        assertEquals(PROBED, policy.order(PROBED));
+    }
+
+    @Test
+    public void ordersPreferredCodecsFirst() {
+        VideoCodecPolicy policy = policy(Arrays.asList("h264", "VP9"), true, null);
+
+        // Case-insensitively and stably: the H.264 profiles and the codecs
+        // which aren't preferred keep their relative order.
+        assertEquals(
+            Arrays.asList(H264_HIGH, H264_BASELINE, VP9, VP8, AV1),
+            policy.selectEncoderCodecs(PROBED));
+        assertEquals(
+            Arrays.asList(H264_HIGH, H264_BASELINE, VP9, VP8, AV1),
+            policy.order(PROBED));
+    }
+
+    @Test
+    public void ignoresUnknownPreferredCodecs() {
+        VideoCodecPolicy policy = policy(Arrays.asList("H265", "AV1"), true, null);
+
+        assertEquals(
+            Arrays.asList(AV1, VP8, VP9, H264_HIGH, H264_BASELINE),
+            policy.order(PROBED));
+    }
+
+    @Test
+    public void dropsH264HighProfileUnlessEnabled() {
+        assertEquals(
+            Arrays.asList(VP8, VP9, H264_BASELINE, AV1),
+            policy(null, false, null).selectEncoderCodecs(PROBED));
+        assertEquals(
+            PROBED,
+            policy(null, true, null).selectEncoderCodecs(PROBED));
+        // Decoding isn't affected.
+        assertEquals(PROBED, policy(null, false, null).order(PROBED));
+
+        assertTrue(VideoCodecPolicy.isH264HighProfile(H264_HIGH));
+        assertTrue(VideoCodecPolicy.isH264HighProfile(
+            codec("H264", "profile-level-id", "64001F")));
+        assertFalse(VideoCodecPolicy.isH264HighProfile(H264_BASELINE));
+        assertFalse(VideoCodecPolicy.isH264HighProfile(codec("H264")));
+        assertFalse(VideoCodecPolicy.isH264HighProfile(
+            codec("VP9", "profile-level-id", "640c1f")));
+    }
+
+    @Test
+    public void doesNotModifyTheProbedCodecs() {
+        List<VideoCodecInfo> probed = new ArrayList<>(PROBED);
+
+        policy(Collections.singletonList("AV1"), false, null).selectEncoderCodecs(probed);
+        assertEquals(PROBED, probed);
+    }
+
+    @Test
+    public void blocksEncodersByNamePrefix() {
+        VideoCodecPolicy policy
+            = policy(null, false, Arrays.asList("OMX.Exynos.", "c2.exynos."));
+
+        assertFalse(policy.isEncoderNameAllowed("OMX.Exynos.AVC.Encoder"));
+        assertFalse(policy.isEncoderNameAllowed("c2.exynos.h264.encoder"));
+        assertTrue(policy.isEncoderNameAllowed("OMX.qcom.video.encoder.avc"));
+        // Prefixes are case-sensitive like the names of the MediaCodecs.
+        assertTrue(policy.isEncoderNameAllowed("omx.exynos.avc.encoder"));
+        assertTrue(policy(null, false, null).isEncoderNameAllowed("OMX.Exynos.AVC.Encoder"));
+    }
+
+    @Test
+    public void invalidatesTheCacheKeyOnAFingerprintChange() {
+        VideoCodecPolicy policy = policy(null, false, Arrays.asList("OMX.Exynos."));
+        String key = CodecCapabilitiesCache.createKey("brand/device:13/TQ1A/1:user", policy);
+
+        assertEquals(
+            key,
+            CodecCapabilitiesCache.createKey(
+                "brand/device:13/TQ1A/1:user",
+                policy(null, false, Arrays.asList("OMX.Exynos."))));
+        // A system update.
+        assertNotEquals(
+            key,
+            CodecCapabilitiesCache.createKey("brand/device:14/UP1A/2:user", policy));
+    }
+
+    @Test
+    public void invalidatesTheCacheKeyOnAProbeAffectingPolicyChange() {
+        String fingerprint = "brand/device:13/TQ1A/1:user";
+        String key
+            = CodecCapabilitiesCache.createKey(fingerprint, policy(null, false, null));
+
+        assertNotEquals(
+            key,
+            CodecCapabilitiesCache.createKey(fingerprint, policy(null, true, null)));
+        assertNotEquals(
+            key,
+            CodecCapabilitiesCache.createKey(
+                fingerprint,
+                policy(null, false, Arrays.asList("OMX.Exynos."))));
+        // The order is applied to the cached codecs.
+        assertEquals(
+            key,
+            CodecCapabilitiesCache.createKey(
+                fingerprint,
+                policy(Arrays.asList("VP9"), false, null)));
+    }
+}
@@ -3,6 +3,8 @@
 import ScreenCapturePickerView from './ScreenCapturePickerView';
 import RTCPeerConnection from './RTCPeerConnection';
 import RTCIceCandidate from './RTCIceCandidate';
+import RTCRtpSender from './RTCRtpSender';
+import RTCRtpTransceiver from './RTCRtpTransceiver';
 import RTCSessionDescription from './RTCSessionDescription';
 import RTCView from './RTCView';
 import MediaStream from './MediaStream';
@@ -14,6 +16,8 @@ export {
   ScreenCapturePickerView,
   RTCPeerConnection,
   RTCIceCandidate,
+  RTCRtpSender,
+  RTCRtpTransceiver,
   RTCSessionDescription,
   RTCView,
   MediaStream,